@@ -0,0 +1,290 @@
+package com.threegear.gloveless.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+
+/**
+ * Parses lines of the hand tracking protocol and passes the messages to the
+ * registered listeners. Subclasses read the lines from somewhere and call 
+ * {@link #processLine(String)} for each of them on a single thread, or
+ * produce messages directly and call {@link #processMessage(HandTrackingMessage)}.
+ * <p>
+ * Every listener call is timed; see {@link #getListenerStats()}. A 
+ * {@link LatencyPolicy} can be set to quarantine listeners that keep
+ * exceeding a latency budget. Listeners registered with a {@link RateLimit}
+ * skip poses; if every listener skips a pose, its line is not parsed beyond
+ * the confidence estimates.
+ */
+public abstract class AbstractHandTrackingSource implements HandTrackingSource {
+  
+  private List<MonitoredListener<HandTrackingListener>> listeners = new CopyOnWriteArrayList<MonitoredListener<HandTrackingListener>>();
+  
+  private volatile LatencyPolicy latencyPolicy;
+  
+  private List<LineListener> lineListeners = new CopyOnWriteArrayList<LineListener>();
+  
+  private volatile HandTrackingMonitor monitor;
+  
+  private volatile HandTrackingTracer tracer;
+  
+  private long sequence;
+  
+  private volatile int rateLimited;
+  
+  private final PoseSummary poseSummary = new PoseSummary();
+  
+  @Override
+  public void addListener(HandTrackingListener listener) {
+    addListener(listener, true);
+  }
+  
+  @Override
+  public void addListener(HandTrackingListener listener, boolean quarantinable) {
+    listeners.add(new MonitoredListener<HandTrackingListener>(listener, "HandTrackingListener", quarantinable));
+  }
+  
+  @Override
+  public synchronized void addListener(HandTrackingListener listener, RateLimit limit) {
+    listeners.add(new RateLimitedListener(listener, limit));
+    rateLimited++;
+  }
+  
+  @Override
+  public void addLineListener(LineListener listener) {
+    lineListeners.add(listener);
+  }
+  
+  @Override
+  public void removeLineListener(LineListener listener) {
+    lineListeners.remove(listener);
+  }
+  
+  @Override
+  public void setLatencyPolicy(LatencyPolicy policy) {
+    this.latencyPolicy = policy;
+  }
+  
+  @Override
+  public void setMonitor(HandTrackingMonitor monitor) {
+    this.monitor = monitor;
+  }
+  
+  /**
+   * @return the current monitor, or null
+   */
+  protected HandTrackingMonitor getMonitor() {
+    return monitor;
+  }
+  
+  @Override
+  public void setTracer(HandTrackingTracer tracer) {
+    this.tracer = tracer;
+  }
+  
+  @Override
+  public List<ListenerStats> getListenerStats() {
+    List<ListenerStats> stats = new ArrayList<ListenerStats>();
+    for (MonitoredListener<HandTrackingListener> listener : listeners) {
+      stats.add(listener.getStats());
+    }
+    return stats;
+  }
+  
+  /**
+   * Parses the given line and passes the message to all listeners.
+   * 
+   * @param line
+   */
+  protected void processLine(String line) {
+    long read = System.nanoTime();
+    HandTrackingMonitor monitor = this.monitor;
+    HandTrackingTracer tracer = this.tracer;
+    if (tracer != null) tracer.lineRead(sequence, read);
+    sequence++;
+    for (LineListener lineListener : lineListeners) {
+      lineListener.lineReceived(line, read);
+    }
+    
+    boolean selected = false;
+    if (rateLimited > 0 && line.startsWith("POSE ") && poseSummary.scan(line)) {
+      selected = true;
+      if (!selectPoseListeners(read)) {
+        // no listener gets this pose, so don't parse it
+        long skipped = System.nanoTime();
+        if (tracer != null) {
+          tracer.lineParsed(MessageType.POSE, skipped);
+          tracer.lineDone(skipped);
+        }
+        if (monitor != null) monitor.dispatched(MessageType.POSE, line.length() + 1, 0, 0, skipped - read);
+        return;
+      }
+    }
+    
+    HandTrackingMessage msg;
+    try {
+      msg = HandTrackingMessage.deserialize(line);
+    } catch (RuntimeException e) {
+      msg = null;
+    }
+    long parsed = System.nanoTime();
+    if (tracer != null) tracer.lineParsed(msg != null ? msg.getType() : null, parsed);
+    // if we can't parse this line, ignore it
+    if (msg == null) {
+      if (monitor != null) monitor.malformed(line.length() + 1);
+      return;
+    }
+    if (!selected && rateLimited > 0 && msg instanceof PoseMessage) {
+      // the summary could not be scanned from the line, take it from the message
+      poseSummary.set((PoseMessage)msg);
+      selectPoseListeners(read);
+    }
+    
+    dispatchAll(msg, line.length() + 1, read, parsed, monitor, tracer);
+  }
+  
+  /**
+   * Passes a message that did not come from a line to all listeners. Line
+   * listeners get the serialized message.
+   * 
+   * @param msg
+   */
+  protected void processMessage(HandTrackingMessage msg) {
+    long read = System.nanoTime();
+    HandTrackingMonitor monitor = this.monitor;
+    HandTrackingTracer tracer = this.tracer;
+    if (tracer != null) tracer.lineRead(sequence, read);
+    sequence++;
+    int bytes = 0;
+    if (!lineListeners.isEmpty()) {
+      String line = msg.serialize();
+      bytes = line.length() + 1;
+      for (LineListener lineListener : lineListeners) {
+        lineListener.lineReceived(line, read);
+      }
+    }
+    if (tracer != null) tracer.lineParsed(msg.getType(), read);
+    if (rateLimited > 0 && msg instanceof PoseMessage) {
+      poseSummary.set((PoseMessage)msg);
+      selectPoseListeners(read);
+    }
+    dispatchAll(msg, bytes, read, read, monitor, tracer);
+  }
+  
+  /**
+   * Decides which rate limited listeners get the pose in {@link #poseSummary}.
+   * 
+   * @return true if any listener gets the pose
+   */
+  private boolean selectPoseListeners(long read) {
+    boolean any = false;
+    for (MonitoredListener<HandTrackingListener> listener : listeners) {
+      if (listener.isDisabled()) continue;
+      if (listener instanceof RateLimitedListener) {
+        any |= ((RateLimitedListener)listener).select(poseSummary, read);
+      } else {
+        any = true;
+      }
+    }
+    return any;
+  }
+  
+  private void dispatchAll(HandTrackingMessage msg, int bytes, long read, long parsed,
+      HandTrackingMonitor monitor, HandTrackingTracer tracer) {
+    boolean pose = rateLimited > 0 && msg instanceof PoseMessage;
+    for (MonitoredListener<HandTrackingListener> listener : listeners) {
+      if (pose && listener instanceof RateLimitedListener) {
+        if (!((RateLimitedListener)listener).isSelected()) continue;
+        dispatchPose((RateLimitedListener)listener, msg, tracer);
+        continue;
+      }
+      dispatch(listener, msg, tracer);
+    }
+    
+    if (monitor != null || tracer != null) {
+      long dispatched = System.nanoTime();
+      if (tracer != null) tracer.lineDone(dispatched);
+      if (monitor != null) {
+        monitor.dispatched(msg.getType(), bytes, 
+            parsed - read, dispatched - parsed, dispatched - read);
+      }
+    }
+  }
+  
+  /**
+   * Tells all the listeners that no more messages will follow
+   */
+  protected void fireConnectionClosed() {
+    for (MonitoredListener<HandTrackingListener> l : listeners) {
+      if (!l.isDisabled()) l.getListener().handleConnectionClosed();
+    }
+  }
+  
+  private void dispatch(final MonitoredListener<HandTrackingListener> listener, final HandTrackingMessage msg, 
+      HandTrackingTracer tracer) {
+    if (listener.isDisabled()) return;
+    if (listener.isAsync()) {
+      listener.execute(new Runnable() {
+        @Override
+        public void run() {
+          long start = System.nanoTime();
+          listener.getListener().handleEvent(msg);
+          listener.record(System.nanoTime() - start, null);
+        }
+      }, isContinuous(msg.getType()));
+      return;
+    }
+    long start = System.nanoTime();
+    listener.getListener().handleEvent(msg);
+    long end = System.nanoTime();
+    listener.record(end - start, latencyPolicy);
+    if (tracer != null) tracer.listenerReturned(listener.getListener(), end);
+  }
+  
+  /**
+   * @return true for messages that are sent for every frame and superseded
+   * by the next one, which a quarantined listener may miss
+   */
+  private static boolean isContinuous(MessageType type) {
+    switch (type) {
+    case MOVED:
+    case DRAGGED:
+    case DRAGGED_BIMANUAL:
+    case POSE:
+    case POINT:
+      return true;
+    default:
+      return false;
+    }
+  }
+  
+  /**
+   * Like {@link #dispatch(MonitoredListener, HandTrackingMessage, HandTrackingTracer)}
+   * but also measures the time for the adaptive rate limit.
+   */
+  private void dispatchPose(final RateLimitedListener listener, final HandTrackingMessage msg,
+      HandTrackingTracer tracer) {
+    if (listener.isDisabled()) return;
+    if (listener.isAsync()) {
+      listener.execute(new Runnable() {
+        @Override
+        public void run() {
+          long start = System.nanoTime();
+          listener.getListener().handleEvent(msg);
+          long nanos = System.nanoTime() - start;
+          listener.record(nanos, null);
+          listener.recordPose(nanos);
+        }
+      }, true);
+      return;
+    }
+    long start = System.nanoTime();
+    listener.getListener().handleEvent(msg);
+    long end = System.nanoTime();
+    listener.record(end - start, latencyPolicy);
+    listener.recordPose(end - start);
+    if (tracer != null) tracer.listenerReturned(listener.getListener(), end);
+  }
+}
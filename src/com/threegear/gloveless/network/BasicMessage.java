@@ -31,7 +31,7 @@ public class BasicMessage extends HandTrackingMessage {
    * @param rotationRight
    * @param clickCountRight
    */
-  protected BasicMessage(MessageType type, 
+  public BasicMessage(MessageType type, 
       Tuple3f positionLeft, Quat4f rotationLeft, int clickCountLeft, 
       Tuple3f positionRight, Quat4f rotationRight, int clickCountRight) {
     this.type = type;
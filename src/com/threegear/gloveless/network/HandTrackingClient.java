@@ -4,17 +4,31 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Client for communicating with a hand tracking server. Uses a callback model
  * to send events to registered listeners.
- * 
+ * <p>
+ * Every listener call is timed; see {@link #getListenerStats()}. A 
+ * {@link LatencyPolicy} can be set to quarantine listeners that keep
+ * exceeding a latency budget.
+ * <p>
+ * {@link #connect()} connects on the calling thread and fails if the server 
+ * isn't up. {@link #connectAsync()} connects in the background instead, 
+ * trying the configured endpoints in turn and waiting longer after every 
+ * failed round, and can reconnect when the server goes away.
  */
-public class HandTrackingClient implements Runnable {
+public class HandTrackingClient extends AbstractHandTrackingSource implements Runnable {
 
   public static final String DEFAULT_HOST = "127.0.0.1";
   
@@ -26,9 +40,83 @@ public class HandTrackingClient implements Runnable {
   
   private InputStream input;
   
-  private boolean stopped;
+  private volatile boolean stopped;
   
-  private List<HandTrackingListener> listeners = new ArrayList<HandTrackingListener>();
+  /** socket of the connection attempt in progress, closed to abort it */
+  private volatile Socket connecting;
+  
+  private List<InetSocketAddress> endpoints = Collections.singletonList(
+      InetSocketAddress.createUnresolved(DEFAULT_HOST, DEFAULT_PORT));
+  
+  private int connectTimeoutMillis = 1000;
+  
+  private long retryDelayMillis = 250;
+  
+  private long maxRetryDelayMillis = 5000;
+  
+  private int maxAttempts = 0;
+  
+  private boolean reconnect = false;
+  
+  /**
+   * Creates a client for the default server and port.
+   */
+  public HandTrackingClient() {
+  }
+  
+  /**
+   * Creates a client for the given server, used by {@link #start()} and
+   * {@link #connectAsync()}.
+   * 
+   * @param hostname
+   * @param port
+   */
+  public HandTrackingClient(String hostname, int port) {
+    setEndpoints(Collections.singletonList(InetSocketAddress.createUnresolved(hostname, port)));
+  }
+  
+  /**
+   * Sets the servers to try, in order, for {@link #start()} and 
+   * {@link #connectAsync()}.
+   * 
+   * @param endpoints
+   */
+  public void setEndpoints(List<InetSocketAddress> endpoints) {
+    if (endpoints.isEmpty())
+      throw new IllegalArgumentException("Need at least one endpoint");
+    this.endpoints = Collections.unmodifiableList(new ArrayList<InetSocketAddress>(endpoints));
+  }
+  
+  public List<InetSocketAddress> getEndpoints() {
+    return endpoints;
+  }
+  
+  /**
+   * Configures how {@link #connectAsync()} retries.
+   * 
+   * @param connectTimeoutMillis timeout of a single connection attempt
+   * @param retryDelayMillis pause after the first round of failed attempts; 
+   *   doubled after every further round
+   * @param maxRetryDelayMillis upper bound of the pause
+   * @param maxAttempts rounds over all endpoints before giving up, 0 to 
+   *   retry forever
+   */
+  public void setRetry(int connectTimeoutMillis, long retryDelayMillis, long maxRetryDelayMillis, int maxAttempts) {
+    if (connectTimeoutMillis < 0 || retryDelayMillis < 0 || maxRetryDelayMillis < retryDelayMillis || maxAttempts < 0)
+      throw new IllegalArgumentException("Invalid retry configuration");
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.retryDelayMillis = retryDelayMillis;
+    this.maxRetryDelayMillis = maxRetryDelayMillis;
+    this.maxAttempts = maxAttempts;
+  }
+  
+  /**
+   * @param reconnect true if {@link #connectAsync()} should connect again 
+   *   when the server closes the connection
+   */
+  public void setReconnect(boolean reconnect) {
+    this.reconnect = reconnect;
+  }
 
   /**
    * Launches a thread that connects to the default server and port, and passes
@@ -50,8 +138,7 @@ public class HandTrackingClient implements Runnable {
    */
   public void connect(String hostname, int port) throws IOException {
     try {
-      socket = new Socket(hostname, port);
-      input = socket.getInputStream();
+      open(new Socket(hostname, port));
     } catch (IOException ioe) {
       throw new IOException(String.format("%n" +
           "*******************************************************************************%n" +
@@ -64,24 +151,164 @@ public class HandTrackingClient implements Runnable {
           "*******************************************************************************%n"));
     }
     stopped = false;
+    connected();
 
     new Thread(this).start();
   }
   
   /**
-   * Stop listening for events
+   * Launches a thread that connects to the first reachable endpoint, retrying
+   * as configured, and then passes received events to the registered 
+   * listeners.  Returns immediately.
+   * <p>
+   * The future completes once the first connection is established.  It fails
+   * with the last connection error if the configured attempts are used up.
+   * Cancelling it before then stops the client.  Later failures, a broken
+   * connection or failed reconnects, are reported to the monitor.
+   * 
+   * @return the pending connection
    */
-  public void stop() {
-    stopped = true;
+  public Future<Void> connectAsync() {
+    stopped = false;
+    final FutureTask<Void> connecting = new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        connectWithRetry();
+        return null;
+      }
+    }) {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+          stopped = true;
+          closeQuietly(HandTrackingClient.this.connecting);
+        }
+        return cancelled;
+      }
+    };
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        connecting.run();
+        if (connecting.isCancelled()) {
+          // cancellation may have won after the socket was opened
+          stopped = true;
+          closeQuietly(socket);
+          return;
+        }
+        try {
+          connecting.get();
+        } catch (Exception e) {
+          return;
+        }
+        connected();
+        while (true) {
+          HandTrackingClient.this.run();
+          if (!reconnect || stopped) return;
+          try {
+            connectWithRetry();
+          } catch (IOException e) {
+            if (!stopped) failed(e);
+            return;
+          }
+          connected();
+        }
+      }
+    }, "Hand tracking client");
+    thread.setDaemon(true);
+    thread.start();
+    return connecting;
+  }
+  
+  private void connectWithRetry() throws IOException {
+    long delay = retryDelayMillis;
+    IOException last = null;
+    for (int attempt = 1; !stopped; attempt++) {
+      for (InetSocketAddress endpoint : endpoints) {
+        if (stopped) break;
+        if (endpoint.isUnresolved()) {
+          endpoint = new InetSocketAddress(endpoint.getHostString(), endpoint.getPort());
+        }
+        Socket candidate = new Socket();
+        connecting = candidate;
+        try {
+          candidate.connect(endpoint, connectTimeoutMillis);
+          if (stopped) {
+            candidate.close();
+            break;
+          }
+          open(candidate);
+          return;
+        } catch (IOException e) {
+          candidate.close();
+          last = e;
+        } finally {
+          connecting = null;
+        }
+      }
+      if (stopped) break;
+      if (maxAttempts > 0 && attempt >= maxAttempts) {
+        StringBuffer names = new StringBuffer();
+        for (InetSocketAddress endpoint : endpoints) {
+          if (names.length() > 0) names.append(", ");
+          names.append(endpoint.getHostString()).append(':').append(endpoint.getPort());
+        }
+        throw new IOException("Could not connect to " + names + " after " + attempt + " attempts", last);
+      }
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while connecting");
+      }
+      delay = Math.min(delay * 2, maxRetryDelayMillis);
+    }
+    throw new IOException("Client stopped before it connected");
+  }
+  
+  private void open(Socket socket) throws IOException {
+    this.socket = socket;
+    this.input = socket.getInputStream();
+  }
+  
+  private void connected() {
+    HandTrackingMonitor monitor = getMonitor();
+    if (monitor != null) monitor.connected();
+  }
+  
+  private void failed(IOException e) {
+    HandTrackingMonitor monitor = getMonitor();
+    if (monitor != null) monitor.failed(e);
+  }
+  
+  private static void closeQuietly(Socket socket) {
+    if (socket == null) return;
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // nothing left to clean up
+    }
   }
   
   /**
-   * Registers the given listener with this client
+   * Connects to the configured endpoint on the calling thread, or to the 
+   * default server and port if none was set.  Only the first endpoint is used.
    * 
-   * @param listener
+   * @see #connect()
+   * @see #connectAsync()
    */
-  public void addListener(HandTrackingListener listener) {
-    listeners.add(listener);
+  @Override
+  public void start() throws IOException {
+    InetSocketAddress endpoint = endpoints.get(0);
+    connect(endpoint.getHostString(), endpoint.getPort());
+  }
+  
+  /**
+   * Stop listening for events
+   */
+  @Override
+  public void stop() {
+    stopped = true;
   }
   
   @Override
@@ -90,20 +317,15 @@ public class HandTrackingClient implements Runnable {
     String line;
     try {
       while (!stopped && (line = reader.readLine()) != null) {
-        HandTrackingMessage msg = HandTrackingMessage.deserialize(line);
-        // if we can't parse this line, ignore it
-        if (msg == null) continue;
-        
-        for (HandTrackingListener listener : listeners) {
-          listener.handleEvent(msg);
-        }
+        processLine(line);
       }
-      socket.close();
     } catch (IOException e) {
-      e.printStackTrace();
+      if (!stopped) failed(e);
+    } finally {
+      closeQuietly(socket);
     }
     
     // Tell all the listeners we've stopped
-    for (HandTrackingListener l : listeners) l.handleConnectionClosed();
+    fireConnectionClosed();
   }
 }
@@ -23,6 +23,9 @@ public abstract class HandTrackingMessage {
   /** Number of recognized poses. */
   public static final int N_POSES = 7;
   
+  /** Number of floats per joint frame in the flat joint frame arrays; a 4x4 matrix in row-major order. */
+  public static final int JOINT_FRAME_SIZE = 16;
+  
   /** The different poses that are currently recognized by the tracking software. */
   public enum HandPose {
     /** The hand curled up, ready to pinch. */
@@ -49,6 +52,19 @@ public abstract class HandTrackingMessage {
     public int id() {
       return id;
     }
+
+    public static HandPose fromId(int id) {
+      switch (id) {
+      case 0: return HAND_CURLED;
+      case 1: return HAND_ELL;
+      case 2: return HAND_OKAY;
+      case 3: return HAND_PINCH;
+      case 4: return HAND_POINTING;
+      case 5: return HAND_RELAXEDOPEN;
+      case 6: return HAND_SPREAD;
+      }
+      return null;
+    }
   }
   
   /** Most events (like click events) only apply to
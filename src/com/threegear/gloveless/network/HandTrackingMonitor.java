@@ -0,0 +1,43 @@
+package com.threegear.gloveless.network;
+
+import java.io.IOException;
+
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+
+/**
+ * Receives measurements from the reader thread of a {@link HandTrackingClient}.
+ * <p>
+ * All methods are called on the reader thread for every line, so 
+ * implementations must be cheap and must not block.
+ */
+public interface HandTrackingMonitor {
+  
+  /** Invoked whenever the client (re)connected to the server. */
+  public void connected();
+  
+  /**
+   * Invoked when the connection to the server broke, or when the client gave
+   * up connecting to it.
+   * 
+   * @param e the cause
+   */
+  public void failed(IOException e);
+  
+  /**
+   * Invoked for every line that could not be parsed.
+   * 
+   * @param bytes size of the line including the line break
+   */
+  public void malformed(int bytes);
+  
+  /**
+   * Invoked after a message was passed to all listeners.
+   * 
+   * @param type type of the message
+   * @param bytes size of the line including the line break
+   * @param parseNanos time it took to parse the line
+   * @param dispatchNanos time the listeners took
+   * @param readToDispatchNanos time from reading the line until the listeners returned
+   */
+  public void dispatched(MessageType type, int bytes, long parseNanos, long dispatchNanos, long readToDispatchNanos);
+}
@@ -0,0 +1,86 @@
+package com.threegear.gloveless.network;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of hand tracking messages, for instance a live 
+ * {@link HandTrackingClient} or a replayed recording. Uses a callback model to
+ * send messages to registered listeners.
+ */
+public interface HandTrackingSource {
+  
+  /**
+   * Registers the given listener with this source
+   * 
+   * @param listener
+   */
+  public void addListener(HandTrackingListener listener);
+  
+  /**
+   * Registers the given listener with this source
+   * 
+   * @param listener
+   * @param quarantinable false if the {@link LatencyPolicy} must never apply to
+   * this listener
+   */
+  public void addListener(HandTrackingListener listener, boolean quarantinable);
+  
+  /**
+   * Registers a listener that gets poses at a limited rate. Poses that no
+   * listener gets are not parsed beyond their confidence estimates.
+   * 
+   * @param listener
+   * @param limit
+   */
+  public void addListener(HandTrackingListener listener, RateLimit limit);
+  
+  /**
+   * Registers a listener that gets every raw line before it is parsed
+   * 
+   * @param listener
+   */
+  public void addLineListener(LineListener listener);
+  
+  public void removeLineListener(LineListener listener);
+  
+  /**
+   * Sets the latency budget for listeners, or null to never quarantine them.
+   * 
+   * @param policy
+   */
+  public void setLatencyPolicy(LatencyPolicy policy);
+  
+  /**
+   * @return call counts and latencies of all registered listeners
+   */
+  public List<ListenerStats> getListenerStats();
+  
+  /**
+   * Sets the monitor that is informed about every line, or null to disable
+   * monitoring.
+   * 
+   * @param monitor
+   */
+  public void setMonitor(HandTrackingMonitor monitor);
+  
+  /**
+   * Sets the tracer that gets the timestamps of every line, or null to disable
+   * tracing.
+   * 
+   * @param tracer
+   */
+  public void setTracer(HandTrackingTracer tracer);
+  
+  /**
+   * Launches a thread that passes messages to the registered listeners.
+   * 
+   * @throws IOException
+   */
+  public void start() throws IOException;
+  
+  /**
+   * Stop passing messages to the listeners
+   */
+  public void stop();
+}
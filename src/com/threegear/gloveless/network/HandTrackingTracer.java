@@ -0,0 +1,46 @@
+package com.threegear.gloveless.network;
+
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+
+/**
+ * Receives timestamps of the individual stages a line goes through on the
+ * reader thread of a {@link HandTrackingClient}. All timestamps are values of
+ * {@link System#nanoTime()}.
+ * <p>
+ * The methods are called for every line in the order below, so 
+ * implementations must be cheap and must not block.
+ */
+public interface HandTrackingTracer {
+  
+  /**
+   * Invoked right after a line was read from the socket.
+   * 
+   * @param sequence number of the line since the client was created
+   * @param nanos
+   */
+  public void lineRead(long sequence, long nanos);
+  
+  /**
+   * Invoked after the line was parsed.
+   * 
+   * @param type type of the message, or null if the line was malformed, in
+   * which case no further methods are called for this line
+   * @param nanos
+   */
+  public void lineParsed(MessageType type, long nanos);
+  
+  /**
+   * Invoked whenever a listener returned from handling the message.
+   * 
+   * @param listener
+   * @param nanos
+   */
+  public void listenerReturned(Object listener, long nanos);
+  
+  /**
+   * Invoked after all listeners returned.
+   * 
+   * @param nanos
+   */
+  public void lineDone(long nanos);
+}
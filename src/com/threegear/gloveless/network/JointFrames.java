@@ -0,0 +1,71 @@
+package com.threegear.gloveless.network;
+
+import static com.threegear.gloveless.network.HandTrackingMessage.JOINT_FRAME_SIZE;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_HANDS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_JOINTS;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+/**
+ * Flat joint frames shared by {@link PoseMessage} and {@link UserMessage}.
+ * <p>
+ * The frames of both hands are stored in one array, {@link HandTrackingMessage#JOINT_FRAME_SIZE}
+ * floats per joint in row-major order, hand by hand.
+ */
+class JointFrames {
+
+  private JointFrames() {}
+
+  /** Computes the frames of both hands, the same way as {@link Matrix4f#Matrix4f(Quat4f, javax.vecmath.Vector3f, float)}. */
+  static float[] compute(Quat4f[][] rotations, Vector3f[][] translations) {
+    float[] frames = new float[N_HANDS * N_JOINTS * JOINT_FRAME_SIZE];
+    int o = 0;
+    for (int iHand=0; iHand<N_HANDS; iHand++) {
+      for (int jJoint=0; jJoint<N_JOINTS; jJoint++) {
+        Quat4f q = rotations[iHand][jJoint];
+        Vector3f t = translations[iHand][jJoint];
+        frames[o] = 1 - 2*q.y*q.y - 2*q.z*q.z;
+        frames[o+1] = 2*(q.x*q.y - q.w*q.z);
+        frames[o+2] = 2*(q.x*q.z + q.w*q.y);
+        frames[o+3] = t.x;
+        frames[o+4] = 2*(q.x*q.y + q.w*q.z);
+        frames[o+5] = 1 - 2*q.x*q.x - 2*q.z*q.z;
+        frames[o+6] = 2*(q.y*q.z - q.w*q.x);
+        frames[o+7] = t.y;
+        frames[o+8] = 2*(q.x*q.z - q.w*q.y);
+        frames[o+9] = 2*(q.y*q.z + q.w*q.x);
+        frames[o+10] = 1 - 2*q.x*q.x - 2*q.y*q.y;
+        frames[o+11] = t.z;
+        frames[o+15] = 1;
+        o += JOINT_FRAME_SIZE;
+      }
+    }
+    return frames;
+  }
+
+  static Matrix4f[] copy(float[] frames, int hand, Matrix4f[] out) {
+    if (out.length < N_JOINTS)
+      throw new IllegalArgumentException("Need room for " + N_JOINTS + " joint frames");
+    int o = hand * N_JOINTS * JOINT_FRAME_SIZE;
+    for (int i=0; i<N_JOINTS; i++) {
+      Matrix4f m = out[i];
+      if (m == null) {
+        m = out[i] = new Matrix4f();
+      }
+      m.m00 = frames[o];    m.m01 = frames[o+1];  m.m02 = frames[o+2];  m.m03 = frames[o+3];
+      m.m10 = frames[o+4];  m.m11 = frames[o+5];  m.m12 = frames[o+6];  m.m13 = frames[o+7];
+      m.m20 = frames[o+8];  m.m21 = frames[o+9];  m.m22 = frames[o+10]; m.m23 = frames[o+11];
+      m.m30 = frames[o+12]; m.m31 = frames[o+13]; m.m32 = frames[o+14]; m.m33 = frames[o+15];
+      o += JOINT_FRAME_SIZE;
+    }
+    return out;
+  }
+
+  static float[] copy(float[] frames, int hand, float[] out) {
+    int length = N_JOINTS * JOINT_FRAME_SIZE;
+    System.arraycopy(frames, hand * length, out, 0, length);
+    return out;
+  }
+}
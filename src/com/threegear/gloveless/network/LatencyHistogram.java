@@ -0,0 +1,72 @@
+package com.threegear.gloveless.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ * <p>
+ * Uses power-of-two buckets, so percentiles are accurate to a factor of two.
+ * Recording is a handful of atomic increments and cheap enough to stay on
+ * all the time.
+ */
+public class LatencyHistogram {
+
+  /** Number of buckets; bucket i counts durations in [2^i, 2^(i+1)) ns. */
+  public static final int N_BUCKETS = 40;
+  
+  private final AtomicLong count = new AtomicLong();
+  
+  private final AtomicLong totalNanos = new AtomicLong();
+  
+  private final AtomicLong maxNanos = new AtomicLong();
+  
+  private final AtomicLongArray buckets = new AtomicLongArray(N_BUCKETS);
+  
+  public void record(long nanos) {
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+    buckets.incrementAndGet(bucket(nanos));
+  }
+  
+  public long getCount() { return count.get(); }
+  
+  public long getTotalNanos() { return totalNanos.get(); }
+  
+  public long getMaxNanos() { return maxNanos.get(); }
+  
+  public long getMeanNanos() {
+    long n = count.get();
+    return n == 0 ? 0 : totalNanos.get() / n;
+  }
+  
+  /** @return number of durations in the given bucket */
+  public long getBucketCount(int bucket) { return buckets.get(bucket); }
+  
+  /**
+   * @param percentile between 0 and 100
+   * @return upper bound of the bucket containing the given percentile in nanoseconds
+   */
+  public long getPercentileNanos(double percentile) {
+    long total = 0;
+    for (int i = 0; i < N_BUCKETS; i++) total += buckets.get(i);
+    if (total == 0) return 0;
+    
+    long rank = Math.max(1, (long)Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < N_BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) return 1L << (i + 1);
+    }
+    return 1L << N_BUCKETS;
+  }
+  
+  static int bucket(long nanos) {
+    if (nanos <= 1) return 0;
+    return Math.min(N_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+  }
+}
@@ -0,0 +1,46 @@
+package com.threegear.gloveless.network;
+
+/**
+ * Latency budget for listeners. A listener that exceeds the budget for a 
+ * number of consecutive calls is quarantined: it is either moved to its own
+ * delivery thread or disabled.
+ */
+public class LatencyPolicy {
+  
+  /** What happens to a listener that keeps exceeding its budget. */
+  public enum Action {
+    /** Call the listener from its own thread; continuous events are dropped if it falls too far behind. */
+    ASYNC,
+    /** Stop calling the listener. */
+    DISABLE
+  }
+  
+  private final long budgetNanos;
+  
+  private final int maxViolations;
+  
+  private final Action action;
+  
+  private final QuarantineListener quarantineListener;
+  
+  /**
+   * @param budgetNanos maximum time a listener may take per call
+   * @param maxViolations number of consecutive calls over budget that trigger the action
+   * @param action what to do with the offending listener
+   * @param quarantineListener notified when a listener is quarantined; may be null
+   */
+  public LatencyPolicy(long budgetNanos, int maxViolations, Action action, QuarantineListener quarantineListener) {
+    this.budgetNanos = budgetNanos;
+    this.maxViolations = Math.max(1, maxViolations);
+    this.action = action;
+    this.quarantineListener = quarantineListener;
+  }
+  
+  public long getBudgetNanos() { return budgetNanos; }
+  
+  public int getMaxViolations() { return maxViolations; }
+  
+  public Action getAction() { return action; }
+  
+  public QuarantineListener getQuarantineListener() { return quarantineListener; }
+}
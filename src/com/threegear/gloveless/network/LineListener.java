@@ -0,0 +1,15 @@
+package com.threegear.gloveless.network;
+
+/**
+ * Receives every raw line read by a {@link HandTrackingClient}, including
+ * lines that cannot be parsed, before it is parsed. Called on the reader
+ * thread, so implementations must not block.
+ */
+public interface LineListener {
+  
+  /**
+   * @param line the line without the line break
+   * @param nanos value of {@link System#nanoTime()} right after the line was read
+   */
+  public void lineReceived(String line, long nanos);
+}
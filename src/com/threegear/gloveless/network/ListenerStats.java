@@ -0,0 +1,52 @@
+package com.threegear.gloveless.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call count and latency histogram of one listener.
+ * <p>
+ * Recording is lock-free and cheap enough to stay on all the time. 
+ * 
+ * @see LatencyHistogram
+ */
+public class ListenerStats extends LatencyHistogram {
+
+  private final Object listener;
+  
+  private final String name;
+  
+  private final AtomicLong dropped = new AtomicLong();
+  
+  private final AtomicLong skipped = new AtomicLong();
+  
+  public ListenerStats(Object listener, String kind) {
+    this.listener = listener;
+    this.name = kind + " " + listener.getClass().getName();
+  }
+  
+  /** @return the listener these statistics belong to */
+  public Object getListener() { return listener; }
+  
+  /** @return the kind of the listener followed by its class name */
+  public String getName() { return name; }
+  
+  /** @return events dropped because the quarantined listener fell behind */
+  public long getDropped() { return dropped.get(); }
+  
+  void recordDropped() {
+    dropped.incrementAndGet();
+  }
+  
+  /** @return poses not delivered because of the listener's {@link RateLimit} */
+  public long getSkipped() { return skipped.get(); }
+  
+  void recordSkipped() {
+    skipped.incrementAndGet();
+  }
+  
+  @Override
+  public String toString() {
+    return String.format("%s: %d calls, mean %d ns, p99 < %d ns, max %d ns, %d dropped, %d skipped", 
+        name, getCount(), getMeanNanos(), getPercentileNanos(99), getMaxNanos(), getDropped(), getSkipped());
+  }
+}
@@ -0,0 +1,140 @@
+package com.threegear.gloveless.network;
+
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A registered listener together with its {@link ListenerStats} and 
+ * quarantine state.
+ * <p>
+ * The code delivering events times each call, passes the time to 
+ * {@link #record(long, LatencyPolicy)}, and checks {@link #isDisabled()} and 
+ * {@link #isAsync()} before the next call.
+ */
+public class MonitoredListener<L> {
+  
+  /** Events a quarantined listener may fall behind before the oldest continuous ones are dropped. */
+  private static final int ASYNC_CAPACITY = 256;
+  
+  private static final int ACTIVE = 0;
+  private static final int ASYNC = 1;
+  private static final int DISABLED = 2;
+  
+  private final L listener;
+  
+  private final ListenerStats stats;
+  
+  private final boolean quarantinable;
+  
+  private volatile int state = ACTIVE;
+  
+  private int violations;
+  
+  private ThreadPoolExecutor lane;
+  
+  public MonitoredListener(L listener, String kind) {
+    this(listener, kind, true);
+  }
+  
+  /**
+   * @param quarantinable false for listeners that must never be quarantined,
+   * e.g. because they forward events to other monitored listeners
+   */
+  public MonitoredListener(L listener, String kind, boolean quarantinable) {
+    this.listener = listener;
+    this.stats = new ListenerStats(listener, kind);
+    this.quarantinable = quarantinable;
+  }
+  
+  public L getListener() { return listener; }
+  
+  public ListenerStats getStats() { return stats; }
+  
+  public boolean isDisabled() { return state == DISABLED; }
+  
+  public boolean isAsync() { return state == ASYNC; }
+  
+  /**
+   * Records the duration of a call and quarantines the listener if it
+   * exceeded the budget of the policy too often in a row.
+   * 
+   * @param policy may be null if no budget is enforced
+   */
+  public void record(long nanos, LatencyPolicy policy) {
+    stats.record(nanos);
+    if (policy == null || !quarantinable || state != ACTIVE) return;
+    
+    if (nanos <= policy.getBudgetNanos()) {
+      violations = 0;
+    } else if (++violations >= policy.getMaxViolations()) {
+      quarantine(policy);
+    }
+  }
+  
+  /**
+   * Runs a call of a listener that was moved to its own thread. Once the
+   * listener is 256 calls behind, the oldest queued
+   * continuous call (move, drag, pose) is dropped for a new continuous one.
+   * Discrete calls like presses and releases are never dropped, so the queue
+   * may grow beyond the capacity with them.
+   * 
+   * @param continuous whether the call delivers an event that is sent for 
+   * every frame and superseded by the next one
+   */
+  public void execute(Runnable call, boolean continuous) {
+    if (continuous && lane.getQueue().size() >= ASYNC_CAPACITY) {
+      stats.recordDropped();
+      if (!dropOldestContinuous()) return;
+    }
+    lane.execute(continuous ? new ContinuousCall(call) : call);
+  }
+  
+  private boolean dropOldestContinuous() {
+    for (Iterator<Runnable> it = lane.getQueue().iterator(); it.hasNext();) {
+      if (it.next() instanceof ContinuousCall) {
+        it.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  private synchronized void quarantine(LatencyPolicy policy) {
+    if (state != ACTIVE) return;
+    if (policy.getAction() == LatencyPolicy.Action.ASYNC) {
+      lane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "Quarantined " + stats.getName());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+      state = ASYNC;
+    } else {
+      state = DISABLED;
+    }
+    
+    QuarantineListener callback = policy.getQuarantineListener();
+    if (callback != null) callback.onQuarantine(stats, policy.getAction());
+  }
+  
+  /** A queued call that may be dropped when the listener falls behind. */
+  private static class ContinuousCall implements Runnable {
+    private final Runnable call;
+    
+    ContinuousCall(Runnable call) {
+      this.call = call;
+    }
+    
+    @Override
+    public void run() {
+      call.run();
+    }
+  }
+}
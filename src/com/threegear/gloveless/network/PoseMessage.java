@@ -40,15 +40,72 @@ public class PoseMessage extends BasicMessage {
   protected Quat4f[][] jointRotations = new Quat4f[N_HANDS][N_JOINTS];
   protected Vector3f[][] jointTranslations = new Vector3f[N_HANDS][N_JOINTS];
   
+  /** @return The rotations of the 17 joints of the given hand.
+   *  @see #getJointFrames(int)
+   */
+  public Quat4f[] getJointRotations(int hand) { return jointRotations[hand]; }
+  
+  /** @return The translations of the 17 joints of the given hand.
+   *  @see #getJointFrames(int)
+   */
+  public Vector3f[] getJointTranslations(int hand) { return jointTranslations[hand]; }
+  
+  /** Joint frames of both hands, computed on first use. */
+  private volatile float[] jointFrames;
+  
+  private float[] jointFrames() {
+    float[] frames = jointFrames;
+    if (frames == null) {
+      frames = jointFrames = JointFrames.compute(jointRotations, jointTranslations);
+    }
+    return frames;
+  }
+  
   /** @return The 17 joint frames defining the skinned hand.  See the DrawSkeleton 
    *  example for more details.
    */
   public Matrix4f[] getJointFrames(int hand) {
-    Matrix4f[] jointFrames = new Matrix4f[N_JOINTS];
-    for (int i=0; i<N_JOINTS; i++) {
-      jointFrames[i] = new Matrix4f(jointRotations[hand][i], jointTranslations[hand][i], 1);
+    return getJointFrames(hand, new Matrix4f[N_JOINTS]);
+  }
+  
+  /** Writes the 17 joint frames of the given hand into the given array without 
+   *  allocating.  Missing matrices are created.
+   *  <p>
+   *  The frames are computed once per message, so this is cheap to call repeatedly.
+   *  
+   *  @return out
+   */
+  public Matrix4f[] getJointFrames(int hand, Matrix4f[] out) {
+    return JointFrames.copy(jointFrames(), hand, out);
+  }
+  
+  /** Writes the 17 joint frames of the given hand into the given array as 
+   *  {@link #JOINT_FRAME_SIZE} floats per joint in row-major order.  The array 
+   *  must hold at least <code>JOINT_FRAME_SIZE * N_JOINTS</code> floats.
+   *  
+   *  @return out
+   */
+  public float[] getJointFrames(int hand, float[] out) {
+    return JointFrames.copy(jointFrames(), hand, out);
+  }
+  
+  /** Writes the positions of the joints of both hands into the given array,
+   *  three floats per joint, the 17 joints of hand 0 followed by those of hand 1.
+   *  These are the translations of the joint frames.  The array must hold at
+   *  least <code>3 * N_JOINTS * N_HANDS</code> floats.
+   *  
+   *  @return out
+   */
+  public float[] getJointPositions(float[] out) {
+    int o = 0;
+    for (int iHand=0; iHand<N_HANDS; iHand++) {
+      for (Vector3f t : jointTranslations[iHand]) {
+        out[o++] = t.x;
+        out[o++] = t.y;
+        out[o++] = t.z;
+      }
     }
-    return jointFrames;
+    return out;
   }
   
   protected Point3f[][] fingerTips = new Point3f[N_HANDS][N_FINGERS];
@@ -162,34 +219,33 @@ public class PoseMessage extends BasicMessage {
     return bestPose;
   }
   
+  /** @return All seven hand poses ordered from most to least likely.
+   *  Poses with equal confidence keep their {@link HandTrackingMessage.HandPose} order.
+   *  
+   *  @see #getBestHandPoseRanking(int, int[])
+   */
   public int[] getBestHandPoseRanking(int hand) {
-      int poseRanking[] = new int[N_POSES];
-      int defaultRanking[] = new int[N_POSES];
-      for(int iPose = 0; iPose < N_POSES; iPose++) {
-          poseRanking[iPose] = iPose;
-          defaultRanking[iPose] = iPose;
-      }
-      int lastBestPose = getBestHandPose(hand);
-      if(lastBestPose == -1) return defaultRanking;
-      
-      float lastBestConfidence = handPoseConfidences[hand][lastBestPose];
-      poseRanking[0] = lastBestPose;
-
-      for(int iPose = 1; iPose < N_POSES; iPose++) {
-          int nextBestPose = -1;
-          float nextBestConfidence = 0;
-          for(int i = 0; i < N_POSES; i++) {
-              if(handPoseConfidences[hand][i] > nextBestConfidence && handPoseConfidences[hand][i] <= lastBestConfidence && iPose != lastBestPose) {
-                  nextBestConfidence = handPoseConfidences[hand][i];
-                  nextBestPose = i;
-              }
-          }
-          if(nextBestPose == -1) return defaultRanking;
-          poseRanking[iPose] = nextBestPose;
-          lastBestPose = nextBestPose;
-          lastBestConfidence = nextBestConfidence;
+    return getBestHandPoseRanking(hand, new int[N_POSES]);
+  }
+  
+  /** Allocation-free variant of {@link #getBestHandPoseRanking(int)}.
+   * 
+   * @param hand Which hand to rank the poses for.
+   * @param ranking Array of at least {@link #N_POSES} entries that receives the ranking.
+   * @return The passed ranking array.
+   */
+  public int[] getBestHandPoseRanking(int hand, int[] ranking) {
+    float[] confidences = handPoseConfidences[hand];
+    // insertion sort; stable, and cheap for the seven poses we have
+    for (int iPose = 0; iPose < N_POSES; iPose++) {
+      float confidence = confidences[iPose];
+      int j = iPose;
+      while (j > 0 && confidences[ranking[j-1]] < confidence) {
+        ranking[j] = ranking[j-1];
+        j--;
       }
-
-      return poseRanking;
+      ranking[j] = iPose;
+    }
+    return ranking;
   }
 }
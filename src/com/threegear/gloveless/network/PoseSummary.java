@@ -0,0 +1,80 @@
+package com.threegear.gloveless.network;
+
+import static com.threegear.gloveless.network.HandTrackingMessage.N_FINGERS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_HANDS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_JOINTS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_POSES;
+
+/**
+ * The confidence estimates and most likely hand poses of a pose, which decide
+ * whether a {@link RateLimit} is bypassed. They can be read from a line
+ * without parsing the joints.
+ */
+class PoseSummary {
+  
+  /** tokens of the pinch part at the start of the line, including the type */
+  private static final int HEADER_TOKENS = 17;
+  
+  /** tokens per hand: confidence, joint rotations and translations, finger tips */
+  private static final int HAND_TOKENS = 1 + N_JOINTS * 7 + N_FINGERS * 3;
+  
+  private static final int POSE_CONFIDENCE_TOKEN = HEADER_TOKENS + N_HANDS * HAND_TOKENS;
+  
+  final float[] confidences = new float[N_HANDS];
+  
+  final int[] bestPoses = new int[N_HANDS];
+  
+  private final float[] poseConfidences = new float[N_POSES];
+  
+  /**
+   * Reads the summary of a POSE line.
+   * 
+   * @return false if the line is too short or a value is no number
+   */
+  boolean scan(String line) {
+    try {
+      int start = 0;
+      int token = 0;
+      int hand = 0;
+      int pose = 0;
+      while (start < line.length()) {
+        int end = line.indexOf(' ', start);
+        if (end < 0) end = line.length();
+        if (token >= HEADER_TOKENS && (token - HEADER_TOKENS) % HAND_TOKENS == 0 && hand < N_HANDS) {
+          confidences[hand++] = Float.parseFloat(line.substring(start, end));
+        } else if (token >= POSE_CONFIDENCE_TOKEN) {
+          poseConfidences[pose % N_POSES] = Float.parseFloat(line.substring(start, end));
+          if (++pose % N_POSES == 0) {
+            bestPoses[pose / N_POSES - 1] = bestPose(poseConfidences);
+            if (pose == N_HANDS * N_POSES) return true;
+          }
+        }
+        token++;
+        start = end + 1;
+      }
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    return false;
+  }
+  
+  void set(PoseMessage pose) {
+    for (int iHand = 0; iHand < N_HANDS; iHand++) {
+      confidences[iHand] = pose.getConfidenceEstimate(iHand);
+      bestPoses[iHand] = pose.getBestHandPose(iHand);
+    }
+  }
+  
+  /** same as {@link PoseMessage#getBestHandPose(int)} */
+  private static int bestPose(float[] confidences) {
+    int bestPose = -1;
+    float bestScore = 0;
+    for (int i = 0; i < N_POSES; i++) {
+      if (confidences[i] > bestScore) {
+        bestScore = confidences[i];
+        bestPose = i;
+      }
+    }
+    return bestPose;
+  }
+}
@@ -0,0 +1,14 @@
+package com.threegear.gloveless.network;
+
+/**
+ * Callback for listeners that were quarantined by a {@link LatencyPolicy}.
+ */
+public interface QuarantineListener {
+  /**
+   * Invoked on the delivery thread right after the listener was quarantined.
+   * 
+   * @param stats statistics of the offending listener
+   * @param action what was done with it
+   */
+  public void onQuarantine(ListenerStats stats, LatencyPolicy.Action action);
+}
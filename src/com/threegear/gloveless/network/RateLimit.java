@@ -0,0 +1,104 @@
+package com.threegear.gloveless.network;
+
+/**
+ * Maximum rate at which a listener gets {@link PoseMessage}s. Other messages
+ * are never limited.
+ * <p>
+ * A fixed limit delivers at most the given number of poses per second. An
+ * adaptive limit measures how long the listener takes per pose and lowers the
+ * rate so that the listener is busy for at most the given fraction of the
+ * time, between a minimum and a maximum rate.
+ * <p>
+ * Poses in which the most likely hand pose changed or the confidence of a
+ * hand dropped since the last delivered pose are always delivered.
+ * 
+ * @see HandTrackingSource#addListener(HandTrackingListener, RateLimit)
+ */
+public class RateLimit {
+  
+  /** Default confidence drop that bypasses the limit. */
+  public static final float DEFAULT_CONFIDENCE_DROP = 0.5f;
+  
+  private final double minHz;
+  
+  private final double maxHz;
+  
+  private final double maxLoad;
+  
+  private final boolean poseChangeBypass;
+  
+  private final float confidenceDrop;
+  
+  /**
+   * @param minHz rate the adaptive limit never goes below
+   * @param maxHz rate the limit never exceeds
+   * @param maxLoad fraction of the time the listener may spend on poses, 
+   * between 0 and 1; ignored if minHz equals maxHz
+   * @param poseChangeBypass whether a change of the most likely hand pose is 
+   * always delivered
+   * @param confidenceDrop drop of the confidence estimate of a hand that is 
+   * always delivered, or a value greater than 1 to never bypass the limit 
+   * for confidence changes
+   */
+  public RateLimit(double minHz, double maxHz, double maxLoad, boolean poseChangeBypass, float confidenceDrop) {
+    if (!(minHz > 0) || !(maxHz >= minHz)) {
+      throw new IllegalArgumentException("rates must be positive and minHz <= maxHz");
+    }
+    if (minHz != maxHz && !(maxLoad > 0 && maxLoad <= 1)) {
+      throw new IllegalArgumentException("maxLoad must be in (0, 1]");
+    }
+    this.minHz = minHz;
+    this.maxHz = maxHz;
+    this.maxLoad = maxLoad;
+    this.poseChangeBypass = poseChangeBypass;
+    this.confidenceDrop = confidenceDrop;
+  }
+  
+  /**
+   * @return a limit of the given rate that is bypassed by pose changes and
+   * confidence drops of {@link #DEFAULT_CONFIDENCE_DROP}
+   */
+  public static RateLimit fixed(double hz) {
+    return new RateLimit(hz, hz, 1, true, DEFAULT_CONFIDENCE_DROP);
+  }
+  
+  /**
+   * @return an adaptive limit that is bypassed by pose changes and
+   * confidence drops of {@link #DEFAULT_CONFIDENCE_DROP}
+   */
+  public static RateLimit adaptive(double minHz, double maxHz, double maxLoad) {
+    return new RateLimit(minHz, maxHz, maxLoad, true, DEFAULT_CONFIDENCE_DROP);
+  }
+  
+  public double getMinHz() { return minHz; }
+  
+  public double getMaxHz() { return maxHz; }
+  
+  public double getMaxLoad() { return maxLoad; }
+  
+  public boolean isAdaptive() { return minHz != maxHz; }
+  
+  public boolean isPoseChangeBypass() { return poseChangeBypass; }
+  
+  public float getConfidenceDrop() { return confidenceDrop; }
+  
+  /**
+   * @param processingNanos average time the listener takes per pose
+   * @return minimum time between two delivered poses
+   */
+  public long getIntervalNanos(long processingNanos) {
+    double interval = 1e9 / maxHz;
+    if (isAdaptive()) {
+      interval = Math.min(Math.max(interval, processingNanos / maxLoad), 1e9 / minHz);
+    }
+    return (long)interval;
+  }
+  
+  @Override
+  public String toString() {
+    if (isAdaptive()) {
+      return String.format("%.1f-%.1f Hz at %.0f%% load", minHz, maxHz, maxLoad * 100);
+    }
+    return String.format("%.1f Hz", maxHz);
+  }
+}
@@ -0,0 +1,82 @@
+package com.threegear.gloveless.network;
+
+import static com.threegear.gloveless.network.HandTrackingMessage.N_HANDS;
+
+/**
+ * A registered listener with a {@link RateLimit} for poses, together with the
+ * state of the limit. Poses are selected on the reader thread; the processing
+ * time may be recorded on the thread of a quarantined listener.
+ */
+class RateLimitedListener extends MonitoredListener<HandTrackingListener> {
+  
+  /** weight of the latest processing time in the running average */
+  private static final double SMOOTHING = 0.1;
+  
+  private final RateLimit limit;
+  
+  private final float[] lastConfidences = new float[N_HANDS];
+  
+  private final int[] lastBestPoses = new int[N_HANDS];
+  
+  private long nextNanos;
+  
+  private boolean delivered;
+  
+  private boolean selected;
+  
+  private volatile long processingNanos;
+  
+  RateLimitedListener(HandTrackingListener listener, RateLimit limit) {
+    super(listener, "HandTrackingListener", true);
+    this.limit = limit;
+  }
+  
+  RateLimit getLimit() { return limit; }
+  
+  /** @return whether the listener gets the current pose */
+  boolean isSelected() { return selected; }
+  
+  /**
+   * Decides whether the listener gets the pose with the given summary.
+   * 
+   * @param now time the pose was read
+   * @return the decision, also returned by {@link #isSelected()}
+   */
+  boolean select(PoseSummary pose, long now) {
+    long interval = limit.getIntervalNanos(processingNanos);
+    boolean due = !delivered || now - nextNanos >= -interval / 8;
+    if (due) {
+      // keep the rate on average, but don't catch up after a pause
+      nextNanos = !delivered || now - nextNanos > interval ? now + interval : nextNanos + interval;
+    }
+    selected = due || bypasses(pose);
+    if (selected) {
+      delivered = true;
+      System.arraycopy(pose.confidences, 0, lastConfidences, 0, N_HANDS);
+      System.arraycopy(pose.bestPoses, 0, lastBestPoses, 0, N_HANDS);
+    } else {
+      getStats().recordSkipped();
+    }
+    return selected;
+  }
+  
+  private boolean bypasses(PoseSummary pose) {
+    for (int iHand = 0; iHand < N_HANDS; iHand++) {
+      if (limit.isPoseChangeBypass() && pose.bestPoses[iHand] != lastBestPoses[iHand]) return true;
+      if (lastConfidences[iHand] - pose.confidences[iHand] >= limit.getConfidenceDrop()) return true;
+    }
+    return false;
+  }
+  
+  /**
+   * Adds the time the listener took for a pose to the running average that
+   * adapts the limit.
+   */
+  void recordPose(long nanos) {
+    long average = processingNanos;
+    processingNanos = average == 0 ? nanos : (long)(average + SMOOTHING * (nanos - average));
+  }
+  
+  /** @return running average of the time the listener takes per pose */
+  long getProcessingNanos() { return processingNanos; }
+}
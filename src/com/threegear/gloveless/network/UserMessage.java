@@ -60,14 +60,40 @@ public class UserMessage extends HandTrackingMessage {
   
   private Vector3f[][] restJointTranslations = new Vector3f[N_HANDS][N_JOINTS];
 
+  /** Rest joint frames of both hands, computed on first use. */
+  private volatile float[] restJointFrames;
+  
+  private float[] restJointFrames() {
+    float[] frames = restJointFrames;
+    if (frames == null) {
+      frames = restJointFrames = JointFrames.compute(restJointRotations, restJointTranslations);
+    }
+    return frames;
+  }
+
   /** Joint frames of the hand in its rest pose. 
    */
   public Matrix4f[] getRestJointFrames(int hand) { 
-    Matrix4f[] jointFrames = new Matrix4f[N_JOINTS];
-    for (int i=0; i<N_JOINTS; i++) {
-      jointFrames[i] = new Matrix4f(restJointRotations[hand][i], restJointTranslations[hand][i], 1);
-    }
-    return jointFrames;
+    return getRestJointFrames(hand, new Matrix4f[N_JOINTS]);
+  }
+  
+  /** Writes the rest joint frames of the given hand into the given array without 
+   *  allocating.  Missing matrices are created.
+   *  
+   *  @return out
+   */
+  public Matrix4f[] getRestJointFrames(int hand, Matrix4f[] out) {
+    return JointFrames.copy(restJointFrames(), hand, out);
+  }
+  
+  /** Writes the rest joint frames of the given hand into the given array as 
+   *  {@link #JOINT_FRAME_SIZE} floats per joint in row-major order.
+   *  
+   *  @return out
+   *  @see PoseMessage#getJointFrames(int, float[])
+   */
+  public float[] getRestJointFrames(int hand, float[] out) {
+    return JointFrames.copy(restJointFrames(), hand, out);
   }
 
   @Override
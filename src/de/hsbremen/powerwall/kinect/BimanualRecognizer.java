@@ -0,0 +1,176 @@
+package de.hsbremen.powerwall.kinect;
+
+import java.util.ArrayList;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.BimanualPinchMessage;
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+import de.hsbremen.powerwall.kinect.events.FingerBimanualEvent;
+import de.hsbremen.powerwall.kinect.listener.BimanualListener;
+
+/**
+ * Derives zoom, rotate and pan from {@link BimanualPinchMessage}s while both
+ * hands are pinching.
+ * <p>
+ * Scale is the ratio of the current to the initial distance between the
+ * hands, rotation the angle of the line between the hands around the wall
+ * normal (z axis) and translation the movement of their centroid.
+ */
+public class BimanualRecognizer {
+
+	/** hands closer than this (in millimeters) give no usable scale or angle */
+	private static final float MIN_DISTANCE = 1f;
+
+	private boolean[] pressed = new boolean[HandTrackingMessage.N_HANDS];
+	private boolean active;
+
+	private float startDistance;
+	private float startX, startY, startZ;
+
+	private float lastScale;
+	private float lastAngle;
+	private float rotation;
+	private float lastX, lastY, lastZ;
+
+	private ArrayList<BimanualListener> bimanualListenerList = new ArrayList<BimanualListener>();
+
+	public void addBimanualListener(BimanualListener listener) {
+		bimanualListenerList.add(listener);
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void update(BimanualPinchMessage msg) {
+		Hand hand = msg.getHand();
+		switch(msg.getType()) {
+		case SIMULTANEOUSLY_PRESSED:
+			pressed[Hand.LEFT.id()] = true;
+			pressed[Hand.RIGHT.id()] = true;
+			break;
+		case INDIVIDUALLY_PRESSED:
+			pressed[hand.id()] = true;
+			break;
+		case SIMULTANEOUSLY_RELEASED:
+			pressed[Hand.LEFT.id()] = false;
+			pressed[Hand.RIGHT.id()] = false;
+			break;
+		case INDIVIDUALLY_RELEASED:
+			pressed[hand.id()] = false;
+			break;
+		case DRAGGED_BIMANUAL:
+			// both hands pinch, even if we missed one of the presses
+			pressed[Hand.LEFT.id()] = true;
+			pressed[Hand.RIGHT.id()] = true;
+			break;
+		default:
+			return;
+		}
+
+		Vector3f left = msg.getHandState(Hand.LEFT.id()).getPosition();
+		Vector3f right = msg.getHandState(Hand.RIGHT.id()).getPosition();
+		boolean both = pressed[Hand.LEFT.id()] && pressed[Hand.RIGHT.id()];
+
+		if(!active && both) {
+			start(left, right);
+		} else if(active && !both) {
+			end(left, right);
+		} else if(active) {
+			fire(left, right, false);
+		}
+	}
+
+	/**
+	 * Ends a running gesture, for instance when the connection is lost.
+	 */
+	public void reset() {
+		pressed[Hand.LEFT.id()] = false;
+		pressed[Hand.RIGHT.id()] = false;
+		active = false;
+	}
+
+	private void start(Vector3f left, Vector3f right) {
+		active = true;
+		startDistance = Math.max(distance(left, right), MIN_DISTANCE);
+		startX = (left.x + right.x) * 0.5f;
+		startY = (left.y + right.y) * 0.5f;
+		startZ = (left.z + right.z) * 0.5f;
+		lastScale = 1;
+		lastAngle = angle(left, right);
+		rotation = 0;
+		lastX = startX;
+		lastY = startY;
+		lastZ = startZ;
+
+		FingerBimanualEvent event = createEvent(left, right);
+		for(BimanualListener evt : bimanualListenerList) {
+			evt.onBimanualStart(event);
+		}
+	}
+
+	private void end(Vector3f left, Vector3f right) {
+		fire(left, right, true);
+		active = false;
+	}
+
+	private void fire(Vector3f left, Vector3f right, boolean end) {
+		FingerBimanualEvent event = createEvent(left, right);
+		for(BimanualListener evt : bimanualListenerList) {
+			if(end) {
+				evt.onBimanualEnd(event);
+			} else {
+				evt.onBimanualUpdate(event);
+			}
+		}
+	}
+
+	private FingerBimanualEvent createEvent(Vector3f left, Vector3f right) {
+		float x = (left.x + right.x) * 0.5f;
+		float y = (left.y + right.y) * 0.5f;
+		float z = (left.z + right.z) * 0.5f;
+
+		float distance = distance(left, right);
+		float scale = distance < MIN_DISTANCE ? lastScale : distance / startDistance;
+		float deltaScale = scale / lastScale;
+
+		float deltaRotation = 0;
+		if(distance >= MIN_DISTANCE) {
+			float angle = angle(left, right);
+			deltaRotation = wrap(angle - lastAngle);
+			lastAngle = angle;
+		}
+		rotation += deltaRotation;
+
+		FingerBimanualEvent event = new FingerBimanualEvent(new Vector3f(x, y, z),
+				new Vector3f(left), new Vector3f(right),
+				scale, rotation, new Vector3f(x - startX, y - startY, z - startZ),
+				deltaScale, deltaRotation, new Vector3f(x - lastX, y - lastY, z - lastZ));
+
+		lastScale = scale;
+		lastX = x;
+		lastY = y;
+		lastZ = z;
+		return event;
+	}
+
+	private static float distance(Vector3f left, Vector3f right) {
+		float dx = right.x - left.x;
+		float dy = right.y - left.y;
+		float dz = right.z - left.z;
+		return (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	private static float angle(Vector3f left, Vector3f right) {
+		return (float)Math.atan2(right.y - left.y, right.x - left.x);
+	}
+
+	private static float wrap(float angle) {
+		while(angle > Math.PI) angle -= 2 * Math.PI;
+		while(angle <= -Math.PI) angle += 2 * Math.PI;
+		return angle;
+	}
+}
@@ -0,0 +1,23 @@
+package de.hsbremen.powerwall.kinect;
+
+/**
+ * Time source of a {@link FingerTracker}. Click, pose and gesture timing use
+ * this clock, so replayed sessions behave as they did when recorded.
+ */
+public interface Clock {
+
+	/**
+	 * The system clock.
+	 */
+	public static final Clock SYSTEM = new Clock() {
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * @return current time in milliseconds since the epoch
+	 */
+	public long currentTimeMillis();
+}
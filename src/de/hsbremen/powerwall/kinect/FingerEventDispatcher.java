@@ -0,0 +1,719 @@
+package de.hsbremen.powerwall.kinect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingTracer;
+import com.threegear.gloveless.network.LatencyPolicy;
+import com.threegear.gloveless.network.ListenerStats;
+import com.threegear.gloveless.network.MonitoredListener;
+
+import de.hsbremen.powerwall.kinect.events.FingerBaseEvent;
+import de.hsbremen.powerwall.kinect.events.FingerBatchEvent;
+import de.hsbremen.powerwall.kinect.events.FingerDragEvent;
+import de.hsbremen.powerwall.kinect.events.FingerEventType;
+import de.hsbremen.powerwall.kinect.listener.BatchListener;
+import de.hsbremen.powerwall.kinect.listener.ClickListener;
+import de.hsbremen.powerwall.kinect.listener.DblClickListener;
+import de.hsbremen.powerwall.kinect.listener.DragListener;
+import de.hsbremen.powerwall.kinect.listener.MoveListener;
+
+/**
+ * Delivers the click, double click, drag and move events of a
+ * {@link FingerTracker} to the registered listeners.
+ * <p>
+ * By default every event is delivered immediately on the thread that
+ * dispatches it. In batching mode move and drag events are collected and only
+ * delivered once per tick: the listeners get the latest move and drag event of
+ * each hand and the {@link BatchListener}s get all updates of the tick in one
+ * {@link FingerBatchEvent}. Discrete events like clicks are never delayed;
+ * pending move and drag events are flushed before them to keep the order.
+ * Batches are flushed either by an internal timer or by calling
+ * {@link #flush()}, for instance once per frame from a render loop.
+ * <p>
+ * Batched events are copied into events owned by the dispatcher, so recycled
+ * events may be refilled by the tracker while a batch is pending. Listeners
+ * are never called while the dispatcher holds its lock: a flush only takes the
+ * pending events and queues them for delivery. Deliveries are serialized; if
+ * another thread is delivering, that thread also delivers the events of the
+ * flush, so a slow batch listener doesn't block the thread dispatching moves.
+ * <p>
+ * With priority lanes the listeners are called from a delivery thread instead.
+ * Discrete events go to a high-priority lane that is always drained first.
+ * Move and drag events go to a low-priority lane that keeps only the latest
+ * event per hand and type, so a flood of movement never delays a click. To
+ * keep the order per hand (press before drag before release), a pending
+ * move or drag of a hand is promoted to the high-priority lane ahead of the
+ * next discrete event of that hand.
+ * <p>
+ * Every listener call is timed; see {@link #getListenerStats()}. With a
+ * {@link LatencyPolicy} listeners that keep exceeding their budget are moved
+ * to their own thread or disabled. Events for listeners on their own thread
+ * are snapshots, so these listeners may keep them.
+ */
+public class FingerEventDispatcher {
+
+	private List<MonitoredListener<ClickListener>> clickListenerList = new CopyOnWriteArrayList<MonitoredListener<ClickListener>>();
+	private List<MonitoredListener<DblClickListener>> dblClickListenerList = new CopyOnWriteArrayList<MonitoredListener<DblClickListener>>();
+	private List<MonitoredListener<DragListener>> dragListenerList = new CopyOnWriteArrayList<MonitoredListener<DragListener>>();
+	private List<MonitoredListener<MoveListener>> moveListenerList = new CopyOnWriteArrayList<MonitoredListener<MoveListener>>();
+	private volatile LatencyPolicy latencyPolicy;
+	private volatile HandTrackingTracer tracer;
+	private List<BatchListener> batchListenerList = new CopyOnWriteArrayList<BatchListener>();
+
+	private volatile boolean batching;
+	/** guards the pending events; never held while listeners are called */
+	private final Object batchLock = new Object();
+	private FingerBatchEvent batch;
+	private FingerBatchEvent spareBatch;
+	private boolean keepHistory;
+	private boolean[] pendingMove = new boolean[HandTrackingMessage.N_HANDS];
+	private boolean[] pendingDrag = new boolean[HandTrackingMessage.N_HANDS];
+	private FingerBaseEvent[] moveEvent = new FingerBaseEvent[HandTrackingMessage.N_HANDS];
+	private FingerDragEvent[] dragEvent = new FingerDragEvent[HandTrackingMessage.N_HANDS];
+	private ScheduledExecutorService timer;
+	private volatile Lanes lanes;
+	private final AtomicLong conflated = new AtomicLong();
+	private final ConcurrentLinkedQueue<Delivery> deliveries = new ConcurrentLinkedQueue<Delivery>();
+	private final AtomicInteger delivering = new AtomicInteger();
+
+	public FingerEventDispatcher() {
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			moveEvent[hand] = new FingerBaseEvent();
+			dragEvent[hand] = new FingerDragEvent();
+		}
+	}
+
+	public void addClickListener(ClickListener listener) {
+		clickListenerList.add(new MonitoredListener<ClickListener>(listener, "ClickListener"));
+	}
+
+	public void addDblClickListener(DblClickListener listener) {
+		dblClickListenerList.add(new MonitoredListener<DblClickListener>(listener, "DblClickListener"));
+	}
+
+	public void addDragListener(DragListener listener) {
+		dragListenerList.add(new MonitoredListener<DragListener>(listener, "DragListener"));
+	}
+
+	public void addMoveListener(MoveListener listener) {
+		moveListenerList.add(new MonitoredListener<MoveListener>(listener, "MoveListener"));
+	}
+
+	/**
+	 * Sets the latency budget for listeners, or null to never quarantine them.
+	 */
+	public void setLatencyPolicy(LatencyPolicy policy) {
+		this.latencyPolicy = policy;
+	}
+
+	/**
+	 * Reports the return of every listener to the given tracer, or stops
+	 * reporting if null.
+	 */
+	public void setTracer(HandTrackingTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * @return call counts and latencies of all registered click, double click,
+	 * drag and move listeners
+	 */
+	public List<ListenerStats> getListenerStats() {
+		List<ListenerStats> stats = new ArrayList<ListenerStats>();
+		for(List<? extends MonitoredListener<?>> list : listenerLists()) {
+			for(MonitoredListener<?> listener : list) {
+				stats.add(listener.getStats());
+			}
+		}
+		return stats;
+	}
+
+	private List<List<? extends MonitoredListener<?>>> listenerLists() {
+		List<List<? extends MonitoredListener<?>>> lists = new ArrayList<List<? extends MonitoredListener<?>>>();
+		lists.add(clickListenerList);
+		lists.add(dblClickListenerList);
+		lists.add(dragListenerList);
+		lists.add(moveListenerList);
+		return lists;
+	}
+
+	public void addBatchListener(BatchListener listener) {
+		batchListenerList.add(listener);
+	}
+
+	/**
+	 * Switches to batched delivery of move and drag events.
+	 * 
+	 * @param intervalMillis tick of the internal timer, or 0 to flush only on
+	 * calls to {@link #flush()}
+	 * @param keepHistory whether batch events contain all intermediate positions
+	 */
+	public void enableBatching(long intervalMillis, boolean keepHistory) {
+		synchronized(batchLock) {
+			stopBatching();
+			this.keepHistory = keepHistory;
+			batch = new FingerBatchEvent(keepHistory);
+			spareBatch = null;
+			batching = true;
+			if(intervalMillis > 0) {
+				timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "FingerTracker batch");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				timer.scheduleAtFixedRate(new Runnable() {
+					@Override
+					public void run() {
+						flush();
+					}
+				}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		deliverQueued();
+	}
+
+	/**
+	 * Delivers pending events and switches back to immediate delivery.
+	 */
+	public void disableBatching() {
+		synchronized(batchLock) {
+			stopBatching();
+		}
+		deliverQueued();
+	}
+
+	/**
+	 * Queues the pending events and stops the timer; called with the batch lock.
+	 */
+	private void stopBatching() {
+		if(!batching) return;
+		if(timer != null) {
+			timer.shutdown();
+			timer = null;
+		}
+		takePending();
+		batching = false;
+	}
+
+	/**
+	 * Starts a delivery thread with a high-priority lane for discrete events and
+	 * a conflating low-priority lane for move and drag events.
+	 */
+	public void enablePriorityLanes() {
+		synchronized(batchLock) {
+			if(lanes != null) return;
+			lanes = new Lanes();
+			lanes.start();
+		}
+	}
+
+	/**
+	 * Delivers all queued events and stops the delivery thread. Waits until
+	 * the delivery thread is done, so later events are delivered after the
+	 * queued ones; called from a listener on that thread, it returns at once.
+	 */
+	public void disablePriorityLanes() {
+		Lanes stopping;
+		synchronized(batchLock) {
+			stopping = lanes;
+		}
+		if(stopping == null) return;
+		stopping.stop();
+		stopping.join();
+		synchronized(batchLock) {
+			if(lanes == stopping) {
+				lanes = null;
+			}
+		}
+	}
+
+	public boolean isBatching() {
+		return batching;
+	}
+
+	/**
+	 * @return number of events waiting for delivery, either in the current
+	 * batch or in the priority lanes
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		synchronized(batchLock) {
+			for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+				if(pendingMove[hand]) depth++;
+				if(pendingDrag[hand]) depth++;
+			}
+		}
+		depth += deliveries.size();
+		Lanes current = lanes;
+		if(current != null) {
+			depth += current.depth();
+		}
+		return depth;
+	}
+
+	/**
+	 * @return number of move and drag events that were replaced by a newer one
+	 * before they were delivered
+	 */
+	public long getConflatedCount() {
+		return conflated.get();
+	}
+
+	/**
+	 * @return number of events dropped because a quarantined listener fell behind
+	 */
+	public long getDroppedCount() {
+		long dropped = 0;
+		for(ListenerStats stats : getListenerStats()) {
+			dropped += stats.getDropped();
+		}
+		return dropped;
+	}
+
+	/**
+	 * Delivers the move and drag events collected since the last flush. If
+	 * another thread is delivering events, they are left to that thread.
+	 */
+	public void flush() {
+		synchronized(batchLock) {
+			if(!batching) return;
+			takePending();
+		}
+		deliverQueued();
+	}
+
+	public void dispatch(FingerEventType type, Hand hand, FingerBaseEvent event, long when) {
+		if(!batching && delivering.compareAndSet(0, 1)) {
+			// no other thread is delivering: deliver directly, after anything queued
+			boolean done = false;
+			try {
+				Delivery delivery;
+				while((delivery = deliveries.poll()) != null) {
+					delivery.deliver();
+				}
+				emit(type, hand, event);
+				done = true;
+			} finally {
+				if(!done) {
+					delivering.set(0);
+				}
+			}
+			drain(1);
+			return;
+		}
+		synchronized(batchLock) {
+			if(batching && type == FingerEventType.MOVE) {
+				if(pendingMove[hand.id()]) conflated.incrementAndGet();
+				pendingMove[hand.id()] = true;
+				moveEvent[hand.id()].set(event.getPosition());
+				batch.addMove(hand, event.getPosition(), when);
+				return;
+			} else if(batching && type == FingerEventType.DRAG) {
+				FingerDragEvent drag = (FingerDragEvent)event;
+				if(pendingDrag[hand.id()]) conflated.incrementAndGet();
+				pendingDrag[hand.id()] = true;
+				dragEvent[hand.id()].set(drag.getDragStart(), drag.getDragPosition());
+				batch.addDrag(hand, drag.getDragStart());
+				return;
+			}
+			if(batching) {
+				takePending();
+			}
+			deliveries.add(new Delivery(type, hand, event.snapshot()));
+		}
+		deliverQueued();
+	}
+
+	/**
+	 * Queues the pending moves, drags and the batch for delivery; called with
+	 * the batch lock.
+	 */
+	private void takePending() {
+		if(batch.isEmpty()) return;
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			if(pendingDrag[hand]) {
+				pendingDrag[hand] = false;
+				deliveries.add(new Delivery(FingerEventType.DRAG, Hand.fromId(hand), dragEvent[hand].snapshot()));
+			}
+			if(pendingMove[hand]) {
+				pendingMove[hand] = false;
+				deliveries.add(new Delivery(FingerEventType.MOVE, Hand.fromId(hand), moveEvent[hand].snapshot()));
+			}
+		}
+		if(batchListenerList.isEmpty()) {
+			batch.clear();
+			return;
+		}
+		deliveries.add(new Delivery(batch));
+		batch = spareBatch != null ? spareBatch : new FingerBatchEvent(keepHistory);
+		spareBatch = null;
+	}
+
+	/**
+	 * Delivers the queued events unless another thread is already doing so;
+	 * that thread then also delivers the events queued by this one.
+	 */
+	private void deliverQueued() {
+		if(delivering.getAndIncrement() != 0) return;
+		drain(1);
+	}
+
+	/**
+	 * Delivers the queued events until no other thread left work; called by
+	 * the thread that claimed the delivery.
+	 */
+	private void drain(int missed) {
+		boolean done = false;
+		try {
+			do {
+				Delivery delivery;
+				while((delivery = deliveries.poll()) != null) {
+					delivery.deliver();
+				}
+				missed = delivering.addAndGet(-missed);
+			} while(missed != 0);
+			done = true;
+		} finally {
+			if(!done) {
+				// a listener threw; let the next caller deliver the rest
+				delivering.set(0);
+			}
+		}
+	}
+
+	private void emit(FingerEventType type, Hand hand, FingerBaseEvent event) {
+		Lanes current = lanes;
+		if(current == null || !current.offer(type, hand, event)) {
+			deliver(type, hand, event);
+		}
+	}
+
+	private void deliver(FingerEventType type, Hand hand, FingerBaseEvent event) {
+		switch(type) {
+		case PRESS:
+		case RELEASE:
+		case CLICK:
+			deliver(clickListenerList, type, hand, event);
+			break;
+		case DBL_CLICK:
+			deliver(dblClickListenerList, type, hand, event);
+			break;
+		case DRAG_START:
+		case DRAG:
+		case DRAG_END:
+			deliver(dragListenerList, type, hand, event);
+			break;
+		case MOVE:
+			deliver(moveListenerList, type, hand, event);
+			break;
+		}
+	}
+
+	private void deliver(List<? extends MonitoredListener<?>> listeners, final FingerEventType type, final Hand hand, FingerBaseEvent event) {
+		LatencyPolicy policy = latencyPolicy;
+		HandTrackingTracer tracer = this.tracer;
+		for(final MonitoredListener<?> listener : listeners) {
+			if(listener.isDisabled()) continue;
+			if(listener.isAsync()) {
+				final FingerBaseEvent snapshot = event.snapshot();
+				listener.execute(new Runnable() {
+					@Override
+					public void run() {
+						long start = System.nanoTime();
+						call(listener.getListener(), type, hand, snapshot);
+						listener.record(System.nanoTime() - start, null);
+					}
+				}, type.isContinuous());
+				continue;
+			}
+			long start = System.nanoTime();
+			call(listener.getListener(), type, hand, event);
+			long end = System.nanoTime();
+			listener.record(end - start, policy);
+			if(tracer != null) tracer.listenerReturned(listener.getListener(), end);
+		}
+	}
+
+	private static void call(Object listener, FingerEventType type, Hand hand, FingerBaseEvent event) {
+		boolean left = hand == Hand.LEFT;
+		switch(type) {
+		case PRESS:
+			if(left) ((ClickListener)listener).onLeftPress(event); else ((ClickListener)listener).onRightPress(event);
+			break;
+		case RELEASE:
+			if(left) ((ClickListener)listener).onLeftRelease(event); else ((ClickListener)listener).onRightRelease(event);
+			break;
+		case CLICK:
+			if(left) ((ClickListener)listener).onLeftClick(event); else ((ClickListener)listener).onRightClick(event);
+			break;
+		case DBL_CLICK:
+			if(left) ((DblClickListener)listener).onLeftDblClick(event); else ((DblClickListener)listener).onRightDblClick(event);
+			break;
+		case DRAG_START:
+			if(left) ((DragListener)listener).onLeftHandDragStart((FingerDragEvent)event); else ((DragListener)listener).onRightHandDragStart((FingerDragEvent)event);
+			break;
+		case DRAG:
+			if(left) ((DragListener)listener).onLeftHandDrag((FingerDragEvent)event); else ((DragListener)listener).onRightHandDrag((FingerDragEvent)event);
+			break;
+		case DRAG_END:
+			if(left) ((DragListener)listener).onLeftHandDragEnd((FingerDragEvent)event); else ((DragListener)listener).onRightHandDragEnd((FingerDragEvent)event);
+			break;
+		case MOVE:
+			if(left) ((MoveListener)listener).onLeftHandMove(event); else ((MoveListener)listener).onRightHandMove(event);
+			break;
+		}
+	}
+
+	/**
+	 * An event or a batch queued for delivery. The event is never recycled.
+	 */
+	private class Delivery {
+		private final FingerEventType type;
+		private final Hand hand;
+		private final FingerBaseEvent event;
+		private final FingerBatchEvent batch;
+
+		Delivery(FingerEventType type, Hand hand, FingerBaseEvent event) {
+			this.type = type;
+			this.hand = hand;
+			this.event = event;
+			this.batch = null;
+		}
+
+		Delivery(FingerBatchEvent batch) {
+			this.type = null;
+			this.hand = null;
+			this.event = null;
+			this.batch = batch;
+		}
+
+		void deliver() {
+			if(batch == null) {
+				emit(type, hand, event);
+				return;
+			}
+			for(BatchListener evt : batchListenerList) {
+				evt.onBatch(batch);
+			}
+			batch.clear();
+			synchronized(batchLock) {
+				// reuse the batch unless batching was restarted meanwhile
+				if(batching && spareBatch == null && batch.isKeepHistory() == keepHistory) {
+					spareBatch = batch;
+				}
+			}
+		}
+	}
+
+	/**
+	 * One queued event. Recycled events are copied into the entry, immutable
+	 * events are queued as they are.
+	 */
+	private static class Entry {
+		private FingerEventType type;
+		private Hand hand;
+		private FingerBaseEvent event;
+		private FingerBaseEvent ownEvent = new FingerBaseEvent();
+		private FingerDragEvent ownDragEvent = new FingerDragEvent();
+
+		void set(FingerEventType type, Hand hand, FingerBaseEvent event) {
+			this.type = type;
+			this.hand = hand;
+			if(!event.isRecycled()) {
+				this.event = event;
+			} else if(event instanceof FingerDragEvent) {
+				FingerDragEvent drag = (FingerDragEvent)event;
+				ownDragEvent.set(drag.getDragStart(), drag.getDragPosition());
+				this.event = ownDragEvent;
+			} else {
+				ownEvent.set(event.getPosition());
+				this.event = ownEvent;
+			}
+		}
+
+		void set(Entry entry) {
+			set(entry.type, entry.hand, entry.event);
+		}
+	}
+
+	private class Lanes implements Runnable {
+		private final int CONTINUOUS = 2;
+
+		private Entry[] high = new Entry[64];
+		private int head;
+		private int size;
+
+		/** pending move and drag per hand, indexed by hand * CONTINUOUS + (drag ? 1 : 0) */
+		private Entry[] low = new Entry[HandTrackingMessage.N_HANDS * CONTINUOUS];
+		private boolean[] pending = new boolean[HandTrackingMessage.N_HANDS * CONTINUOUS];
+		private int nextLow;
+
+		/** copy of a low-priority entry that is being delivered */
+		private Entry current = new Entry();
+		private boolean running = true;
+		/** set once stopped and drained; later events are delivered directly */
+		private boolean drained;
+		private final Thread thread = new Thread(this, "FingerTracker delivery");
+
+		Lanes() {
+			for(int i = 0; i < high.length; i++) {
+				high[i] = new Entry();
+			}
+			for(int i = 0; i < low.length; i++) {
+				low[i] = new Entry();
+			}
+		}
+
+		void start() {
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * @return false if the lanes are drained and the event must be delivered
+		 * by the caller
+		 */
+		synchronized boolean offer(FingerEventType type, Hand hand, FingerBaseEvent event) {
+			if(drained) return false;
+			if(type.isContinuous()) {
+				int slot = hand.id() * CONTINUOUS + (type == FingerEventType.DRAG ? 1 : 0);
+				low[slot].set(type, hand, event);
+				if(pending[slot]) conflated.incrementAndGet();
+				pending[slot] = true;
+			} else {
+				// keep the causal order of this hand: its pending drag and move come first
+				int slot = hand.id() * CONTINUOUS;
+				if(pending[slot + 1]) {
+					pending[slot + 1] = false;
+					add(low[slot + 1]);
+				}
+				if(pending[slot]) {
+					pending[slot] = false;
+					add(low[slot]);
+				}
+				add(type, hand, event);
+			}
+			notifyAll();
+			return true;
+		}
+
+		synchronized int depth() {
+			int depth = size;
+			for(int i = 0; i < pending.length; i++) {
+				if(pending[i]) depth++;
+			}
+			return depth;
+		}
+
+		private void add(Entry entry) {
+			add(entry.type, entry.hand, entry.event);
+		}
+
+		private void add(FingerEventType type, Hand hand, FingerBaseEvent event) {
+			if(size == high.length) {
+				Entry[] grown = new Entry[high.length * 2];
+				for(int i = 0; i < size; i++) {
+					grown[i] = high[(head + i) % high.length];
+				}
+				for(int i = size; i < grown.length; i++) {
+					grown[i] = new Entry();
+				}
+				high = grown;
+				head = 0;
+			}
+			high[(head + size) % high.length].set(type, hand, event);
+			size++;
+		}
+
+		/**
+		 * @return the next entry to deliver, or null once stopped and drained
+		 */
+		private synchronized Entry take() throws InterruptedException {
+			while(true) {
+				if(size > 0) {
+					// the entry stays in the ring until it was delivered
+					return high[head];
+				}
+				for(int i = 0; i < low.length; i++) {
+					int slot = (nextLow + i) % low.length;
+					if(pending[slot]) {
+						pending[slot] = false;
+						nextLow = slot + 1;
+						current.set(low[slot]);
+						return current;
+					}
+				}
+				if(!running) {
+					drained = true;
+					return null;
+				}
+				wait();
+			}
+		}
+
+		private synchronized void delivered(Entry entry) {
+			if(entry != current) {
+				head = (head + 1) % high.length;
+				size--;
+			}
+		}
+
+		synchronized void stop() {
+			running = false;
+			notifyAll();
+		}
+
+		/**
+		 * Waits until the queued events are delivered, unless called from the
+		 * delivery thread itself.
+		 */
+		void join() {
+			if(Thread.currentThread() == thread) return;
+			boolean interrupted = false;
+			while(true) {
+				try {
+					thread.join();
+					break;
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Entry entry;
+				while((entry = take()) != null) {
+					try {
+						deliver(entry.type, entry.hand, entry.event);
+					} finally {
+						delivered(entry);
+					}
+				}
+			} catch(InterruptedException e) {
+				synchronized(this) {
+					drained = true;
+				}
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
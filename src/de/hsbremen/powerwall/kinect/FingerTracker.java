@@ -1,24 +1,50 @@
 package de.hsbremen.powerwall.kinect;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.vecmath.Vector3f;
 
+import com.threegear.gloveless.network.BasicMessage;
+import com.threegear.gloveless.network.BimanualPinchMessage;
 import com.threegear.gloveless.network.HandTrackingAdapter;
 import com.threegear.gloveless.network.HandTrackingClient;
 import com.threegear.gloveless.network.HandTrackingMessage;
 import com.threegear.gloveless.network.HandTrackingMessage.Hand;
 import com.threegear.gloveless.network.HandTrackingMessage.HandState;
 import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+import com.threegear.gloveless.network.HandTrackingSource;
+import com.threegear.gloveless.network.LatencyPolicy;
+import com.threegear.gloveless.network.ListenerStats;
 import com.threegear.gloveless.network.PinchMessage;
+import com.threegear.gloveless.network.PointMessage;
+import com.threegear.gloveless.network.PoseMessage;
 
 import de.hsbremen.powerwall.kinect.events.FingerBaseEvent;
 import de.hsbremen.powerwall.kinect.events.FingerDragEvent;
+import de.hsbremen.powerwall.kinect.events.FingerEventType;
+import de.hsbremen.powerwall.kinect.events.FingerFrame;
+import de.hsbremen.powerwall.kinect.flow.FingerFilters;
+import de.hsbremen.powerwall.kinect.flow.FlowPublisher;
+import de.hsbremen.powerwall.kinect.flow.TrackedEvent;
+import de.hsbremen.powerwall.kinect.listener.BatchListener;
+import de.hsbremen.powerwall.kinect.listener.BimanualListener;
 import de.hsbremen.powerwall.kinect.listener.ClickListener;
 import de.hsbremen.powerwall.kinect.listener.DblClickListener;
 import de.hsbremen.powerwall.kinect.listener.DragListener;
+import de.hsbremen.powerwall.kinect.listener.FrameListener;
+import de.hsbremen.powerwall.kinect.listener.GestureListener;
 import de.hsbremen.powerwall.kinect.listener.MoveListener;
+import de.hsbremen.powerwall.kinect.listener.PointListener;
+import de.hsbremen.powerwall.kinect.listener.PoseListener;
+import de.hsbremen.powerwall.kinect.metrics.FrameTracer;
+import de.hsbremen.powerwall.kinect.metrics.Gauge;
+import de.hsbremen.powerwall.kinect.metrics.TrackingMetrics;
 
 public class FingerTracker {
 
@@ -30,230 +56,636 @@ public class FingerTracker {
 	public final static String EVENT_RIGHT_RELEASED = "RIGHT_RELEASE";
 	public final static String EVENT_RIGHT_MOVE = "RIGHT_MOVE";
 
-	private boolean leftHandPress = false;
-	private boolean leftHandDrag = false;
-	private boolean rightHandPress = false;
-	private boolean rightHandDrag = false;
-
-	private Vector3f leftDragStart;
-	private Vector3f rightDragStart;
-
-	private long leftPressedWhen;
-	private long leftFirstClickWhen;
-	private long rightPressedWhen;
-	private long rightFirstClickWhen;
+	private TrackedHand[] hands = new TrackedHand[] { new TrackedHand(Hand.LEFT), new TrackedHand(Hand.RIGHT) };
 	
-	private HandTrackingClient client = new HandTrackingClient();
-
-	private ArrayList<ClickListener> clickListenerList = new ArrayList<ClickListener>();
-	private ArrayList<DblClickListener> dblClickListenerList = new ArrayList<DblClickListener>();
-	private ArrayList<DragListener> dragListenerList = new ArrayList<DragListener>();
-	private ArrayList<MoveListener> moveListenerList = new ArrayList<MoveListener>();
+	private HandStateSlot[] latest = new HandStateSlot[] { new HandStateSlot(), new HandStateSlot() };
+	
+	private final HandTrackingSource source;
+	
+	private final Clock clock;
+	
+	private FingerEventDispatcher dispatcher = new FingerEventDispatcher();
+	
+	private PoseRecognizer poseRecognizer = new PoseRecognizer();
+	
+	private GestureRecognizer gestureRecognizer = new GestureRecognizer();
+	
+	private BimanualRecognizer bimanualRecognizer = new BimanualRecognizer();
+	
+	private PointRecognizer pointRecognizer = new PointRecognizer();
+	
+	private volatile boolean reuseEvents = false;
+	
+	private ArrayList<FrameListener> frameListenerList = new ArrayList<FrameListener>();
+	
+	private FingerFrame frame = new FingerFrame(true);
+	
+	private TrackingMetrics metrics = new TrackingMetrics();
+	
+	private volatile FrameTracer tracer;
+	
+	private volatile HitTestService hitTestService;
+	
+	private volatile FlowPublisher<TrackedEvent> eventPublisher;
+	
+	private volatile FlowPublisher<HandTrackingMessage> messagePublisher;
 	
 	public void addClickListener(ClickListener listener) {
-		clickListenerList.add(listener);
+		dispatcher.addClickListener(listener);
 	}
 	
 	public void addDblClickListener(DblClickListener listener) {
-		dblClickListenerList.add(listener);
+		dispatcher.addDblClickListener(listener);
 	}
 	
 	public void addDragListener(DragListener listener) {
-		dragListenerList.add(listener);
+		dispatcher.addDragListener(listener);
 	}
 	
 	public void addMoveListener(MoveListener listener) {
-		moveListenerList.add(listener);
+		dispatcher.addMoveListener(listener);
+	}
+	
+	/**
+	 * Registers a listener that gets the state of both hands once per message,
+	 * after all other events of the message were dispatched.
+	 */
+	public void addFrameListener(FrameListener listener) {
+		frameListenerList.add(listener);
+	}
+	
+	public void addBatchListener(BatchListener listener) {
+		dispatcher.addBatchListener(listener);
+	}
+	
+	/**
+	 * Delivers move and drag events once per tick instead of once per message.
+	 * 
+	 * @see FingerEventDispatcher#enableBatching(long, boolean)
+	 */
+	public void enableBatching(long intervalMillis, boolean keepHistory) {
+		dispatcher.enableBatching(intervalMillis, keepHistory);
+	}
+	
+	public void disableBatching() {
+		dispatcher.disableBatching();
+	}
+	
+	/**
+	 * Delivers the batched move and drag events now, for instance once per frame.
+	 */
+	public void flushBatch() {
+		dispatcher.flush();
+	}
+	
+	/**
+	 * In reuse mode each hand has one click/move event and one drag event that
+	 * is refilled for every message and passed to all listeners, instead of
+	 * allocating new events. The events are then only valid until the listener
+	 * returns; listeners that keep them must call {@link FingerBaseEvent#snapshot()}.
+	 */
+	public void setReuseEvents(boolean reuseEvents) {
+		this.reuseEvents = reuseEvents;
+	}
+	
+	public boolean isReuseEvents() {
+		return reuseEvents;
+	}
+	
+	/**
+	 * Delivers click, drag and move events from a separate thread, with clicks,
+	 * presses and releases taking priority over movement.
+	 * 
+	 * @see FingerEventDispatcher#enablePriorityLanes()
+	 */
+	public void enablePriorityLanes() {
+		dispatcher.enablePriorityLanes();
+	}
+	
+	public void disablePriorityLanes() {
+		dispatcher.disablePriorityLanes();
+	}
+	
+	/**
+	 * Sets the latency budget for the click, drag and move listeners and for
+	 * the listeners of the underlying source, or null to never quarantine them.
+	 */
+	public void setLatencyPolicy(LatencyPolicy policy) {
+		dispatcher.setLatencyPolicy(policy);
+		source.setLatencyPolicy(policy);
+	}
+	
+	/**
+	 * @return call counts and latencies of the click, double click, drag and
+	 * move listeners
+	 */
+	public List<ListenerStats> getListenerStats() {
+		return dispatcher.getListenerStats();
+	}
+	
+	/**
+	 * @return message rates, parse and dispatch times and queue depths of this
+	 * tracker; see {@link TrackingMetrics#registerMBean(String)} for JMX
+	 */
+	public TrackingMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Traces every n-th line from the socket read through parsing and the
+	 * tracker's decision to the return of each listener.
+	 * 
+	 * @param capacity number of traces kept
+	 * @param sampleEvery trace every n-th line, 1 to trace all lines
+	 * @return the tracer, see {@link FrameTracer#dump()} and {@link FrameTracer#report()}
+	 */
+	public FrameTracer enableTracing(int capacity, int sampleEvery) {
+		FrameTracer tracer = new FrameTracer(capacity, sampleEvery);
+		this.tracer = tracer;
+		dispatcher.setTracer(tracer);
+		source.setTracer(tracer);
+		return tracer;
+	}
+	
+	public void disableTracing() {
+		source.setTracer(null);
+		dispatcher.setTracer(null);
+		tracer = null;
+	}
+	
+	/**
+	 * @return the live client, or null if this tracker is fed by another source
+	 */
+	public HandTrackingClient getClient() {
+		return source instanceof HandTrackingClient ? (HandTrackingClient)source : null;
+	}
+	
+	public HandTrackingSource getSource() {
+		return source;
+	}
+	
+	/**
+	 * Annotates pinch events with the target under the hand and fires hover
+	 * events, or stops doing so if null.
+	 */
+	public void setHitTestService(HitTestService hitTestService) {
+		this.hitTestService = hitTestService;
+	}
+	
+	public HitTestService getHitTestService() {
+		return hitTestService;
+	}
+	
+	/**
+	 * Publishes the click, double click, drag and move events to subscribers
+	 * that request them at their own pace; created on first use. The events
+	 * are snapshots, so they stay valid in reuse mode.
+	 * 
+	 * @see FlowPublisher
+	 * @see FingerFilters
+	 */
+	public synchronized FlowPublisher<TrackedEvent> getEventPublisher() {
+		if(eventPublisher == null) {
+			eventPublisher = new FlowPublisher<TrackedEvent>("Finger event publisher", FingerFilters.CONTINUOUS_EVENTS);
+		}
+		return eventPublisher;
+	}
+	
+	/**
+	 * Publishes all messages of the source to subscribers that request them
+	 * at their own pace; created on first use.
+	 * 
+	 * @see FlowPublisher
+	 * @see FingerFilters
+	 */
+	public synchronized FlowPublisher<HandTrackingMessage> getMessagePublisher() {
+		if(messagePublisher == null) {
+			final FlowPublisher<HandTrackingMessage> publisher = new FlowPublisher<HandTrackingMessage>(
+					"Hand tracking message publisher", FingerFilters.CONTINUOUS_MESSAGES);
+			source.addListener(new HandTrackingAdapter() {
+				@Override
+				public void handleEvent(HandTrackingMessage message) {
+					publisher.submit(message);
+				}
+			}, false);
+			messagePublisher = publisher;
+		}
+		return messagePublisher;
+	}
+	
+	/**
+	 * Copies the latest state of a hand into the given object, for instance
+	 * once per frame of a render loop. Never blocks and doesn't allocate; may
+	 * be called from any thread, but each thread needs its own state objects.
+	 * 
+	 * @param hand LEFT or RIGHT
+	 * @return false if no message arrived yet
+	 */
+	public boolean latestState(Hand hand, LatestHandState out) {
+		return latestSlot(hand).read(out);
+	}
+	
+	/**
+	 * @return a new copy of the latest state of the hand, or null if no
+	 * message arrived yet
+	 * @see #latestState(Hand, LatestHandState)
+	 */
+	public LatestHandState latestState(Hand hand) {
+		LatestHandState state = new LatestHandState();
+		return latestSlot(hand).read(state) ? state : null;
+	}
+	
+	/**
+	 * @return version of the latest state of the hand, 0 before the first
+	 * message; cheap enough to poll for changes
+	 */
+	public long getLatestSequence(Hand hand) {
+		return latestSlot(hand).getSequence();
+	}
+	
+	private HandStateSlot latestSlot(Hand hand) {
+		if(hand != Hand.LEFT && hand != Hand.RIGHT) {
+			throw new IllegalArgumentException("no state for " + hand);
+		}
+		return latest[hand.id()];
+	}
+	
+	public void addPoseListener(PoseListener listener) {
+		poseRecognizer.addPoseListener(listener);
+	}
+	
+	public PoseRecognizer getPoseRecognizer() {
+		return poseRecognizer;
+	}
+	
+	public void addGestureListener(GestureListener listener) {
+		gestureRecognizer.addGestureListener(listener);
+	}
+	
+	public GestureRecognizer getGestureRecognizer() {
+		return gestureRecognizer;
 	}
 	
+	public void addBimanualListener(BimanualListener listener) {
+		bimanualRecognizer.addBimanualListener(listener);
+	}
+	
+	public void addPointListener(PointListener listener) {
+		pointRecognizer.addPointListener(listener);
+	}
+	
+	public PointRecognizer getPointRecognizer() {
+		return pointRecognizer;
+	}
+	
+	/**
+	 * @return a builder for a tracker that connects in the background
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Creates a tracker connected to the hand tracking server on the local host.
+	 * 
+	 * @see #builder()
+	 */
 	public FingerTracker() throws IOException {
-		client.addListener(new HandTrackingAdapter(){
+		this(new HandTrackingClient(), Clock.SYSTEM);
+		source.start();
+
+//		addDragListener(dragListener);
+//		addMoveListener(moveListener);
+//		addClickListener(clickListener);
+//		addDblClickListener(dblClickListener);
+	}
+	
+	/**
+	 * Creates a tracker fed by the given source, for instance a 
+	 * {@link de.hsbremen.powerwall.kinect.recording.ReplaySource}. The source
+	 * is not started, so listeners can be added first.
+	 * 
+	 * @param source
+	 * @param clock time source for click, pose and gesture timing
+	 */
+	public FingerTracker(HandTrackingSource source, Clock clock) {
+		this.source = source;
+		this.clock = clock;
+		source.addListener(new HandTrackingAdapter(){
 			@Override
 			public void handleEvent(HandTrackingMessage message) {
 				super.handleEvent(message);
+				long now = FingerTracker.this.clock.currentTimeMillis();
+				
+				if(message instanceof PointMessage) {
+					pointRecognizer.update((PointMessage)message, now);
+				}
+				
+				if(message instanceof PoseMessage) {
+					poseRecognizer.update((PoseMessage)message, now);
+				}
 				
-//				if(message instanceof PointMessage) {
-//					PointMessage msg = (PointMessage)message;
-//					System.out.println("direction: " + msg.getDirection());
-//					System.out.println("end: " + msg.getEnd());
-//				}
+				if(message instanceof BimanualPinchMessage) {
+					bimanualRecognizer.update((BimanualPinchMessage)message);
+				}
 				
 				if(message instanceof PinchMessage) {
-					PinchMessage msg = (PinchMessage)message;
-					Hand hand = msg.getHand();
-					HandState state = msg.getHandState(hand.id());
-					
-
-					/*
-					 * 
-					 * 
-					 * 
-					 * 
-					 * 
-					 * PRESS
-					 * 
-					 * 
-					 * 
-					 * 
-					 */
-					if(msg.getType() == MessageType.DRAGGED) {
-						
-						if(msg.getHand() == Hand.LEFT) {
-							if(!leftHandPress) {
-								leftDragStart = msg.getHandState(msg.getHand().id()).getPosition();
-								for(ClickListener evt : clickListenerList) {
-									evt.onLeftPress(new FingerBaseEvent(state.getPosition()));
-								}
-								leftHandPress = true;
-								leftPressedWhen = System.currentTimeMillis();
-							}
-						}
-						if(msg.getHand() == Hand.RIGHT) {
-							if(!rightHandPress) {
-								rightDragStart = msg.getHandState(msg.getHand().id()).getPosition();
-								for(ClickListener evt : clickListenerList) {
-									evt.onRightPress(new FingerBaseEvent(state.getPosition()));
-								}
-								rightHandPress = true;
-								rightPressedWhen = System.currentTimeMillis();
-							}
-						}
+					handlePinch((PinchMessage)message, now);
+				}
+				
+				FrameTracer tracer = FingerTracker.this.tracer;
+				if(tracer != null) tracer.decision();
+				
+				if(message instanceof BasicMessage) {
+					updateLatest((BasicMessage)message, now);
+					if(!frameListenerList.isEmpty()) {
+						fireFrame((BasicMessage)message, now);
 					}
+				}
+			}
+			
+			@Override
+			public void handleConnectionClosed() {
+				bimanualRecognizer.reset();
+				pointRecognizer.reset();
+				// the last gesture of a replay may still wait for competing templates
+				for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+					gestureRecognizer.finish(Hand.fromId(hand));
+				}
+			}
+		}, false);
+		source.setMonitor(metrics);
+		metrics.registerGauge("queueDepth", new Gauge() {
+			@Override
+			public long getValue() {
+				return dispatcher.getQueueDepth();
+			}
+		});
+		metrics.registerGauge("conflated", new Gauge() {
+			@Override
+			public long getValue() {
+				return dispatcher.getConflatedCount();
+			}
+		});
+		metrics.registerGauge("dropped", new Gauge() {
+			@Override
+			public long getValue() {
+				long dropped = dispatcher.getDroppedCount();
+				for(ListenerStats stats : FingerTracker.this.source.getListenerStats()) {
+					dropped += stats.getDropped();
+				}
+				return dropped;
+			}
+		});
+	}
+	
+	/**
+	 * Starts the source of a tracker that was built or created with a source.
+	 * A {@link HandTrackingClient} connects in the background, so this returns
+	 * immediately; other sources are started on the calling thread.
+	 * 
+	 * @return completes once the tracker is connected
+	 * @see HandTrackingClient#connectAsync()
+	 */
+	public Future<Void> start() {
+		HandTrackingClient client = getClient();
+		if(client != null) {
+			return client.connectAsync();
+		}
+		FutureTask<Void> starting = new FutureTask<Void>(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				source.start();
+				return null;
+			}
+		});
+		starting.run();
+		return starting;
+	}
+	
+	private void handlePinch(PinchMessage msg, long now) {
+		Hand hand = msg.getHand();
+		if(hand != Hand.LEFT && hand != Hand.RIGHT) return;
+		TrackedHand tracked = hands[hand.id()];
+		Vector3f position = msg.getHandState(hand.id()).getPosition();
+		boolean reuse = reuseEvents;
+		if(reuse) {
+			tracked.event.set(position);
+		}
+		HitTestService hitTestService = this.hitTestService;
+		tracked.target = hitTestService != null ? hitTestService.update(hand, position) : null;
 
-					/*
-					 * 
-					 * 
-					 * 
-					 * 
-					 * 
-					 * RELEASE
-					 * 
-					 * 
-					 * 
-					 * 
-					 */
-					if(msg.getType() == MessageType.RELEASED) {
-						if(msg.getHand() == Hand.LEFT) {
-							if(leftHandPress) {
-								if(leftHandDrag) {
-									leftHandDrag = false;
-									
-									for(DragListener evt : dragListenerList) {
-										evt.onLeftHandDragEnd(new FingerDragEvent(leftDragStart, state.getPosition()));
-									}
-								}
-								for(ClickListener evt : clickListenerList) {
-									evt.onLeftRelease(new FingerBaseEvent(state.getPosition()));
-								}
-								
-								leftHandPress = false;
-								long now = System.currentTimeMillis();
-								if(now - leftPressedWhen < 200) {
-									if(now - leftFirstClickWhen < 400) {
-										for(DblClickListener evt : dblClickListenerList) {
-											evt.onLeftDblClick(new FingerBaseEvent(state.getPosition()));
-										}
-									} else {
-										leftFirstClickWhen = leftPressedWhen;
-										for(ClickListener evt : clickListenerList) {
-											evt.onLeftClick(new FingerBaseEvent(state.getPosition()));
-										}
-									}
-								}
-								
-							}
-						}
-						if(msg.getHand() == Hand.RIGHT) {
-							if(rightHandPress) {
-								if(rightHandDrag) {
-									rightHandDrag = false;
-									
-									for(DragListener evt : dragListenerList) {
-										evt.onRightHandDragEnd(new FingerDragEvent(rightDragStart, state.getPosition()));
-									}
-								}
-								for(ClickListener evt : clickListenerList) {
-									evt.onRightRelease(new FingerBaseEvent(state.getPosition()));
-								}
-								rightHandPress = false;
-								long now = System.currentTimeMillis();
-								if(now - rightPressedWhen < 200) {
-									if(now - rightFirstClickWhen < 400) {
-										for(DblClickListener evt : dblClickListenerList) {
-											evt.onRightDblClick(new FingerBaseEvent(state.getPosition()));
-										}
-									} else {
-										rightFirstClickWhen = rightPressedWhen;
-										for(ClickListener evt : clickListenerList) {
-											evt.onRightClick(new FingerBaseEvent(state.getPosition()));
-										}
-									}
-								}
-							}
-						}
-					}
-					
-					
-					/*
-					 * 
-					 * 
-					 * 
-					 * 
-					 * 
-					 * MOVE
-					 * 
-					 * 
-					 * 
-					 * 
-					 */
-					if(msg.getType() == MessageType.MOVED) {
-						if(msg.getHand() == Hand.LEFT) {
-							if(leftHandPress) {
-								if(!leftHandDrag) {
-									leftHandDrag = true;
-									leftDragStart = state.getPosition();
-									// drag start
-									for(DragListener evt : dragListenerList) {
-										evt.onLeftHandDragStart(new FingerDragEvent(leftDragStart, leftDragStart));
-									}
-								}
-								for(DragListener evt : dragListenerList) {
-									evt.onLeftHandDrag(new FingerDragEvent(leftDragStart, state.getPosition()));
-								}
-							}
-							for(MoveListener evt : moveListenerList) {
-								evt.onLeftHandMove(new FingerBaseEvent(state.getPosition()));
-							}
-						}
-						
-						if(msg.getHand() == Hand.RIGHT) {
-							if(rightHandPress) {
-								if(!rightHandDrag) {
-									rightHandDrag = true;
-									rightDragStart = state.getPosition();
-									// drag start
-									for(DragListener evt : dragListenerList) {
-										evt.onRightHandDragStart(new FingerDragEvent(rightDragStart, rightDragStart));
-									}
-								}
-								for(DragListener evt : dragListenerList) {
-									evt.onRightHandDrag(new FingerDragEvent(rightDragStart, state.getPosition()));
-								}
-							}
-							for(MoveListener evt : moveListenerList) {
-								evt.onRightHandMove(new FingerBaseEvent(state.getPosition()));
-							}
-						}
+		/*
+		 * PRESS
+		 */
+		if(msg.getType() == MessageType.DRAGGED) {
+			if(!tracked.press) {
+				tracked.dragStart = position;
+				dispatch(FingerEventType.PRESS, hand, event(tracked, reuse, position), now);
+				tracked.press = true;
+				tracked.pressedWhen = now;
+				gestureRecognizer.finish(hand);
+			}
+		}
+
+		/*
+		 * RELEASE
+		 */
+		if(msg.getType() == MessageType.RELEASED) {
+			if(tracked.press) {
+				if(tracked.drag) {
+					tracked.drag = false;
+					dispatch(FingerEventType.DRAG_END, hand, dragEvent(tracked, reuse, position), now);
+				}
+				dispatch(FingerEventType.RELEASE, hand, event(tracked, reuse, position), now);
+				
+				tracked.press = false;
+				if(now - tracked.pressedWhen < 200) {
+					if(now - tracked.firstClickWhen < 400) {
+						dispatch(FingerEventType.DBL_CLICK, hand, event(tracked, reuse, position), now);
+					} else {
+						tracked.firstClickWhen = tracked.pressedWhen;
+						dispatch(FingerEventType.CLICK, hand, event(tracked, reuse, position), now);
 					}
 				}
 			}
-		});
-		client.connect();
+		}
 
-//		addDragListener(dragListener);
-//		addMoveListener(moveListener);
-//		addClickListener(clickListener);
-//		addDblClickListener(dblClickListener);
+		/*
+		 * MOVE
+		 */
+		if(msg.getType() == MessageType.MOVED) {
+			if(tracked.press) {
+				if(!tracked.drag) {
+					tracked.drag = true;
+					tracked.dragStart = position;
+					dispatch(FingerEventType.DRAG_START, hand, dragEvent(tracked, reuse, tracked.dragStart), now);
+				}
+				dispatch(FingerEventType.DRAG, hand, dragEvent(tracked, reuse, position), now);
+			} else {
+				gestureRecognizer.update(hand, position, now);
+			}
+			dispatch(FingerEventType.MOVE, hand, event(tracked, reuse, position), now);
+		}
+	}
+	
+	private void updateLatest(BasicMessage msg, long now) {
+		for(TrackedHand tracked : hands) {
+			HandState state = msg.getHandState(tracked.hand.id());
+			latest[tracked.hand.id()].write(now, state.getPosition(), state.getRotation(), state.getClickCount(),
+					tracked.press, tracked.drag, tracked.dragStart, poseRecognizer.getActivePose(tracked.hand));
+		}
+	}
+	
+	private void fireFrame(BasicMessage msg, long now) {
+		FingerFrame frame = reuseEvents ? this.frame : new FingerFrame(false);
+		Hand messageHand = null;
+		if(msg instanceof PinchMessage) {
+			messageHand = ((PinchMessage)msg).getHand();
+		} else if(msg instanceof BimanualPinchMessage) {
+			messageHand = ((BimanualPinchMessage)msg).getHand();
+		}
+		frame.setMessage(msg.getType(), messageHand, now);
+		for(TrackedHand tracked : hands) {
+			HandState state = msg.getHandState(tracked.hand.id());
+			frame.setHand(tracked.hand, state.getPosition(), state.getRotation(), state.getClickCount(),
+					tracked.press, tracked.drag, tracked.dragStart, poseRecognizer.getActivePose(tracked.hand));
+		}
+		for(FrameListener evt : frameListenerList) {
+			evt.onFrame(frame);
+		}
+	}
+	
+	private void dispatch(FingerEventType type, Hand hand, FingerBaseEvent event, long now) {
+		FrameTracer tracer = this.tracer;
+		if(tracer != null) tracer.decision();
+		dispatcher.dispatch(type, hand, event, now);
+		FlowPublisher<TrackedEvent> eventPublisher = this.eventPublisher;
+		if(eventPublisher != null) {
+			eventPublisher.submit(new TrackedEvent(type, hand, event.snapshot(), now));
+		}
+	}
+	
+	private FingerBaseEvent event(TrackedHand tracked, boolean reuse, Vector3f position) {
+		FingerBaseEvent event = reuse ? tracked.event : new FingerBaseEvent(position);
+		event.setTarget(tracked.target);
+		return event;
+	}
+	
+	private FingerDragEvent dragEvent(TrackedHand tracked, boolean reuse, Vector3f position) {
+		FingerDragEvent event;
+		if(reuse) {
+			event = tracked.dragEvent;
+			event.set(tracked.dragStart, position);
+		} else {
+			event = new FingerDragEvent(tracked.dragStart, position);
+		}
+		event.setTarget(tracked.target);
+		return event;
+	}
+	
+	/**
+	 * Press, drag and click state of one hand.
+	 */
+	private static class TrackedHand {
+		private Hand hand;
+		private boolean press;
+		private boolean drag;
+		private Vector3f dragStart;
+		private long pressedWhen;
+		private long firstClickWhen;
+		private HitTarget target;
+		private FingerBaseEvent event = new FingerBaseEvent();
+		private FingerDragEvent dragEvent = new FingerDragEvent();
+		
+		TrackedHand(Hand hand) {
+			this.hand = hand;
+		}
+	}
+	
+	/**
+	 * Configures a tracker. The built tracker is not connected yet, so all
+	 * listeners can be added before {@link FingerTracker#start()}.
+	 */
+	public static class Builder {
+		private List<InetSocketAddress> endpoints = new ArrayList<InetSocketAddress>();
+		private int connectTimeoutMillis = 1000;
+		private long retryDelayMillis = 250;
+		private long maxRetryDelayMillis = 5000;
+		private int maxAttempts = 0;
+		private boolean reconnect = true;
+		private HandTrackingSource source;
+		private Clock clock = Clock.SYSTEM;
+		
+		/**
+		 * Adds a server to connect to; servers are tried in the order they were
+		 * added. Defaults to the local host.
+		 */
+		public Builder endpoint(String hostname, int port) {
+			endpoints.add(InetSocketAddress.createUnresolved(hostname, port));
+			return this;
+		}
+		
+		public Builder connectTimeout(int millis) {
+			this.connectTimeoutMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * @param delayMillis pause after the first round of failed attempts,
+		 * doubled after every further round
+		 * @param maxDelayMillis upper bound of the pause
+		 * @param maxAttempts rounds over all endpoints before giving up, 0 to
+		 * retry forever (the default)
+		 */
+		public Builder retry(long delayMillis, long maxDelayMillis, int maxAttempts) {
+			this.retryDelayMillis = delayMillis;
+			this.maxRetryDelayMillis = maxDelayMillis;
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+		
+		/**
+		 * @param reconnect whether to connect again when the server goes away;
+		 * on by default
+		 */
+		public Builder reconnect(boolean reconnect) {
+			this.reconnect = reconnect;
+			return this;
+		}
+		
+		/**
+		 * Uses the given source instead of a connection to a server, for
+		 * instance a replay or a fusion of several sensors.
+		 */
+		public Builder source(HandTrackingSource source) {
+			this.source = source;
+			return this;
+		}
+		
+		public Builder clock(Clock clock) {
+			this.clock = clock;
+			return this;
+		}
+		
+		/**
+		 * @throws IllegalStateException if both endpoints and a source were given
+		 */
+		public FingerTracker build() {
+			if(source != null) {
+				if(!endpoints.isEmpty()) {
+					throw new IllegalStateException("endpoints and source are exclusive");
+				}
+				return new FingerTracker(source, clock);
+			}
+			HandTrackingClient client = new HandTrackingClient();
+			if(!endpoints.isEmpty()) {
+				client.setEndpoints(endpoints);
+			}
+			client.setRetry(connectTimeoutMillis, retryDelayMillis, maxRetryDelayMillis, maxAttempts);
+			client.setReconnect(reconnect);
+			return new FingerTracker(client, clock);
+		}
 	}
 	
 //	private DragListener dragListener = new DragListener() {
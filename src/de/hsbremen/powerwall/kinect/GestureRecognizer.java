@@ -0,0 +1,433 @@
+package de.hsbremen.powerwall.kinect;
+
+import java.util.ArrayList;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+import de.hsbremen.powerwall.kinect.events.FingerGestureEvent;
+import de.hsbremen.powerwall.kinect.listener.GestureListener;
+
+/**
+ * Streaming recognizer for dynamic gestures like swipes and circles.
+ * <p>
+ * Hand positions are resampled to points with a fixed spacing which are kept
+ * in a ring buffer per hand. Every new point updates one column of a
+ * subsequence dynamic time warping matrix per template (SPRING), so the cost
+ * per point is independent of the window length. Cells whose accumulated cost
+ * already exceeds the threshold of their template are abandoned, which keeps
+ * the work per template down to the part of it that currently matches.
+ * <p>
+ * Each point advances a template by at most one entry, so a gesture needs at
+ * least as many points as its template is long. A template of length n thus
+ * only matches movements of at least n times the step.
+ * <p>
+ * A movement between two pauses, jumps or presses is a stroke. A stroke that
+ * matched at least half of a template counts as an attempt, see
+ * {@link #getAttemptCount()} and {@link #getFailedAttemptCount()}.
+ */
+public class GestureRecognizer {
+
+	private static final float INF = Float.POSITIVE_INFINITY;
+
+	private float step = 20;
+	private float threshold = 0.04f;
+	private float maxJump = 150;
+	private long maxPause = 500;
+	private int capacity = 128;
+
+	private ArrayList<GestureTemplate> templates = new ArrayList<GestureTemplate>();
+	private ArrayList<GestureListener> gestureListenerList = new ArrayList<GestureListener>();
+
+	private Trajectory[] trajectories = new Trajectory[HandTrackingMessage.N_HANDS];
+
+	private volatile long attempts;
+	private volatile long failedAttempts;
+
+	public GestureRecognizer() {
+		for(int hand = 0; hand < trajectories.length; hand++) {
+			trajectories[hand] = new Trajectory();
+		}
+	}
+
+	public void addGestureListener(GestureListener listener) {
+		gestureListenerList.add(listener);
+	}
+
+	/**
+	 * Registers a template. Must not be called while positions are fed from
+	 * another thread.
+	 */
+	public void addTemplate(GestureTemplate template) {
+		templates.add(template);
+		for(Trajectory trajectory : trajectories) {
+			trajectory.matchers.add(new Matcher(template));
+		}
+	}
+
+	/**
+	 * @param step distance between resampled points in millimeters
+	 */
+	public void setStep(float step) {
+		this.step = step;
+	}
+
+	public float getStep() {
+		return step;
+	}
+
+	/**
+	 * @param threshold maximum mean cost per template entry for a match, from 0
+	 * (exact) to 1 (anything)
+	 */
+	public void setThreshold(float threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @param maxJump distance in millimeters between two updates above which the
+	 * movement is considered a tracking error and partial matches are dropped
+	 */
+	public void setMaxJump(float maxJump) {
+		this.maxJump = maxJump;
+	}
+
+	/**
+	 * @param millis time without movement after which partial matches are dropped
+	 */
+	public void setMaxPause(long millis) {
+		this.maxPause = millis;
+	}
+
+	/**
+	 * @param capacity number of resampled points kept per hand
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+		for(Trajectory trajectory : trajectories) {
+			trajectory.allocate();
+		}
+	}
+
+	/**
+	 * Copies the most recent resampled points of a hand, oldest first.
+	 * 
+	 * @param out receives x, y, z triples
+	 * @return number of points copied
+	 */
+	public int getTrajectory(Hand hand, float[] out) {
+		Trajectory trajectory = trajectories[hand.id()];
+		int count = (int)Math.min(Math.min(trajectory.count, capacity), out.length / 3);
+		for(int i = 0; i < count; i++) {
+			int slot = trajectory.slot(trajectory.count - count + i);
+			out[i * 3] = trajectory.x[slot];
+			out[i * 3 + 1] = trajectory.y[slot];
+			out[i * 3 + 2] = trajectory.z[slot];
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of strokes that matched at least half of a template
+	 */
+	public long getAttemptCount() {
+		return attempts;
+	}
+
+	/**
+	 * @return number of attempts that did not produce a gesture
+	 */
+	public long getFailedAttemptCount() {
+		return failedAttempts;
+	}
+
+	/**
+	 * Drops the trajectory and all partial matches of a hand.
+	 */
+	public void reset(Hand hand) {
+		Trajectory trajectory = trajectories[hand.id()];
+		if(trajectory.hasLast && (trajectory.attempted || trajectory.matched)) {
+			attempts++;
+			if(!trajectory.matched) failedAttempts++;
+		}
+		trajectory.attempted = false;
+		trajectory.matched = false;
+		trajectory.hasLast = false;
+		for(Matcher matcher : trajectory.matchers) {
+			matcher.reset();
+		}
+	}
+
+	/**
+	 * Ends the movement of a hand: reports a completed match that is still
+	 * waiting for competing paths, then drops the trajectory like
+	 * {@link #reset(Hand)}.
+	 */
+	public void finish(Hand hand) {
+		flush(hand, trajectories[hand.id()]);
+		reset(hand);
+	}
+
+	public void update(Hand hand, Vector3f position, long now) {
+		Trajectory trajectory = trajectories[hand.id()];
+		if(!trajectory.hasLast || now - trajectory.lastTime > maxPause) {
+			flush(hand, trajectory);
+			reset(hand);
+			trajectory.hasLast = true;
+			trajectory.lastX = position.x;
+			trajectory.lastY = position.y;
+			trajectory.lastZ = position.z;
+			trajectory.lastTime = now;
+			trajectory.add(position.x, position.y, position.z, now);
+			return;
+		}
+
+		float dist = GestureTemplate.distance(position.x - trajectory.lastX, position.y - trajectory.lastY, position.z - trajectory.lastZ);
+		if(dist > maxJump + step) {
+			flush(hand, trajectory);
+			reset(hand);
+			update(hand, position, now);
+			return;
+		}
+		while(dist >= step) {
+			float dx = (position.x - trajectory.lastX) / dist;
+			float dy = (position.y - trajectory.lastY) / dist;
+			float dz = (position.z - trajectory.lastZ) / dist;
+			trajectory.lastX += dx * step;
+			trajectory.lastY += dy * step;
+			trajectory.lastZ += dz * step;
+			trajectory.lastTime = now;
+			trajectory.add(trajectory.lastX, trajectory.lastY, trajectory.lastZ, now);
+			match(hand, trajectory, dx, dy, dz);
+			dist -= step;
+		}
+	}
+
+	private void match(Hand hand, Trajectory trajectory, float dx, float dy, float dz) {
+		long t = trajectory.count - 1;
+		Matcher best = null;
+		for(Matcher matcher : trajectory.matchers) {
+			if(matcher.step(t, dx, dy, dz) && (best == null || matcher.getCandidateCost() < best.getCandidateCost())) {
+				best = matcher;
+			}
+			if(matcher.active * 2 >= matcher.length) {
+				trajectory.attempted = true;
+			}
+		}
+		if(best == null) return;
+
+		// wait while a longer template that overlaps the match is matching at least as well
+		float cost = best.getCandidateCost();
+		for(Matcher matcher : trajectory.matchers) {
+			if(matcher != best && matcher.length > best.length && matcher.isCompeting(best.candidateEnd, cost)) return;
+		}
+
+		long start = best.candidateStart;
+		long end = best.candidateEnd;
+		// matches must not overlap, neither within one template nor across templates
+		for(Matcher matcher : trajectory.matchers) {
+			matcher.invalidate(end);
+		}
+		fireGesture(hand, trajectory, best.template.getName(), 1 - cost, start, end);
+	}
+
+	/**
+	 * Reports the best completed match that is still waiting for competing
+	 * paths, used when the movement ends.
+	 */
+	private void flush(Hand hand, Trajectory trajectory) {
+		Matcher best = null;
+		for(Matcher matcher : trajectory.matchers) {
+			if(matcher.candidateCost != INF && (best == null || matcher.getCandidateCost() < best.getCandidateCost())) {
+				best = matcher;
+			}
+		}
+		if(best == null) return;
+		fireGesture(hand, trajectory, best.template.getName(), 1 - best.getCandidateCost(), best.candidateStart, best.candidateEnd);
+	}
+
+	private void fireGesture(Hand hand, Trajectory trajectory, String name, float score, long start, long end) {
+		// the match starts one point before its first direction
+		long first = Math.max(Math.max(start - 1, 0), trajectory.count - capacity);
+		int firstSlot = trajectory.slot(first);
+		int lastSlot = trajectory.slot(end);
+		Vector3f startPosition = new Vector3f(trajectory.x[firstSlot], trajectory.y[firstSlot], trajectory.z[firstSlot]);
+		Vector3f position = new Vector3f(trajectory.x[lastSlot], trajectory.y[lastSlot], trajectory.z[lastSlot]);
+		long duration = trajectory.time[lastSlot] - trajectory.time[firstSlot];
+		trajectory.matched = true;
+		for(GestureListener evt : gestureListenerList) {
+			evt.onGesture(new FingerGestureEvent(position, hand, name, score, startPosition, duration));
+		}
+	}
+
+	private class Trajectory {
+		private float[] x;
+		private float[] y;
+		private float[] z;
+		private long[] time;
+		private long count;
+
+		private boolean hasLast;
+		private float lastX;
+		private float lastY;
+		private float lastZ;
+		private long lastTime;
+
+		/** the current stroke matched half of a template, or a whole one */
+		private boolean attempted;
+		private boolean matched;
+
+		private ArrayList<Matcher> matchers = new ArrayList<Matcher>();
+
+		Trajectory() {
+			allocate();
+		}
+
+		void allocate() {
+			x = new float[capacity];
+			y = new float[capacity];
+			z = new float[capacity];
+			time = new long[capacity];
+			count = 0;
+			hasLast = false;
+		}
+
+		int slot(long index) {
+			return (int)(index % capacity);
+		}
+
+		void add(float px, float py, float pz, long now) {
+			int slot = slot(count++);
+			x[slot] = px;
+			y[slot] = py;
+			z[slot] = pz;
+			time[slot] = now;
+		}
+	}
+
+	/**
+	 * One column of the SPRING matrix for a template and hand.
+	 */
+	private class Matcher {
+		private GestureTemplate template;
+		private float[] directions;
+		private int length;
+
+		private float[] cost;
+		private long[] start;
+		/** highest template entry with a finite cost */
+		private int active;
+
+		private float candidateCost;
+		private long candidateStart;
+		private long candidateEnd;
+
+		Matcher(GestureTemplate template) {
+			this.template = template;
+			this.directions = template.getDirections();
+			this.length = template.getLength();
+			cost = new float[length + 1];
+			start = new long[length + 1];
+			reset();
+		}
+
+		void reset() {
+			for(int i = 0; i <= length; i++) {
+				cost[i] = INF;
+			}
+			active = 0;
+			candidateCost = INF;
+		}
+
+		/**
+		 * @return mean cost per template entry of the best completed match
+		 */
+		float getCandidateCost() {
+			return candidateCost / length;
+		}
+
+		/**
+		 * Advances the matcher by one point.
+		 * 
+		 * @return true if a completed match is ready to be reported
+		 */
+		boolean step(long t, float dx, float dy, float dz) {
+			float limit = (template.getThreshold() > 0 ? template.getThreshold() : threshold) * length;
+			int last = Math.min(length, active + 1);
+			int newActive = 0;
+			// walk backwards so cost[i - 1] still holds the previous column
+			for(int i = last; i >= 1; i--) {
+				// predecessors in the previous column: same entry (the template
+				// waits for the movement) or previous entry; entry 0 is the empty
+				// prefix which starts a new match at this point
+				float best = cost[i];
+				long bestStart = start[i];
+				if(i == 1) {
+					if(0 < best) {
+						best = 0;
+						bestStart = t;
+					}
+				} else if(cost[i - 1] < best) {
+					best = cost[i - 1];
+					bestStart = start[i - 1];
+				}
+
+				int d = (i - 1) * 3;
+				float c = (1 - (dx * directions[d] + dy * directions[d + 1] + dz * directions[d + 2])) * 0.5f;
+				float total = best + c;
+				if(total > limit) {
+					cost[i] = INF;
+				} else {
+					cost[i] = total;
+					start[i] = bestStart;
+					if(newActive == 0) newActive = i;
+				}
+			}
+			active = newActive;
+
+			if(cost[length] < candidateCost) {
+				candidateCost = cost[length];
+				candidateStart = start[length];
+				candidateEnd = t;
+			}
+			if(candidateCost == INF) return false;
+
+			// report once no running path can still end in a better overlapping match
+			for(int i = 1; i <= active; i++) {
+				if(cost[i] < candidateCost && start[i] <= candidateEnd) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * @return true if a path that started at or before the given point has
+		 * covered at least half of the template with a mean cost below the given one
+		 */
+		boolean isCompeting(long end, float meanCost) {
+			for(int i = Math.max(length / 2, 1); i <= active; i++) {
+				if(start[i] <= end && cost[i] < meanCost * i) return true;
+			}
+			return candidateCost != INF && candidateStart <= end && getCandidateCost() < meanCost;
+		}
+
+		/**
+		 * Drops all paths that started at or before the given point.
+		 */
+		void invalidate(long end) {
+			int newActive = 0;
+			for(int i = 1; i <= active; i++) {
+				if(cost[i] != INF && start[i] <= end) {
+					cost[i] = INF;
+				} else if(cost[i] != INF) {
+					newActive = i;
+				}
+			}
+			active = newActive;
+			if(candidateCost != INF && candidateStart <= end) {
+				candidateCost = INF;
+			}
+		}
+	}
+}
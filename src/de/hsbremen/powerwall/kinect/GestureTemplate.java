@@ -0,0 +1,201 @@
+package de.hsbremen.powerwall.kinect;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingClient;
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+import com.threegear.gloveless.network.PinchMessage;
+
+/**
+ * A dynamic gesture as matched by the {@link GestureRecognizer}.
+ * <p>
+ * The trajectory is stored as a sequence of unit direction vectors between
+ * points that are resampled to a fixed spacing. This makes templates
+ * independent of position, size (as long as the gesture is long enough to
+ * produce the samples) and speed of the recorded movement.
+ */
+public class GestureTemplate {
+
+	private String name;
+	private float[] directions;
+	private float threshold;
+
+	/**
+	 * @param name name reported in gesture events
+	 * @param directions unit direction vectors as consecutive x, y, z triples
+	 */
+	public GestureTemplate(String name, float[] directions) {
+		if(directions.length < 6 || directions.length % 3 != 0) {
+			throw new IllegalArgumentException("A gesture template needs at least two directions: " + name);
+		}
+		this.name = name;
+		this.directions = directions;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getLength() {
+		return directions.length / 3;
+	}
+
+	float[] getDirections() {
+		return directions;
+	}
+
+	/**
+	 * @return the maximum mean matching cost for this template or 0 to use the
+	 * default of the recognizer
+	 */
+	public float getThreshold() {
+		return threshold;
+	}
+
+	public GestureTemplate setThreshold(float threshold) {
+		this.threshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Creates a straight swipe in the given direction.
+	 */
+	public static GestureTemplate swipe(String name, float dx, float dy, float dz, int length) {
+		Vector3f dir = new Vector3f(dx, dy, dz);
+		dir.normalize();
+		float[] directions = new float[length * 3];
+		for(int i = 0; i < length; i++) {
+			directions[i * 3] = dir.x;
+			directions[i * 3 + 1] = dir.y;
+			directions[i * 3 + 2] = dir.z;
+		}
+		return new GestureTemplate(name, directions);
+	}
+
+	/**
+	 * Creates a full circle in the wall (x/y) plane, starting at the top.
+	 */
+	public static GestureTemplate circle(String name, boolean clockwise, int length) {
+		float[] directions = new float[length * 3];
+		for(int i = 0; i < length; i++) {
+			double angle = 2 * Math.PI * (i + 0.5) / length;
+			// tangent of a circle starting at 12 o'clock, x to the right and y up
+			float x = (float)Math.cos(angle);
+			float y = (float)-Math.sin(angle);
+			directions[i * 3] = clockwise ? x : -x;
+			directions[i * 3 + 1] = y;
+		}
+		return new GestureTemplate(name, directions);
+	}
+
+	/**
+	 * Creates a template from a recorded trajectory.
+	 * 
+	 * @param positions x, y, z triples of the recorded hand positions
+	 * @param count number of positions to use
+	 * @param step distance between resampled points in millimeters; should match
+	 * the step of the recognizer the template is used with
+	 */
+	public static GestureTemplate fromTrajectory(String name, float[] positions, int count, float step) {
+		float[] directions = new float[count * 3];
+		int n = 0;
+		float lastX = positions[0], lastY = positions[1], lastZ = positions[2];
+		for(int i = 1; i < count; i++) {
+			float x = positions[i * 3], y = positions[i * 3 + 1], z = positions[i * 3 + 2];
+			float dist = distance(x - lastX, y - lastY, z - lastZ);
+			while(dist >= step) {
+				float dx = (x - lastX) / dist, dy = (y - lastY) / dist, dz = (z - lastZ) / dist;
+				if(n == directions.length) {
+					float[] grown = new float[directions.length * 2];
+					System.arraycopy(directions, 0, grown, 0, n);
+					directions = grown;
+				}
+				directions[n++] = dx;
+				directions[n++] = dy;
+				directions[n++] = dz;
+				lastX += dx * step;
+				lastY += dy * step;
+				lastZ += dz * step;
+				dist -= step;
+			}
+		}
+		float[] result = new float[n];
+		System.arraycopy(directions, 0, result, 0, n);
+		return new GestureTemplate(name, result);
+	}
+
+	/**
+	 * Creates a template from the positions of one hand in a recorded session,
+	 * one serialized message per line. Only the positions the recognizer sees
+	 * are used: MOVED messages while the hand is not pinching. Since the
+	 * recognizer starts over on every pinch, the longest stretch between
+	 * pinches is taken.
+	 */
+	public static GestureTemplate fromSession(String name, BufferedReader reader, Hand hand, float step) throws IOException {
+		float[] positions = new float[3 * 256];
+		int count = 0;
+		float[] longest = positions;
+		int longestCount = 0;
+		boolean pressed = false;
+		String line;
+		while((line = reader.readLine()) != null) {
+			HandTrackingMessage message = HandTrackingMessage.deserialize(line);
+			if(!(message instanceof PinchMessage)) continue;
+			PinchMessage msg = (PinchMessage)message;
+			if(msg.getHand() != hand) continue;
+			// same press state as the tracker: DRAGGED presses, RELEASED releases
+			if(msg.getType() == MessageType.DRAGGED && !pressed) {
+				pressed = true;
+				if(count > longestCount) {
+					longest = positions;
+					longestCount = count;
+					positions = new float[3 * 256];
+				}
+				count = 0;
+			} else if(msg.getType() == MessageType.RELEASED) {
+				pressed = false;
+			}
+			if(msg.getType() != MessageType.MOVED || pressed) continue;
+
+			if(count * 3 == positions.length) {
+				float[] grown = new float[positions.length * 2];
+				System.arraycopy(positions, 0, grown, 0, positions.length);
+				positions = grown;
+			}
+			Vector3f position = msg.getHandState(hand.id()).getPosition();
+			positions[count * 3] = position.x;
+			positions[count * 3 + 1] = position.y;
+			positions[count * 3 + 2] = position.z;
+			count++;
+		}
+		if(count > longestCount) {
+			longest = positions;
+			longestCount = count;
+		}
+		if(longestCount == 0) {
+			throw new IOException("Session contains no positions for the " + hand + " hand");
+		}
+		return fromTrajectory(name, longest, longestCount, step);
+	}
+
+	public static GestureTemplate fromSession(String name, File file, Hand hand, float step) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), HandTrackingClient.UTF8));
+		try {
+			return fromSession(name, reader, hand, step);
+		} finally {
+			reader.close();
+		}
+	}
+
+	static float distance(float dx, float dy, float dz) {
+		return (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+}
@@ -0,0 +1,103 @@
+package de.hsbremen.powerwall.kinect;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Tuple3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+
+/**
+ * The latest state of one hand, written by the reader thread of the tracker
+ * and read by any thread without locks.
+ * <p>
+ * A sequence lock: the writer makes the sequence odd, writes the fields and
+ * makes it even again. Readers retry until they saw the same even sequence
+ * before and after reading. All fields are volatile so the reads can't be
+ * reordered around the sequence checks.
+ */
+class HandStateSlot {
+
+	/** attempts between yields, in case the writer was descheduled mid-write */
+	private static final int SPINS = 100;
+
+	private volatile long sequence;
+	private volatile long time;
+	private volatile long nanoTime;
+	private volatile float x, y, z;
+	private volatile float qx, qy, qz, qw;
+	private volatile boolean pressed;
+	private volatile boolean dragging;
+	private volatile float dragX, dragY, dragZ;
+	private volatile HandPose pose;
+	private volatile int clickCount;
+
+	/**
+	 * Must only be called by one thread.
+	 */
+	void write(long time, Tuple3f position, Quat4f rotation, int clickCount,
+			boolean pressed, boolean dragging, Tuple3f dragStart, HandPose pose) {
+		long sequence = this.sequence;
+		this.sequence = sequence + 1;
+		this.time = time;
+		this.nanoTime = System.nanoTime();
+		x = position.x;
+		y = position.y;
+		z = position.z;
+		qx = rotation.x;
+		qy = rotation.y;
+		qz = rotation.z;
+		qw = rotation.w;
+		this.clickCount = clickCount;
+		this.pressed = pressed;
+		this.dragging = dragging;
+		if(dragStart != null) {
+			dragX = dragStart.x;
+			dragY = dragStart.y;
+			dragZ = dragStart.z;
+		}
+		this.pose = pose;
+		this.sequence = sequence + 2;
+	}
+
+	/**
+	 * @return version of the state, 0 if it was never written
+	 */
+	long getSequence() {
+		return sequence >>> 1;
+	}
+
+	/**
+	 * Copies a consistent state into the given object.
+	 *
+	 * @return false if the state was never written
+	 */
+	boolean read(LatestHandState out) {
+		for(int attempt = 1;; attempt++) {
+			long before = sequence;
+			if(before == 0) return false;
+			if((before & 1) != 0) {
+				if(attempt % SPINS == 0) Thread.yield();
+				continue;
+			}
+			out.time = time;
+			out.nanoTime = nanoTime;
+			out.position.x = x;
+			out.position.y = y;
+			out.position.z = z;
+			out.rotation.x = qx;
+			out.rotation.y = qy;
+			out.rotation.z = qz;
+			out.rotation.w = qw;
+			out.clickCount = clickCount;
+			out.pressed = pressed;
+			out.dragging = dragging;
+			out.dragStart.x = dragX;
+			out.dragStart.y = dragY;
+			out.dragStart.z = dragZ;
+			out.pose = pose;
+			if(sequence == before) {
+				out.sequence = before >>> 1;
+				return true;
+			}
+		}
+	}
+}
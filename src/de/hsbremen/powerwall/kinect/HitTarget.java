@@ -0,0 +1,100 @@
+package de.hsbremen.powerwall.kinect;
+
+/**
+ * A widget area on the wall registered with a {@link HitTestService}.
+ * <p>
+ * The area is a rectangle in wall coordinates (millimeters) that extends
+ * between a near and a far distance in front of the wall. Targets with a
+ * higher z are on top; among targets with the same z the one added last is on
+ * top.
+ */
+public class HitTarget {
+
+	private final HitTestService service;
+	private final Object owner;
+	final long order;
+
+	float x;
+	float y;
+	float width;
+	float height;
+	float near = Float.NEGATIVE_INFINITY;
+	float far = Float.POSITIVE_INFINITY;
+	int z;
+	boolean removed;
+
+	/** covered grid cells, inclusive */
+	int minColumn, minRow, maxColumn, maxRow;
+
+	HitTarget(HitTestService service, Object owner, long order) {
+		this.service = service;
+		this.owner = owner;
+		this.order = order;
+	}
+
+	/**
+	 * @return the widget this target belongs to
+	 */
+	public Object getOwner() {
+		return owner;
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getWidth() {
+		return width;
+	}
+
+	public float getHeight() {
+		return height;
+	}
+
+	public int getZ() {
+		return z;
+	}
+
+	/**
+	 * Moves or resizes the target.
+	 */
+	public void setBounds(float x, float y, float width, float height) {
+		service.setBounds(this, x, y, width, height);
+	}
+
+	/**
+	 * Restricts the target to hands between the given signed distances from
+	 * the wall; by default it reaches infinitely far in both directions.
+	 */
+	public void setDepth(float near, float far) {
+		service.setDepth(this, near, far);
+	}
+
+	public void setZ(int z) {
+		service.setZ(this, z);
+	}
+
+	public void remove() {
+		service.removeTarget(this);
+	}
+
+	boolean contains(float px, float py, float distance) {
+		return px >= x && px < x + width && py >= y && py < y + height && distance >= near && distance <= far;
+	}
+
+	/**
+	 * @return true if this target is above the other one
+	 */
+	boolean isAbove(HitTarget other) {
+		return z != other.z ? z > other.z : order > other.order;
+	}
+
+	@Override
+	public String toString() {
+		return "HitTarget[" + owner + " " + x + "," + y + " " + width + "x" + height + " z=" + z + "]";
+	}
+}
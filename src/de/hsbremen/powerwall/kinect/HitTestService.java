@@ -0,0 +1,286 @@
+package de.hsbremen.powerwall.kinect;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+import de.hsbremen.powerwall.kinect.events.FingerHoverEvent;
+import de.hsbremen.powerwall.kinect.listener.HoverListener;
+
+/**
+ * Finds the topmost {@link HitTarget} under a hand.
+ * <p>
+ * Targets are kept in a uniform grid over the wall. Every cell lists the
+ * targets that overlap it, topmost first, so a lookup only checks the targets
+ * of one cell. Targets outside the grid are kept in its border cells. The
+ * grid should cover the wall with cells about the size of a typical widget.
+ * <p>
+ * Set the service on the {@link FingerTracker} to annotate press, release,
+ * click, drag and move events with their target and to get hover events when
+ * a hand enters or leaves a target; removing a hovered target counts as
+ * leaving it. Targets and listeners may be added, moved and removed from any
+ * thread.
+ */
+public class HitTestService {
+
+	private final WallPlane wall;
+	private final float originX;
+	private final float originY;
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+	private final Cell[] cells;
+	private long order;
+	private int targetCount;
+
+	private final Point2f wallPosition = new Point2f();
+	private final HitTarget[] hovered = new HitTarget[HandTrackingMessage.N_HANDS];
+	private final Vector3f[] lastPosition = new Vector3f[HandTrackingMessage.N_HANDS];
+	private final Point2f[] lastWallPosition = new Point2f[HandTrackingMessage.N_HANDS];
+
+	private List<HoverListener> hoverListenerList = new CopyOnWriteArrayList<HoverListener>();
+
+	/**
+	 * @param wall the wall the targets are on
+	 * @param x left edge of the grid in wall coordinates
+	 * @param y bottom edge of the grid in wall coordinates
+	 * @param width width of the grid in millimeters
+	 * @param height height of the grid in millimeters
+	 * @param cellSize edge length of the grid cells in millimeters
+	 */
+	public HitTestService(WallPlane wall, float x, float y, float width, float height, float cellSize) {
+		if(!(width > 0) || !(height > 0) || !(cellSize > 0)) {
+			throw new IllegalArgumentException("grid size must be positive");
+		}
+		this.wall = wall;
+		this.originX = x;
+		this.originY = y;
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (int)Math.ceil(width / cellSize));
+		this.rows = Math.max(1, (int)Math.ceil(height / cellSize));
+		this.cells = new Cell[columns * rows];
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			lastPosition[hand] = new Vector3f();
+			lastWallPosition[hand] = new Point2f();
+		}
+	}
+
+	public WallPlane getWallPlane() {
+		return wall;
+	}
+
+	public void addHoverListener(HoverListener listener) {
+		hoverListenerList.add(listener);
+	}
+
+	/**
+	 * Registers a rectangle in wall coordinates.
+	 *
+	 * @param owner the widget, returned by {@link HitTarget#getOwner()}
+	 * @param z stacking order; higher values are on top
+	 */
+	public synchronized HitTarget addTarget(Object owner, float x, float y, float width, float height, int z) {
+		HitTarget target = new HitTarget(this, owner, order++);
+		target.x = x;
+		target.y = y;
+		target.width = width;
+		target.height = height;
+		target.z = z;
+		insert(target);
+		targetCount++;
+		return target;
+	}
+
+	/**
+	 * Removes a target; hands hovering it get an exit event.
+	 */
+	public void removeTarget(HitTarget target) {
+		FingerHoverEvent[] exits = new FingerHoverEvent[HandTrackingMessage.N_HANDS];
+		synchronized(this) {
+			if(target.removed) return;
+			erase(target);
+			target.removed = true;
+			targetCount--;
+			for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+				if(hovered[hand] == target) {
+					hovered[hand] = null;
+					exits[hand] = new FingerHoverEvent(new Vector3f(lastPosition[hand]), Hand.fromId(hand), target,
+							new Point2f(lastWallPosition[hand]));
+				}
+			}
+		}
+		for(FingerHoverEvent event : exits) {
+			if(event == null) continue;
+			for(HoverListener listener : hoverListenerList) {
+				listener.onHoverExit(event);
+			}
+		}
+	}
+
+	public synchronized int getTargetCount() {
+		return targetCount;
+	}
+
+	synchronized void setBounds(HitTarget target, float x, float y, float width, float height) {
+		if(target.removed) return;
+		erase(target);
+		target.x = x;
+		target.y = y;
+		target.width = width;
+		target.height = height;
+		insert(target);
+	}
+
+	synchronized void setDepth(HitTarget target, float near, float far) {
+		target.near = near;
+		target.far = far;
+	}
+
+	synchronized void setZ(HitTarget target, int z) {
+		if(target.removed) return;
+		erase(target);
+		target.z = z;
+		insert(target);
+	}
+
+	/**
+	 * @return the topmost target at the given wall coordinates, or null
+	 */
+	public HitTarget hitTest(float x, float y) {
+		return hitTest(x, y, 0);
+	}
+
+	/**
+	 * @return the topmost target under the given point in tracking space, or null
+	 */
+	public synchronized HitTarget hitTest(Tuple3f position) {
+		wall.toWall(position, wallPosition);
+		return hitTest(wallPosition.x, wallPosition.y, wall.distance(position));
+	}
+
+	private synchronized HitTarget hitTest(float x, float y, float distance) {
+		Cell cell = cells[row(y) * columns + column(x)];
+		if(cell == null) return null;
+		HitTarget[] targets = cell.targets;
+		for(int i = 0; i < cell.size; i++) {
+			if(targets[i].contains(x, y, distance)) {
+				return targets[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Looks up the target under a hand and fires hover events if it changed;
+	 * called by the tracker for every pinch message.
+	 *
+	 * @return the topmost target under the hand, or null
+	 */
+	public HitTarget update(Hand hand, Vector3f position) {
+		HitTarget target;
+		HitTarget previous;
+		Point2f wallHit;
+		synchronized(this) {
+			target = hitTest(position);
+			lastPosition[hand.id()].set(position);
+			lastWallPosition[hand.id()].set(wallPosition);
+			previous = hovered[hand.id()];
+			if(target == previous) return target;
+			hovered[hand.id()] = target;
+			wallHit = new Point2f(wallPosition);
+		}
+		if(previous != null) {
+			FingerHoverEvent event = new FingerHoverEvent(new Vector3f(position), hand, previous, wallHit);
+			for(HoverListener listener : hoverListenerList) {
+				listener.onHoverExit(event);
+			}
+		}
+		if(target != null) {
+			FingerHoverEvent event = new FingerHoverEvent(new Vector3f(position), hand, target, wallHit);
+			for(HoverListener listener : hoverListenerList) {
+				listener.onHoverEnter(event);
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * @return the target the hand is over, or null
+	 */
+	public synchronized HitTarget getHovered(Hand hand) {
+		return hovered[hand.id()];
+	}
+
+	private int column(float x) {
+		int column = (int)Math.floor((x - originX) / cellSize);
+		return column < 0 ? 0 : column >= columns ? columns - 1 : column;
+	}
+
+	private int row(float y) {
+		int row = (int)Math.floor((y - originY) / cellSize);
+		return row < 0 ? 0 : row >= rows ? rows - 1 : row;
+	}
+
+	private void insert(HitTarget target) {
+		target.minColumn = column(target.x);
+		target.maxColumn = column(target.x + target.width);
+		target.minRow = row(target.y);
+		target.maxRow = row(target.y + target.height);
+		for(int row = target.minRow; row <= target.maxRow; row++) {
+			for(int column = target.minColumn; column <= target.maxColumn; column++) {
+				Cell cell = cells[row * columns + column];
+				if(cell == null) {
+					cell = cells[row * columns + column] = new Cell();
+				}
+				cell.insert(target);
+			}
+		}
+	}
+
+	private void erase(HitTarget target) {
+		for(int row = target.minRow; row <= target.maxRow; row++) {
+			for(int column = target.minColumn; column <= target.maxColumn; column++) {
+				cells[row * columns + column].remove(target);
+			}
+		}
+	}
+
+	/**
+	 * Targets overlapping one grid cell, topmost first.
+	 */
+	private static class Cell {
+		private HitTarget[] targets = new HitTarget[4];
+		private int size;
+
+		void insert(HitTarget target) {
+			if(size == targets.length) {
+				HitTarget[] grown = new HitTarget[size * 2];
+				System.arraycopy(targets, 0, grown, 0, size);
+				targets = grown;
+			}
+			int i = size;
+			while(i > 0 && target.isAbove(targets[i - 1])) {
+				targets[i] = targets[i - 1];
+				i--;
+			}
+			targets[i] = target;
+			size++;
+		}
+
+		void remove(HitTarget target) {
+			for(int i = 0; i < size; i++) {
+				if(targets[i] == target) {
+					System.arraycopy(targets, i + 1, targets, i, size - i - 1);
+					targets[--size] = null;
+					return;
+				}
+			}
+		}
+	}
+}
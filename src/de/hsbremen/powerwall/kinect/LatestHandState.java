@@ -0,0 +1,80 @@
+package de.hsbremen.powerwall.kinect;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+
+/**
+ * State of one hand as polled with {@link FingerTracker#latestState(com.threegear.gloveless.network.HandTrackingMessage.Hand, LatestHandState)}.
+ * The tracker refills the same instance on every poll, so a render loop can
+ * keep one per hand.
+ */
+public class LatestHandState {
+	long sequence;
+	long time;
+	long nanoTime;
+	final Vector3f position = new Vector3f();
+	final Quat4f rotation = new Quat4f(0, 0, 0, 1);
+	boolean pressed;
+	boolean dragging;
+	final Vector3f dragStart = new Vector3f();
+	HandPose pose;
+	int clickCount;
+
+	/**
+	 * @return version of the state; it grows with every message
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return tracker time of the message in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return System.nanoTime() when the tracker handled the message
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+
+	public Vector3f getPosition() {
+		return position;
+	}
+
+	public Quat4f getRotation() {
+		return rotation;
+	}
+
+	public boolean isPressed() {
+		return pressed;
+	}
+
+	public boolean isDragging() {
+		return dragging;
+	}
+
+	/**
+	 * @return where the current press or drag started; only meaningful while
+	 * pressed
+	 */
+	public Vector3f getDragStart() {
+		return dragStart;
+	}
+
+	/**
+	 * @return the pose the hand is in according to the pose recognizer or null
+	 */
+	public HandPose getPose() {
+		return pose;
+	}
+
+	public int getClickCount() {
+		return clickCount;
+	}
+}
@@ -0,0 +1,169 @@
+package de.hsbremen.powerwall.kinect;
+
+import java.util.ArrayList;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.PointMessage;
+
+import de.hsbremen.powerwall.kinect.events.FingerPointEvent;
+import de.hsbremen.powerwall.kinect.listener.PointListener;
+
+/**
+ * Casts the rays of {@link PointMessage}s onto the {@link WallPlane}.
+ * <p>
+ * Small tremors of the finger are amplified by the distance to the wall, so
+ * the ray is smoothed before it is intersected. The smoothing adapts to the
+ * angular speed of the ray: slow movements are filtered strongly, fast
+ * movements pass almost unfiltered to keep the lag low.
+ * <p>
+ * When the confidence drops or the ray no longer hits the wall, the listeners
+ * are told that the hand stopped pointing.
+ */
+public class PointRecognizer {
+
+	private WallPlane wall = new WallPlane();
+
+	private float minConfidence = 0.5f;
+	private float smoothing = 0.8f;
+	private float fastAngle = (float)Math.toRadians(5);
+	private long maxPause = 200;
+
+	private boolean[] tracking = new boolean[HandTrackingMessage.N_HANDS];
+	private long[] lastUpdate = new long[HandTrackingMessage.N_HANDS];
+	private Vector3f[] start = new Vector3f[HandTrackingMessage.N_HANDS];
+	private Vector3f[] direction = new Vector3f[HandTrackingMessage.N_HANDS];
+	/** last point event of each hand while it points at the wall */
+	private FingerPointEvent[] lastEvent = new FingerPointEvent[HandTrackingMessage.N_HANDS];
+
+	private Vector3f measured = new Vector3f();
+	private Point3f hit = new Point3f();
+	private Point2f wallHit = new Point2f();
+
+	private ArrayList<PointListener> pointListenerList = new ArrayList<PointListener>();
+
+	public PointRecognizer() {
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			start[hand] = new Vector3f();
+			direction[hand] = new Vector3f();
+		}
+	}
+
+	public void addPointListener(PointListener listener) {
+		pointListenerList.add(listener);
+	}
+
+	public WallPlane getWallPlane() {
+		return wall;
+	}
+
+	public void setWallPlane(WallPlane wall) {
+		this.wall = wall;
+	}
+
+	/**
+	 * @param minConfidence point messages below this confidence are ignored
+	 */
+	public void setMinConfidence(float minConfidence) {
+		this.minConfidence = minConfidence;
+	}
+
+	/**
+	 * @param smoothing share of the previous ray kept for slow movements, from 0
+	 * (no smoothing) to just below 1
+	 */
+	public void setSmoothing(float smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	/**
+	 * @param radians change of direction per update at which smoothing is off
+	 */
+	public void setFastAngle(float radians) {
+		this.fastAngle = radians;
+	}
+
+	public void update(PointMessage msg, long now) {
+		Hand hand = msg.getHand();
+		if(hand == null || hand == Hand.BOTH) return;
+		int id = hand.id();
+
+		if(msg.getConfidence() < minConfidence) {
+			tracking[id] = false;
+			end(hand);
+			return;
+		}
+
+		measured.set(msg.getDirection());
+		if(measured.lengthSquared() == 0) return;
+		measured.normalize();
+
+		Vector3f smoothedStart = start[id];
+		Vector3f smoothedDirection = direction[id];
+		if(!tracking[id] || now - lastUpdate[id] > maxPause) {
+			smoothedStart.set(msg.getEnd());
+			smoothedDirection.set(measured);
+			tracking[id] = true;
+		} else {
+			float cos = Math.max(-1, Math.min(1, smoothedDirection.dot(measured)));
+			float speed = Math.min(1, (float)Math.acos(cos) / fastAngle);
+			float alpha = 1 - smoothing * (1 - speed);
+
+			smoothedDirection.scale(1 - alpha);
+			smoothedDirection.scaleAdd(alpha, measured, smoothedDirection);
+			if(smoothedDirection.lengthSquared() == 0) {
+				smoothedDirection.set(measured);
+			}
+			smoothedDirection.normalize();
+
+			smoothedStart.x += (msg.getEnd().x - smoothedStart.x) * alpha;
+			smoothedStart.y += (msg.getEnd().y - smoothedStart.y) * alpha;
+			smoothedStart.z += (msg.getEnd().z - smoothedStart.z) * alpha;
+		}
+		lastUpdate[id] = now;
+
+		if(!wall.intersect(smoothedStart, smoothedDirection, hit, wallHit)) {
+			end(hand);
+			return;
+		}
+
+		FingerPointEvent event = new FingerPointEvent(new Vector3f(hit), hand, new Point2f(wallHit),
+				new Vector3f(smoothedStart), new Vector3f(smoothedDirection), msg.getConfidence());
+		lastEvent[id] = event;
+		for(PointListener evt : pointListenerList) {
+			if(hand == Hand.LEFT) {
+				evt.onLeftHandPoint(event);
+			} else {
+				evt.onRightHandPoint(event);
+			}
+		}
+	}
+
+	/**
+	 * Stops tracking both hands, telling the listeners of a hand that was
+	 * pointing at the wall.
+	 */
+	public void reset() {
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			tracking[hand] = false;
+			end(Hand.fromId(hand));
+		}
+	}
+
+	private void end(Hand hand) {
+		FingerPointEvent event = lastEvent[hand.id()];
+		if(event == null) return;
+		lastEvent[hand.id()] = null;
+		for(PointListener evt : pointListenerList) {
+			if(hand == Hand.LEFT) {
+				evt.onLeftHandPointEnd(event);
+			} else {
+				evt.onRightHandPointEnd(event);
+			}
+		}
+	}
+}
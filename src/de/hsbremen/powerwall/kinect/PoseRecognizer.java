@@ -0,0 +1,156 @@
+package de.hsbremen.powerwall.kinect;
+
+import java.util.ArrayList;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+import com.threegear.gloveless.network.PoseMessage;
+
+import de.hsbremen.powerwall.kinect.events.FingerPoseEvent;
+import de.hsbremen.powerwall.kinect.listener.PoseListener;
+
+/**
+ * Turns the per-frame hand pose confidences of {@link PoseMessage}s into
+ * enter/exit events.
+ * <p>
+ * A pose is entered once its confidence stayed above the enter threshold for
+ * the minimum enter duration, and left once it stayed below the (lower) exit
+ * threshold for the minimum exit duration. The gap between both thresholds
+ * keeps poses from flickering when the confidence hovers around one value.
+ * <p>
+ * The state is updated in place from the confidence arrays; nothing is
+ * allocated unless an event is fired.
+ */
+public class PoseRecognizer {
+
+	private static final int NO_POSE = -1;
+
+	private float enterThreshold = 0.6f;
+	private float exitThreshold = 0.4f;
+	private long minEnterDuration = 150;
+	private long minExitDuration = 100;
+
+	private int[] activePose = new int[HandTrackingMessage.N_HANDS];
+	private long[] activeSince = new long[HandTrackingMessage.N_HANDS];
+	private long[] exitSince = new long[HandTrackingMessage.N_HANDS];
+	private int[] candidatePose = new int[HandTrackingMessage.N_HANDS];
+	private long[] candidateSince = new long[HandTrackingMessage.N_HANDS];
+
+	private ArrayList<PoseListener> poseListenerList = new ArrayList<PoseListener>();
+
+	public PoseRecognizer() {
+		reset();
+	}
+
+	public void addPoseListener(PoseListener listener) {
+		poseListenerList.add(listener);
+	}
+
+	public void setEnterThreshold(float enterThreshold) {
+		this.enterThreshold = enterThreshold;
+	}
+
+	public void setExitThreshold(float exitThreshold) {
+		this.exitThreshold = exitThreshold;
+	}
+
+	public void setMinEnterDuration(long millis) {
+		this.minEnterDuration = millis;
+	}
+
+	public void setMinExitDuration(long millis) {
+		this.minExitDuration = millis;
+	}
+
+	/**
+	 * @return the pose the hand is currently in or null if none is active
+	 */
+	public HandPose getActivePose(Hand hand) {
+		return HandPose.fromId(activePose[hand.id()]);
+	}
+
+	/**
+	 * Forgets all active and pending poses without firing exit events.
+	 */
+	public void reset() {
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			activePose[hand] = NO_POSE;
+			candidatePose[hand] = NO_POSE;
+			exitSince[hand] = -1;
+		}
+	}
+
+	public void update(PoseMessage msg, long now) {
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			update(msg, hand, now);
+		}
+	}
+
+	private void update(PoseMessage msg, int hand, long now) {
+		float[] confidences = msg.getHandPoseConfidences(hand);
+		// an untracked hand counts as being in no pose at all
+		float tracking = msg.getConfidenceEstimate(hand);
+
+		int active = activePose[hand];
+		if(active != NO_POSE) {
+			if(confidences[active] * tracking < exitThreshold) {
+				if(exitSince[hand] < 0) {
+					exitSince[hand] = now;
+				}
+				if(now - exitSince[hand] >= minExitDuration) {
+					firePoseExit(msg, hand, active, confidences[active] * tracking, now);
+					activePose[hand] = NO_POSE;
+					active = NO_POSE;
+				}
+			} else {
+				exitSince[hand] = -1;
+			}
+		}
+
+		int best = NO_POSE;
+		float bestConfidence = 0;
+		for(int i = 0; i < HandTrackingMessage.N_POSES; i++) {
+			if(confidences[i] > bestConfidence) {
+				bestConfidence = confidences[i];
+				best = i;
+			}
+		}
+		bestConfidence *= tracking;
+
+		if(best == NO_POSE || best == active || bestConfidence < enterThreshold) {
+			candidatePose[hand] = NO_POSE;
+			return;
+		}
+		if(candidatePose[hand] != best) {
+			candidatePose[hand] = best;
+			candidateSince[hand] = now;
+		}
+		if(now - candidateSince[hand] >= minEnterDuration) {
+			if(active != NO_POSE) {
+				firePoseExit(msg, hand, active, confidences[active] * tracking, now);
+			}
+			activePose[hand] = best;
+			activeSince[hand] = now;
+			exitSince[hand] = -1;
+			candidatePose[hand] = NO_POSE;
+			firePoseEnter(msg, hand, best, bestConfidence);
+		}
+	}
+
+	private void firePoseEnter(PoseMessage msg, int hand, int pose, float confidence) {
+		Vector3f position = new Vector3f(msg.getHandState(hand).getPosition());
+		for(PoseListener evt : poseListenerList) {
+			evt.onPoseEnter(new FingerPoseEvent(position, Hand.fromId(hand), HandPose.fromId(pose), confidence, 0));
+		}
+	}
+
+	private void firePoseExit(PoseMessage msg, int hand, int pose, float confidence, long now) {
+		Vector3f position = new Vector3f(msg.getHandState(hand).getPosition());
+		for(PoseListener evt : poseListenerList) {
+			evt.onPoseExit(new FingerPoseEvent(position, Hand.fromId(hand), HandPose.fromId(pose), confidence, now - activeSince[hand]));
+		}
+	}
+}
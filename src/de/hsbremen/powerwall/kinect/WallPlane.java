@@ -0,0 +1,92 @@
+package de.hsbremen.powerwall.kinect;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+
+/**
+ * The plane of the powerwall in tracking coordinates together with a 2D
+ * coordinate system on it.
+ * <p>
+ * Wall coordinates are measured in millimeters from the origin along the
+ * right and up axes. The default wall is the z = 0 plane of the tracking
+ * space with x to the right and y up, which matches a standard camera setup.
+ */
+public class WallPlane {
+
+	private static final float EPSILON = 1e-6f;
+
+	private Point3f origin;
+	private Vector3f right;
+	private Vector3f up;
+	private Vector3f normal;
+
+	public WallPlane() {
+		this(new Point3f(0, 0, 0), new Vector3f(1, 0, 0), new Vector3f(0, 1, 0));
+	}
+
+	/**
+	 * @param origin point of the wall with wall coordinates (0, 0)
+	 * @param right direction of the wall's x axis
+	 * @param up direction of the wall's y axis; made orthogonal to right
+	 */
+	public WallPlane(Point3f origin, Vector3f right, Vector3f up) {
+		this.origin = new Point3f(origin);
+		this.right = new Vector3f(right);
+		this.right.normalize();
+		this.normal = new Vector3f();
+		this.normal.cross(this.right, up);
+		this.normal.normalize();
+		this.up = new Vector3f();
+		this.up.cross(this.normal, this.right);
+	}
+
+	public Point3f getOrigin() {
+		return origin;
+	}
+
+	public Vector3f getNormal() {
+		return normal;
+	}
+
+	/**
+	 * @return signed distance of the point from the wall along its normal
+	 */
+	public float distance(Tuple3f point) {
+		return (point.x - origin.x) * normal.x + (point.y - origin.y) * normal.y + (point.z - origin.z) * normal.z;
+	}
+
+	/**
+	 * Projects a point in tracking space onto the wall.
+	 */
+	public void toWall(Tuple3f point, Point2f out) {
+		float x = point.x - origin.x;
+		float y = point.y - origin.y;
+		float z = point.z - origin.z;
+		out.x = x * right.x + y * right.y + z * right.z;
+		out.y = x * up.x + y * up.y + z * up.z;
+	}
+
+	/**
+	 * Intersects a ray with the wall.
+	 * 
+	 * @param start start of the ray
+	 * @param direction direction of the ray, need not be normalized
+	 * @param hit receives the intersection in tracking space
+	 * @param wall receives the intersection in wall coordinates
+	 * @return false if the ray is parallel to or points away from the wall
+	 */
+	public boolean intersect(Tuple3f start, Tuple3f direction, Point3f hit, Point2f wall) {
+		float denominator = direction.x * normal.x + direction.y * normal.y + direction.z * normal.z;
+		if(Math.abs(denominator) < EPSILON) return false;
+		float t = -distance(start) / denominator;
+		if(t < 0) return false;
+
+		hit.x = start.x + direction.x * t;
+		hit.y = start.y + direction.y * t;
+		hit.z = start.z + direction.z * t;
+		toWall(hit, wall);
+		return true;
+	}
+}
@@ -0,0 +1,281 @@
+package de.hsbremen.powerwall.kinect.analytics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingAdapter;
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.UserMessage;
+
+import de.hsbremen.powerwall.kinect.FingerTracker;
+import de.hsbremen.powerwall.kinect.events.FingerBaseEvent;
+import de.hsbremen.powerwall.kinect.events.FingerDragEvent;
+import de.hsbremen.powerwall.kinect.events.FingerGestureEvent;
+import de.hsbremen.powerwall.kinect.events.FingerPoseEvent;
+import de.hsbremen.powerwall.kinect.listener.ClickListener;
+import de.hsbremen.powerwall.kinect.listener.DblClickListener;
+import de.hsbremen.powerwall.kinect.listener.DragListener;
+import de.hsbremen.powerwall.kinect.listener.GestureListener;
+import de.hsbremen.powerwall.kinect.listener.PoseListener;
+import de.hsbremen.powerwall.kinect.recording.ReplaySource;
+import de.hsbremen.powerwall.kinect.recording.SessionInput;
+import de.hsbremen.powerwall.kinect.recording.SessionReader;
+import de.hsbremen.powerwall.kinect.recording.TextSessionReader;
+
+/**
+ * Computes {@link SessionStats} over many recorded sessions in parallel.
+ * <p>
+ * Binary sessions are split by segment, text sessions are one split each.
+ * Every split is replayed at maximum speed through its own 
+ * {@link FingerTracker} on a fork-join pool, and the statistics of the splits
+ * are merged in order. Splits share nothing, so the analysis scales with the
+ * number of cores. A click, drag or gesture that spans two segments is cut at
+ * the segment boundary.
+ */
+public class SessionAnalyzer {
+
+	private final ForkJoinPool pool;
+	private final List<Split> splits = new ArrayList<Split>();
+	private TrackerSetup setup;
+
+	public SessionAnalyzer() {
+		this(new ForkJoinPool());
+	}
+
+	public SessionAnalyzer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Configures every tracker before its split is replayed.
+	 */
+	public void setTrackerSetup(TrackerSetup setup) {
+		this.setup = setup;
+	}
+
+	/**
+	 * Adds all segments of a session written by a 
+	 * {@link de.hsbremen.powerwall.kinect.recording.SessionRecorder}.
+	 * 
+	 * @throws IOException if there is no such session
+	 */
+	public void addSession(final File directory, final String name) throws IOException {
+		int segments = SessionReader.getSegmentCount(directory, name);
+		if(segments == 0) {
+			throw new IOException("no session " + name + " in " + directory);
+		}
+		for(int i = 0; i < segments; i++) {
+			final int segment = i;
+			splits.add(new Split(name + " segment " + segment, segment > 0) {
+				@Override
+				SessionInput open() throws IOException {
+					return new SessionReader(directory, name, segment, 1);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Adds a text session, see {@link TextSessionReader}.
+	 */
+	public void addTextSession(final File file) {
+		splits.add(new Split(file.getName(), false) {
+			@Override
+			SessionInput open() throws IOException {
+				return new TextSessionReader(file);
+			}
+		});
+	}
+
+	/**
+	 * Replays all added sessions and merges their statistics.
+	 * 
+	 * @throws IOException if a split cannot be read
+	 */
+	public SessionStats analyze() throws IOException {
+		if(splits.isEmpty()) return new SessionStats();
+		try {
+			return pool.invoke(new AnalyzeTask(0, splits.size()));
+		} catch(SplitException e) {
+			throw e.getCause();
+		}
+	}
+
+	private SessionStats analyze(Split split) throws IOException {
+		final SessionStats stats = new SessionStats();
+		ReplaySource source = new ReplaySource(split.open(), ReplaySource.MAX_SPEED);
+		FingerTracker tracker = new FingerTracker(source, source.getClock());
+		if(setup != null) {
+			setup.setUp(tracker);
+		}
+		source.addListener(new HandTrackingAdapter() {
+			@Override
+			public void handleEvent(HandTrackingMessage message) {
+				stats.addLine();
+				if(message instanceof UserMessage) {
+					stats.setUser(((UserMessage)message).getUserProfileName());
+				}
+			}
+		});
+		tracker.addClickListener(new ClickListener() {
+			@Override
+			public void onLeftClick(FingerBaseEvent evt) {
+				stats.addClick();
+			}
+
+			@Override
+			public void onRightClick(FingerBaseEvent evt) {
+				stats.addClick();
+			}
+
+			@Override
+			public void onLeftPress(FingerBaseEvent evt) {
+			}
+
+			@Override
+			public void onRightPress(FingerBaseEvent evt) {
+			}
+
+			@Override
+			public void onLeftRelease(FingerBaseEvent evt) {
+			}
+
+			@Override
+			public void onRightRelease(FingerBaseEvent evt) {
+			}
+		});
+		tracker.addDblClickListener(new DblClickListener() {
+			@Override
+			public void onLeftDblClick(FingerBaseEvent evt) {
+				stats.addDblClick();
+			}
+
+			@Override
+			public void onRightDblClick(FingerBaseEvent evt) {
+				stats.addDblClick();
+			}
+		});
+		tracker.addDragListener(new DragListener() {
+			private final Vector3f delta = new Vector3f();
+
+			@Override
+			public void onLeftHandDragEnd(FingerDragEvent evt) {
+				delta.sub(evt.getDragPosition(), evt.getDragStart());
+				stats.addDrag(delta.length());
+			}
+
+			@Override
+			public void onRightHandDragEnd(FingerDragEvent evt) {
+				onLeftHandDragEnd(evt);
+			}
+
+			@Override
+			public void onLeftHandDragStart(FingerDragEvent evt) {
+			}
+
+			@Override
+			public void onRightHandDragStart(FingerDragEvent evt) {
+			}
+
+			@Override
+			public void onLeftHandDrag(FingerDragEvent evt) {
+			}
+
+			@Override
+			public void onRightHandDrag(FingerDragEvent evt) {
+			}
+		});
+		tracker.addGestureListener(new GestureListener() {
+			@Override
+			public void onGesture(FingerGestureEvent evt) {
+				stats.addGesture(evt.getName());
+			}
+		});
+		tracker.addPoseListener(new PoseListener() {
+			@Override
+			public void onPoseEnter(FingerPoseEvent evt) {
+			}
+
+			@Override
+			public void onPoseExit(FingerPoseEvent evt) {
+				stats.addPose(evt.getPose(), evt.getDuration());
+			}
+		});
+
+		source.run();
+		if(source.getError() != null) {
+			throw source.getError();
+		}
+		stats.addGestureAttempts(tracker.getGestureRecognizer().getAttemptCount(), 
+				tracker.getGestureRecognizer().getFailedAttemptCount());
+		return stats;
+	}
+
+	private abstract static class Split {
+		private final String name;
+		/** the split continues the session of the split before */
+		private final boolean continuation;
+
+		Split(String name, boolean continuation) {
+			this.name = name;
+			this.continuation = continuation;
+		}
+
+		abstract SessionInput open() throws IOException;
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private class AnalyzeTask extends RecursiveTask<SessionStats> {
+		private static final long serialVersionUID = 1L;
+
+		private final int start;
+		private final int end;
+
+		AnalyzeTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected SessionStats compute() {
+			if(end - start == 1) {
+				Split split = splits.get(start);
+				try {
+					return analyze(split);
+				} catch(IOException e) {
+					throw new SplitException(split, e);
+				}
+			}
+			int mid = (start + end) >>> 1;
+			AnalyzeTask left = new AnalyzeTask(start, mid);
+			AnalyzeTask right = new AnalyzeTask(mid, end);
+			right.fork();
+			SessionStats stats = left.compute();
+			stats.merge(right.join(), splits.get(mid).continuation);
+			return stats;
+		}
+	}
+
+	private static class SplitException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		SplitException(Split split, IOException cause) {
+			super("could not analyze " + split, cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException)super.getCause();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package de.hsbremen.powerwall.kinect.analytics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+
+/**
+ * Usage statistics of a part of a recorded session: clicks, drags, gestures
+ * and the time each user spent in each pose.
+ * <p>
+ * Statistics of consecutive parts can be merged in any grouping, as long as
+ * the order of the parts is kept. Pose time before the first user message of a
+ * part belongs to the last user of the preceding part.
+ */
+public class SessionStats {
+
+	/** user of pose time before the first user message of a session */
+	public static final String UNKNOWN_USER = "?";
+
+	/** width of the drag length histogram buckets in millimeters */
+	public static final float DRAG_BUCKET_WIDTH = 50;
+	public static final int DRAG_BUCKETS = 20;
+
+	private long lines;
+	private long clicks;
+	private long dblClicks;
+	private long drags;
+	private double dragLengthTotal;
+	private long[] dragLengths = new long[DRAG_BUCKETS];
+	private Map<String, Long> gestures = new TreeMap<String, Long>();
+	private long gestureAttempts;
+	private long failedGestureAttempts;
+
+	private long[] leadingPoseMillis = new long[HandTrackingMessage.N_POSES];
+	private Map<String, long[]> poseMillis = new TreeMap<String, long[]>();
+	private String user;
+
+	void addLine() {
+		lines++;
+	}
+
+	void addClick() {
+		clicks++;
+	}
+
+	void addDblClick() {
+		dblClicks++;
+	}
+
+	void addDrag(float length) {
+		drags++;
+		dragLengthTotal += length;
+		dragLengths[Math.min(DRAG_BUCKETS - 1, (int)(length / DRAG_BUCKET_WIDTH))]++;
+	}
+
+	void addGesture(String name) {
+		Long count = gestures.get(name);
+		gestures.put(name, count == null ? 1 : count + 1);
+	}
+
+	void addGestureAttempts(long attempts, long failed) {
+		gestureAttempts += attempts;
+		failedGestureAttempts += failed;
+	}
+
+	void setUser(String user) {
+		this.user = user;
+	}
+
+	void addPose(HandPose pose, long millis) {
+		long[] poses = user == null ? leadingPoseMillis : poseMillis(poseMillis, user);
+		poses[pose.ordinal()] += millis;
+	}
+
+	private static long[] poseMillis(Map<String, long[]> poseMillis, String user) {
+		long[] poses = poseMillis.get(user);
+		if(poses == null) {
+			poses = new long[HandTrackingMessage.N_POSES];
+			poseMillis.put(user, poses);
+		}
+		return poses;
+	}
+
+	/**
+	 * Adds the statistics of the part that follows this one.
+	 * 
+	 * @param next
+	 * @param continuous true if the next part continues the same session, so
+	 * its pose time before its first user message belongs to the last user of
+	 * this part
+	 */
+	public void merge(SessionStats next, boolean continuous) {
+		lines += next.lines;
+		clicks += next.clicks;
+		dblClicks += next.dblClicks;
+		drags += next.drags;
+		dragLengthTotal += next.dragLengthTotal;
+		for(int i = 0; i < DRAG_BUCKETS; i++) {
+			dragLengths[i] += next.dragLengths[i];
+		}
+		for(Map.Entry<String, Long> gesture : next.gestures.entrySet()) {
+			Long count = gestures.get(gesture.getKey());
+			gestures.put(gesture.getKey(), count == null ? gesture.getValue() : count + gesture.getValue());
+		}
+		gestureAttempts += next.gestureAttempts;
+		failedGestureAttempts += next.failedGestureAttempts;
+
+		long[] leading;
+		if(user != null && continuous) {
+			leading = poseMillis(poseMillis, user);
+		} else if(user == null && continuous) {
+			leading = leadingPoseMillis;
+		} else {
+			leading = poseMillis(poseMillis, UNKNOWN_USER);
+		}
+		add(leading, next.leadingPoseMillis);
+		for(Map.Entry<String, long[]> poses : next.poseMillis.entrySet()) {
+			add(poseMillis(poseMillis, poses.getKey()), poses.getValue());
+		}
+		if(next.user != null) {
+			user = next.user;
+		} else if(!continuous) {
+			// a new session without user messages must not inherit the last user
+			user = UNKNOWN_USER;
+		}
+	}
+
+	private static void add(long[] sum, long[] values) {
+		for(int i = 0; i < sum.length; i++) {
+			sum[i] += values[i];
+		}
+	}
+
+	public long getLineCount() {
+		return lines;
+	}
+
+	public long getClickCount() {
+		return clicks;
+	}
+
+	public long getDblClickCount() {
+		return dblClicks;
+	}
+
+	public long getDragCount() {
+		return drags;
+	}
+
+	/**
+	 * @return mean distance between drag start and end in millimeters
+	 */
+	public double getMeanDragLength() {
+		return drags == 0 ? 0 : dragLengthTotal / drags;
+	}
+
+	/**
+	 * @return number of drags per length bucket of {@link #DRAG_BUCKET_WIDTH};
+	 * the last bucket holds all longer drags
+	 */
+	public long[] getDragLengthHistogram() {
+		return dragLengths.clone();
+	}
+
+	/**
+	 * @return number of recognized gestures by template name
+	 */
+	public Map<String, Long> getGestureCounts() {
+		return Collections.unmodifiableMap(gestures);
+	}
+
+	public long getGestureAttemptCount() {
+		return gestureAttempts;
+	}
+
+	/**
+	 * @return share of gesture attempts that did not produce a gesture
+	 */
+	public double getGestureFailureRate() {
+		return gestureAttempts == 0 ? 0 : (double)failedGestureAttempts / gestureAttempts;
+	}
+
+	/**
+	 * @return milliseconds each user held each pose, indexed by {@link HandPose#ordinal()}
+	 */
+	public Map<String, long[]> getPoseMillis() {
+		Map<String, long[]> result = new TreeMap<String, long[]>();
+		for(Map.Entry<String, long[]> poses : poseMillis.entrySet()) {
+			result.put(poses.getKey(), poses.getValue().clone());
+		}
+		if(hasTime(leadingPoseMillis)) {
+			long[] unknown = poseMillis(result, UNKNOWN_USER);
+			add(unknown, leadingPoseMillis);
+		}
+		return result;
+	}
+
+	private static boolean hasTime(long[] poses) {
+		for(long millis : poses) {
+			if(millis != 0) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("lines: %d, clicks: %d, double clicks: %d%n", lines, clicks, dblClicks));
+		sb.append(String.format("drags: %d, mean length %.1f mm, histogram %s%n", 
+				drags, getMeanDragLength(), Arrays.toString(dragLengths)));
+		sb.append(String.format("gestures: %s, attempts: %d, failure rate %.1f%%", 
+				gestures, gestureAttempts, getGestureFailureRate() * 100));
+		for(Map.Entry<String, long[]> poses : getPoseMillis().entrySet()) {
+			sb.append(String.format("%nposes of %s:", poses.getKey()));
+			for(HandPose pose : HandPose.values()) {
+				sb.append(String.format(" %s %.1fs", pose, poses.getValue()[pose.ordinal()] / 1000.0));
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,11 @@
+package de.hsbremen.powerwall.kinect.analytics;
+
+import de.hsbremen.powerwall.kinect.FingerTracker;
+
+/**
+ * Configures each tracker a {@link SessionAnalyzer} creates, for instance by
+ * adding gesture templates or changing thresholds.
+ */
+public interface TrackerSetup {
+	public void setUp(FingerTracker tracker);
+}
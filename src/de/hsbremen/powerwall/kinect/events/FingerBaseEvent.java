@@ -2,14 +2,74 @@ package de.hsbremen.powerwall.kinect.events;
 
 import javax.vecmath.Vector3f;
 
+import de.hsbremen.powerwall.kinect.HitTarget;
+
+/**
+ * Base class of all finger events.
+ * <p>
+ * Events created with a position are immutable. Events created with the
+ * no-argument constructor are recycled by the tracker: it refills them for
+ * every message, so they are only valid until the listener returns. Listeners
+ * that keep such an event must store a {@link #snapshot()} instead.
+ */
 public class FingerBaseEvent {
 	private Vector3f position;
+	private boolean recycled;
+	private HitTarget target;
 	
 	public FingerBaseEvent(Vector3f position) {
 		this.position = position;
 	}
 	
+	/**
+	 * Creates a recycled event that owns its position.
+	 */
+	public FingerBaseEvent() {
+		this.position = new Vector3f();
+		this.recycled = true;
+	}
+	
 	public Vector3f getPosition() {
 		return position;
 	}
+	
+	/**
+	 * Refills a recycled event; used by the tracker.
+	 */
+	public void set(Vector3f position) {
+		this.position.set(position);
+	}
+	
+	/**
+	 * @return the topmost target under the hand, or null if no
+	 * {@link de.hsbremen.powerwall.kinect.HitTestService} is set or nothing was hit
+	 */
+	public HitTarget getTarget() {
+		return target;
+	}
+	
+	/**
+	 * Sets the hit target; used by the tracker.
+	 */
+	public void setTarget(HitTarget target) {
+		this.target = target;
+	}
+	
+	/**
+	 * @return true if the event is reused for later messages
+	 */
+	public boolean isRecycled() {
+		return recycled;
+	}
+	
+	/**
+	 * @return an event with the same content that stays valid after the
+	 * callback; the event itself if it isn't recycled
+	 */
+	public FingerBaseEvent snapshot() {
+		if(!recycled) return this;
+		FingerBaseEvent copy = new FingerBaseEvent(new Vector3f(position));
+		copy.target = target;
+		return copy;
+	}
 }
@@ -0,0 +1,133 @@
+package de.hsbremen.powerwall.kinect.events;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+/**
+ * All move and drag updates of both hands since the previous batch.
+ * <p>
+ * The event and its arrays are reused for the next batch, so they are only
+ * valid during the callback. Copy what you need to keep.
+ */
+public class FingerBatchEvent {
+	private int[] count = new int[HandTrackingMessage.N_HANDS];
+	private Vector3f[] position = new Vector3f[HandTrackingMessage.N_HANDS];
+	private boolean[] dragging = new boolean[HandTrackingMessage.N_HANDS];
+	private Vector3f[] dragStart = new Vector3f[HandTrackingMessage.N_HANDS];
+	private float[][] history = new float[HandTrackingMessage.N_HANDS][];
+	private long[][] historyTimes = new long[HandTrackingMessage.N_HANDS][];
+	private boolean keepHistory;
+	
+	public FingerBatchEvent(boolean keepHistory) {
+		this.keepHistory = keepHistory;
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			position[hand] = new Vector3f();
+			dragStart[hand] = new Vector3f();
+			if(keepHistory) {
+				history[hand] = new float[3 * 16];
+				historyTimes[hand] = new long[16];
+			}
+		}
+	}
+	
+	/**
+	 * @return whether the batch records all positions, see {@link #getHistory(Hand)}
+	 */
+	public boolean isKeepHistory() {
+		return keepHistory;
+	}
+	
+	/**
+	 * @return number of move updates of the hand in this batch
+	 */
+	public int getCount(Hand hand) {
+		return count[hand.id()];
+	}
+	
+	public boolean hasMoved(Hand hand) {
+		return count[hand.id()] > 0;
+	}
+	
+	/**
+	 * @return latest position of the hand
+	 */
+	public Vector3f getPosition(Hand hand) {
+		return position[hand.id()];
+	}
+	
+	public boolean isDragging(Hand hand) {
+		return dragging[hand.id()];
+	}
+	
+	public Vector3f getDragStart(Hand hand) {
+		return dragStart[hand.id()];
+	}
+	
+	/**
+	 * @return x, y, z triples of all positions in this batch, oldest first; only
+	 * the first {@link #getCount(Hand)} entries are valid. Null if the tracker
+	 * does not keep the history.
+	 */
+	public float[] getHistory(Hand hand) {
+		return history[hand.id()];
+	}
+	
+	/**
+	 * @return times in milliseconds matching {@link #getHistory(Hand)}
+	 */
+	public long[] getHistoryTimes(Hand hand) {
+		return historyTimes[hand.id()];
+	}
+	
+	public boolean isEmpty() {
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			if(count[hand] > 0) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Appends a move update; used by the tracker while accumulating a batch.
+	 */
+	public void addMove(Hand hand, Vector3f position, long when) {
+		int id = hand.id();
+		this.position[id].set(position);
+		if(keepHistory) {
+			int n = count[id];
+			if(n == historyTimes[id].length) {
+				float[] grownHistory = new float[history[id].length * 2];
+				System.arraycopy(history[id], 0, grownHistory, 0, history[id].length);
+				history[id] = grownHistory;
+				long[] grownTimes = new long[historyTimes[id].length * 2];
+				System.arraycopy(historyTimes[id], 0, grownTimes, 0, historyTimes[id].length);
+				historyTimes[id] = grownTimes;
+			}
+			history[id][n * 3] = position.x;
+			history[id][n * 3 + 1] = position.y;
+			history[id][n * 3 + 2] = position.z;
+			historyTimes[id][n] = when;
+		}
+		count[id]++;
+	}
+	
+	/**
+	 * Marks the hand as dragging in this batch; used by the tracker while
+	 * accumulating a batch.
+	 */
+	public void addDrag(Hand hand, Vector3f dragStart) {
+		dragging[hand.id()] = true;
+		this.dragStart[hand.id()].set(dragStart);
+	}
+	
+	/**
+	 * Empties the batch; used by the tracker after delivering it.
+	 */
+	public void clear() {
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			count[hand] = 0;
+			dragging[hand] = false;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package de.hsbremen.powerwall.kinect.events;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * Two-handed manipulation relative to the start of the gesture. The position
+ * of the event is the centroid between both hands.
+ */
+public class FingerBimanualEvent extends FingerBaseEvent {
+	private Vector3f leftPosition;
+	private Vector3f rightPosition;
+	private float scale;
+	private float rotation;
+	private Vector3f translation;
+	private float deltaScale;
+	private float deltaRotation;
+	private Vector3f deltaTranslation;
+	
+	public FingerBimanualEvent(Vector3f centroid, Vector3f leftPosition, Vector3f rightPosition,
+			float scale, float rotation, Vector3f translation,
+			float deltaScale, float deltaRotation, Vector3f deltaTranslation) {
+		super(centroid);
+		this.leftPosition = leftPosition;
+		this.rightPosition = rightPosition;
+		this.scale = scale;
+		this.rotation = rotation;
+		this.translation = translation;
+		this.deltaScale = deltaScale;
+		this.deltaRotation = deltaRotation;
+		this.deltaTranslation = deltaTranslation;
+	}
+	
+	public Vector3f getLeftPosition() {
+		return leftPosition;
+	}
+	
+	public Vector3f getRightPosition() {
+		return rightPosition;
+	}
+	
+	/**
+	 * @return distance between the hands divided by their distance at the start
+	 */
+	public float getScale() {
+		return scale;
+	}
+	
+	/**
+	 * @return rotation of the line between the hands around the wall normal
+	 * since the start, counter-clockwise in radians
+	 */
+	public float getRotation() {
+		return rotation;
+	}
+	
+	/**
+	 * @return movement of the centroid since the start
+	 */
+	public Vector3f getTranslation() {
+		return translation;
+	}
+	
+	/**
+	 * @return scale change since the previous event
+	 */
+	public float getDeltaScale() {
+		return deltaScale;
+	}
+	
+	/**
+	 * @return rotation since the previous event in radians
+	 */
+	public float getDeltaRotation() {
+		return deltaRotation;
+	}
+	
+	/**
+	 * @return movement of the centroid since the previous event
+	 */
+	public Vector3f getDeltaTranslation() {
+		return deltaTranslation;
+	}
+}
@@ -2,21 +2,44 @@ package de.hsbremen.powerwall.kinect.events;
 
 import javax.vecmath.Vector3f;
 
-public class FingerDragEvent {
+public class FingerDragEvent extends FingerBaseEvent {
 
 		private Vector3f dragStart;
-		private Vector3f dragPosition;
 		
 		public FingerDragEvent(Vector3f dragStart, Vector3f dragPosition) {
+			super(dragPosition);
 			this.dragStart = dragStart;
-			this.dragPosition = dragPosition;
+		}
+		
+		/**
+		 * Creates a recycled event that owns its positions.
+		 */
+		public FingerDragEvent() {
+			super();
+			this.dragStart = new Vector3f();
 		}
 		
 		public Vector3f getDragPosition() {
-			return dragPosition;
+			return getPosition();
 		}
 		
 		public Vector3f getDragStart() {
 			return dragStart;
 		}
+		
+		/**
+		 * Refills a recycled event; used by the tracker.
+		 */
+		public void set(Vector3f dragStart, Vector3f dragPosition) {
+			set(dragPosition);
+			this.dragStart.set(dragStart);
+		}
+		
+		@Override
+		public FingerDragEvent snapshot() {
+			if(!isRecycled()) return this;
+			FingerDragEvent copy = new FingerDragEvent(new Vector3f(dragStart), new Vector3f(getPosition()));
+			copy.setTarget(getTarget());
+			return copy;
+		}
 }
@@ -0,0 +1,25 @@
+package de.hsbremen.powerwall.kinect.events;
+
+/**
+ * The events the {@link de.hsbremen.powerwall.kinect.FingerTracker} derives
+ * from pinch messages, one per method of the click, double click, drag and
+ * move listeners.
+ */
+public enum FingerEventType {
+	PRESS,
+	RELEASE,
+	CLICK,
+	DBL_CLICK,
+	DRAG_START,
+	DRAG,
+	DRAG_END,
+	MOVE;
+	
+	/**
+	 * @return true for events that are sent for every frame while a hand
+	 * moves, false for discrete events like clicks
+	 */
+	public boolean isContinuous() {
+		return this == DRAG || this == MOVE;
+	}
+}
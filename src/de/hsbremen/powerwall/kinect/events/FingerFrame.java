@@ -0,0 +1,140 @@
+package de.hsbremen.powerwall.kinect.events;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+
+/**
+ * State of both hands after one message, as seen by the tracker.
+ * <p>
+ * Like the other events a frame is recycled if the tracker reuses events; it
+ * is then only valid until the listener returns and {@link #snapshot()} must
+ * be used to keep it.
+ */
+public class FingerFrame {
+	private MessageType type;
+	private Hand hand;
+	private long time;
+	private Vector3f[] position = new Vector3f[HandTrackingMessage.N_HANDS];
+	private Quat4f[] rotation = new Quat4f[HandTrackingMessage.N_HANDS];
+	private int[] clickCount = new int[HandTrackingMessage.N_HANDS];
+	private boolean[] pressed = new boolean[HandTrackingMessage.N_HANDS];
+	private boolean[] dragging = new boolean[HandTrackingMessage.N_HANDS];
+	private Vector3f[] dragStart = new Vector3f[HandTrackingMessage.N_HANDS];
+	private HandPose[] pose = new HandPose[HandTrackingMessage.N_HANDS];
+	private boolean recycled;
+	
+	public FingerFrame(boolean recycled) {
+		this.recycled = recycled;
+		for(int i = 0; i < HandTrackingMessage.N_HANDS; i++) {
+			position[i] = new Vector3f();
+			rotation[i] = new Quat4f(0, 0, 0, 1);
+			dragStart[i] = new Vector3f();
+		}
+	}
+	
+	/**
+	 * @return type of the message that produced this frame
+	 */
+	public MessageType getType() {
+		return type;
+	}
+	
+	/**
+	 * @return hand the message referred to; BOTH for simultaneous bimanual
+	 * messages and null for messages without a hand like POSE
+	 */
+	public Hand getHand() {
+		return hand;
+	}
+	
+	/**
+	 * @return time the message was handled in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	public Vector3f getPosition(Hand hand) {
+		return position[hand.id()];
+	}
+	
+	public Quat4f getRotation(Hand hand) {
+		return rotation[hand.id()];
+	}
+	
+	public int getClickCount(Hand hand) {
+		return clickCount[hand.id()];
+	}
+	
+	public boolean isPressed(Hand hand) {
+		return pressed[hand.id()];
+	}
+	
+	public boolean isDragging(Hand hand) {
+		return dragging[hand.id()];
+	}
+	
+	/**
+	 * @return where the current drag started; only meaningful while dragging
+	 */
+	public Vector3f getDragStart(Hand hand) {
+		return dragStart[hand.id()];
+	}
+	
+	/**
+	 * @return the pose the hand is in according to the pose recognizer or null
+	 */
+	public HandPose getPose(Hand hand) {
+		return pose[hand.id()];
+	}
+	
+	public boolean isRecycled() {
+		return recycled;
+	}
+	
+	/**
+	 * Refills the message fields; used by the tracker.
+	 */
+	public void setMessage(MessageType type, Hand hand, long time) {
+		this.type = type;
+		this.hand = hand;
+		this.time = time;
+	}
+	
+	/**
+	 * Refills the state of one hand; used by the tracker.
+	 */
+	public void setHand(Hand hand, Tuple3f position, Quat4f rotation, int clickCount,
+			boolean pressed, boolean dragging, Tuple3f dragStart, HandPose pose) {
+		int id = hand.id();
+		this.position[id].set(position);
+		this.rotation[id].set(rotation);
+		this.clickCount[id] = clickCount;
+		this.pressed[id] = pressed;
+		this.dragging[id] = dragging;
+		if(dragStart != null) {
+			this.dragStart[id].set(dragStart);
+		}
+		this.pose[id] = pose;
+	}
+	
+	/**
+	 * @return a frame with the same content that stays valid after the
+	 * callback; the frame itself if it isn't recycled
+	 */
+	public FingerFrame snapshot() {
+		if(!recycled) return this;
+		FingerFrame copy = new FingerFrame(false);
+		copy.setMessage(type, hand, time);
+		for(int i = 0; i < HandTrackingMessage.N_HANDS; i++) {
+			copy.setHand(Hand.fromId(i), position[i], rotation[i], clickCount[i], pressed[i], dragging[i], dragStart[i], pose[i]);
+		}
+		return copy;
+	}
+}
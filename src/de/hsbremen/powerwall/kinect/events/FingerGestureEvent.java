@@ -0,0 +1,48 @@
+package de.hsbremen.powerwall.kinect.events;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+public class FingerGestureEvent extends FingerBaseEvent {
+	private Hand hand;
+	private String name;
+	private float score;
+	private Vector3f startPosition;
+	private long duration;
+	
+	public FingerGestureEvent(Vector3f position, Hand hand, String name, float score, Vector3f startPosition, long duration) {
+		super(position);
+		this.hand = hand;
+		this.name = name;
+		this.score = score;
+		this.startPosition = startPosition;
+		this.duration = duration;
+	}
+	
+	public Hand getHand() {
+		return hand;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return how well the movement matched the template; 1 is a perfect match
+	 */
+	public float getScore() {
+		return score;
+	}
+	
+	public Vector3f getStartPosition() {
+		return startPosition;
+	}
+	
+	/**
+	 * @return time between start and end of the gesture in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+}
@@ -0,0 +1,35 @@
+package de.hsbremen.powerwall.kinect.events;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+import de.hsbremen.powerwall.kinect.HitTarget;
+
+/**
+ * A hand entered or left a {@link HitTarget}. The target of the event is the
+ * target entered or left.
+ */
+public class FingerHoverEvent extends FingerBaseEvent {
+	private Hand hand;
+	private Point2f wallPosition;
+	
+	public FingerHoverEvent(Vector3f position, Hand hand, HitTarget target, Point2f wallPosition) {
+		super(position);
+		this.hand = hand;
+		this.wallPosition = wallPosition;
+		setTarget(target);
+	}
+	
+	public Hand getHand() {
+		return hand;
+	}
+	
+	/**
+	 * @return hand position in wall coordinates (millimeters)
+	 */
+	public Point2f getWallPosition() {
+		return wallPosition;
+	}
+}
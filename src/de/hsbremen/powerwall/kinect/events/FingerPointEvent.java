@@ -0,0 +1,56 @@
+package de.hsbremen.powerwall.kinect.events;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+/**
+ * Where a pointing hand hits the wall. The position of the event is the hit
+ * point in tracking space.
+ */
+public class FingerPointEvent extends FingerBaseEvent {
+	private Hand hand;
+	private Point2f wallPosition;
+	private Vector3f start;
+	private Vector3f direction;
+	private float confidence;
+	
+	public FingerPointEvent(Vector3f position, Hand hand, Point2f wallPosition, Vector3f start, Vector3f direction, float confidence) {
+		super(position);
+		this.hand = hand;
+		this.wallPosition = wallPosition;
+		this.start = start;
+		this.direction = direction;
+		this.confidence = confidence;
+	}
+	
+	public Hand getHand() {
+		return hand;
+	}
+	
+	/**
+	 * @return hit point in wall coordinates (millimeters)
+	 */
+	public Point2f getWallPosition() {
+		return wallPosition;
+	}
+	
+	/**
+	 * @return smoothed finger tip the ray starts at
+	 */
+	public Vector3f getStart() {
+		return start;
+	}
+	
+	/**
+	 * @return smoothed, normalized pointing direction
+	 */
+	public Vector3f getDirection() {
+		return direction;
+	}
+	
+	public float getConfidence() {
+		return confidence;
+	}
+}
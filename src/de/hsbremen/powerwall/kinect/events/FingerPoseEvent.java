@@ -0,0 +1,43 @@
+package de.hsbremen.powerwall.kinect.events;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+
+public class FingerPoseEvent extends FingerBaseEvent {
+	private Hand hand;
+	private HandPose pose;
+	private float confidence;
+	private long duration;
+	
+	public FingerPoseEvent(Vector3f position, Hand hand, HandPose pose, float confidence, long duration) {
+		super(position);
+		this.hand = hand;
+		this.pose = pose;
+		this.confidence = confidence;
+		this.duration = duration;
+	}
+	
+	public Hand getHand() {
+		return hand;
+	}
+	
+	public HandPose getPose() {
+		return pose;
+	}
+	
+	/**
+	 * @return confidence of the pose in the frame that triggered the event
+	 */
+	public float getConfidence() {
+		return confidence;
+	}
+	
+	/**
+	 * @return how long the pose was held in milliseconds; 0 for enter events
+	 */
+	public long getDuration() {
+		return duration;
+	}
+}
@@ -0,0 +1,11 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+/**
+ * Selects items.
+ *
+ * @param <T> the item type
+ */
+public interface Filter<T> {
+
+	public boolean accept(T item);
+}
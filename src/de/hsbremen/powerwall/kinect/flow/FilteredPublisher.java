@@ -0,0 +1,46 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+/**
+ * The items of a {@link FlowPublisher} that a filter accepts. Subscribing
+ * here subscribes to the underlying publisher with the filter.
+ *
+ * @param <T> the item type
+ */
+public class FilteredPublisher<T> implements Publisher<T> {
+
+	private final FlowPublisher<T> publisher;
+	private final Filter<? super T> filter;
+
+	FilteredPublisher(FlowPublisher<T> publisher, Filter<? super T> filter) {
+		this.publisher = publisher;
+		this.filter = filter;
+	}
+
+	/**
+	 * @see FlowPublisher#subscribe(Subscriber)
+	 */
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		publisher.subscribe(subscriber, OverflowStrategy.DROP_OLDEST_CONTINUOUS, FlowPublisher.DEFAULT_CAPACITY, filter);
+	}
+
+	/**
+	 * @param more further filter, or null
+	 * @see FlowPublisher#subscribe(Subscriber, OverflowStrategy, int, Filter)
+	 */
+	public void subscribe(Subscriber<? super T> subscriber, OverflowStrategy strategy, int capacity,
+			Filter<? super T> more) {
+		if(more == null) {
+			publisher.subscribe(subscriber, strategy, capacity, filter);
+		} else {
+			publisher.subscribe(subscriber, strategy, capacity, FlowPublisher.<T>both(filter, more));
+		}
+	}
+
+	/**
+	 * @return the items both filters accept
+	 */
+	public FilteredPublisher<T> filter(Filter<? super T> more) {
+		return new FilteredPublisher<T>(publisher, FlowPublisher.<T>both(filter, more));
+	}
+}
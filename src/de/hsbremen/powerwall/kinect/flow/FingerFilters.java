@@ -0,0 +1,93 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+import java.util.EnumSet;
+
+import com.threegear.gloveless.network.BimanualPinchMessage;
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+import com.threegear.gloveless.network.PinchMessage;
+import com.threegear.gloveless.network.PointMessage;
+
+import de.hsbremen.powerwall.kinect.events.FingerEventType;
+
+/**
+ * Filters for the publishers of the
+ * {@link de.hsbremen.powerwall.kinect.FingerTracker}, to be passed to
+ * {@link FlowPublisher#filter(Filter)} or
+ * {@link FlowPublisher#subscribe(Subscriber, OverflowStrategy, int, Filter)}.
+ */
+public class FingerFilters {
+	
+	/**
+	 * Selects the continuous events, drags and moves.
+	 */
+	public static final Filter<TrackedEvent> CONTINUOUS_EVENTS = new Filter<TrackedEvent>() {
+		@Override
+		public boolean accept(TrackedEvent item) {
+			return item.getType().isContinuous();
+		}
+	};
+	
+	/**
+	 * Selects the messages that are sent for every frame: moves, drags
+	 * including bimanual drags, poses and points.
+	 */
+	public static final Filter<HandTrackingMessage> CONTINUOUS_MESSAGES = messageTypes(
+			MessageType.MOVED, MessageType.DRAGGED, MessageType.DRAGGED_BIMANUAL, MessageType.POSE, MessageType.POINT);
+	
+	private FingerFilters() {
+	}
+	
+	public static Filter<TrackedEvent> hand(final Hand hand) {
+		return new Filter<TrackedEvent>() {
+			@Override
+			public boolean accept(TrackedEvent item) {
+				return item.getHand() == hand;
+			}
+		};
+	}
+	
+	public static Filter<TrackedEvent> eventTypes(FingerEventType first, FingerEventType... rest) {
+		final EnumSet<FingerEventType> types = EnumSet.of(first, rest);
+		return new Filter<TrackedEvent>() {
+			@Override
+			public boolean accept(TrackedEvent item) {
+				return types.contains(item.getType());
+			}
+		};
+	}
+	
+	public static Filter<HandTrackingMessage> messageTypes(MessageType first, MessageType... rest) {
+		final EnumSet<MessageType> types = EnumSet.of(first, rest);
+		return new Filter<HandTrackingMessage>() {
+			@Override
+			public boolean accept(HandTrackingMessage item) {
+				return types.contains(item.getType());
+			}
+		};
+	}
+	
+	/**
+	 * Selects the pinch, bimanual and point messages of the given hand and the
+	 * messages that describe both hands, like poses.
+	 */
+	public static Filter<HandTrackingMessage> messageHand(final Hand hand) {
+		return new Filter<HandTrackingMessage>() {
+			@Override
+			public boolean accept(HandTrackingMessage item) {
+				Hand messageHand;
+				if(item instanceof PinchMessage) {
+					messageHand = ((PinchMessage)item).getHand();
+				} else if(item instanceof BimanualPinchMessage) {
+					messageHand = ((BimanualPinchMessage)item).getHand();
+				} else if(item instanceof PointMessage) {
+					messageHand = ((PointMessage)item).getHand();
+				} else {
+					return true;
+				}
+				return messageHand == hand || messageHand == Hand.BOTH;
+			}
+		};
+	}
+}
@@ -0,0 +1,329 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes submitted items to subscribers that each consume at their own
+ * pace.
+ * <p>
+ * {@link #submit(Object)} never blocks: every subscription buffers the items
+ * it has no demand for and handles overflow by its {@link OverflowStrategy}.
+ * Items are delivered on an executor, one task per subscription at a time,
+ * so a slow subscriber neither delays the producer nor the other
+ * subscribers.
+ *
+ * @param <T> the item type
+ */
+public class FlowPublisher<T> implements Publisher<T> {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final Executor executor;
+	private final ExecutorService ownExecutor;
+	private final Filter<? super T> continuous;
+	private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<BufferedSubscription>();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Creates a publisher that delivers on its own daemon threads.
+	 *
+	 * @param name name of the delivery threads
+	 * @param continuous selects the items that {@link OverflowStrategy#DROP_OLDEST_CONTINUOUS} may drop
+	 */
+	public FlowPublisher(final String name, Filter<? super T> continuous) {
+		this.ownExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor = ownExecutor;
+		this.continuous = continuous;
+	}
+
+	/**
+	 * @param executor runs the deliveries
+	 * @param continuous selects the items that {@link OverflowStrategy#DROP_OLDEST_CONTINUOUS} may drop
+	 */
+	public FlowPublisher(Executor executor, Filter<? super T> continuous) {
+		this.ownExecutor = null;
+		this.executor = executor;
+		this.continuous = continuous;
+	}
+
+	/**
+	 * Subscribes with a buffer of {@link #DEFAULT_CAPACITY} items that drops
+	 * the oldest continuous items on overflow.
+	 */
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		subscribe(subscriber, OverflowStrategy.DROP_OLDEST_CONTINUOUS, DEFAULT_CAPACITY, null);
+	}
+
+	/**
+	 * @param strategy what to do when the buffer is full
+	 * @param capacity items buffered while the subscriber has no demand
+	 * @param filter only items it accepts are buffered and delivered, or null for all
+	 */
+	public void subscribe(Subscriber<? super T> subscriber, OverflowStrategy strategy, int capacity,
+			Filter<? super T> filter) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		BufferedSubscription subscription = new BufferedSubscription(subscriber, strategy, capacity, filter);
+		if(!closed) {
+			subscriptions.add(subscription);
+		}
+		if(closed) {
+			// also covers a close() between the check and the add
+			subscription.complete();
+		} else {
+			subscription.schedule();
+		}
+	}
+
+	/**
+	 * @return a publisher of the items the filter accepts; its subscriptions
+	 * are subscriptions of this publisher
+	 */
+	public FilteredPublisher<T> filter(Filter<? super T> filter) {
+		return new FilteredPublisher<T>(this, filter);
+	}
+
+	/**
+	 * Offers an item to all subscribers; never blocks.
+	 */
+	public void submit(T item) {
+		if(closed) return;
+		for(BufferedSubscription subscription : subscriptions) {
+			subscription.offer(item);
+		}
+	}
+
+	/**
+	 * Completes all subscriptions once their buffered items are delivered.
+	 * The own delivery threads end after the last subscription; later
+	 * subscribers are completed on the subscribing thread.
+	 */
+	public void close() {
+		closed = true;
+		for(BufferedSubscription subscription : subscriptions) {
+			subscription.complete();
+		}
+		shutdownIfDone();
+	}
+
+	private void shutdownIfDone() {
+		if(closed && ownExecutor != null && subscriptions.isEmpty()) {
+			ownExecutor.shutdown();
+		}
+	}
+
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * @return items dropped by overflow strategies over all subscriptions
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	static <T> Filter<T> both(final Filter<? super T> first, final Filter<? super T> second) {
+		return new Filter<T>() {
+			@Override
+			public boolean accept(T item) {
+				return first.accept(item) && second.accept(item);
+			}
+		};
+	}
+
+	private class BufferedSubscription implements Subscription, Runnable {
+
+		private final Subscriber<? super T> subscriber;
+		private final OverflowStrategy strategy;
+		private final int capacity;
+		private final Filter<? super T> filter;
+		private final AtomicInteger work = new AtomicInteger();
+
+		/** guarded by this */
+		private final ArrayDeque<T> buffer = new ArrayDeque<T>();
+		private long demand;
+		private boolean completed;
+		private Throwable error;
+
+		private volatile boolean cancelled;
+		/** only accessed by the delivery task */
+		private boolean subscribed;
+		private boolean terminated;
+
+		BufferedSubscription(Subscriber<? super T> subscriber, OverflowStrategy strategy, int capacity,
+				Filter<? super T> filter) {
+			this.subscriber = subscriber;
+			this.strategy = strategy;
+			this.capacity = capacity;
+			this.filter = filter;
+		}
+
+		void offer(T item) {
+			if(cancelled || (filter != null && !filter.accept(item))) return;
+			synchronized(this) {
+				if(completed || error != null) return;
+				if(strategy == OverflowStrategy.LATEST) {
+					if(!buffer.isEmpty()) {
+						buffer.clear();
+						dropped.incrementAndGet();
+					}
+				} else if(buffer.size() >= capacity) {
+					if(strategy == OverflowStrategy.BUFFER) {
+						buffer.clear();
+						error = new IllegalStateException("subscriber fell more than " + capacity + " items behind");
+						item = null;
+					} else if(!dropOldestContinuous() && continuous.accept(item)) {
+						dropped.incrementAndGet();
+						return;
+					}
+				}
+				if(item != null) {
+					buffer.add(item);
+				}
+			}
+			schedule();
+		}
+
+		private boolean dropOldestContinuous() {
+			for(Iterator<T> it = buffer.iterator(); it.hasNext();) {
+				if(continuous.accept(it.next())) {
+					it.remove();
+					dropped.incrementAndGet();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void complete() {
+			synchronized(this) {
+				completed = true;
+			}
+			schedule();
+		}
+
+		@Override
+		public void request(long n) {
+			synchronized(this) {
+				if(n <= 0) {
+					error = new IllegalArgumentException("request must be positive: " + n);
+				} else {
+					demand += n;
+					if(demand < 0) demand = Long.MAX_VALUE;
+				}
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			schedule();
+			shutdownIfDone();
+		}
+
+		void schedule() {
+			if(work.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				} catch(RejectedExecutionException e) {
+					// the publisher was closed and its threads ended
+					run();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = work.addAndGet(-missed);
+			} while(missed != 0);
+		}
+
+		private void drain() {
+			if(terminated) return;
+			if(!subscribed) {
+				subscribed = true;
+				subscriber.onSubscribe(this);
+			}
+			while(true) {
+				if(cancelled) {
+					terminate();
+					synchronized(this) {
+						buffer.clear();
+					}
+					return;
+				}
+				T item;
+				Throwable failure = null;
+				boolean done = false;
+				synchronized(this) {
+					if(error != null) {
+						buffer.clear();
+						failure = error;
+					} else if(buffer.isEmpty()) {
+						if(!completed) return;
+						done = true;
+					} else if(demand == 0) {
+						return;
+					}
+					if(failure == null && !done) {
+						item = buffer.poll();
+						if(demand != Long.MAX_VALUE) demand--;
+					} else {
+						item = null;
+					}
+				}
+				if(failure != null) {
+					terminate();
+					subscriber.onError(failure);
+					return;
+				}
+				if(done) {
+					terminate();
+					subscriber.onComplete();
+					return;
+				}
+				try {
+					subscriber.onNext(item);
+				} catch(RuntimeException e) {
+					cancel();
+					terminate();
+					subscriber.onError(e);
+					return;
+				}
+			}
+		}
+
+		private void terminate() {
+			terminated = true;
+			cancelled = true;
+			subscriptions.remove(this);
+			shutdownIfDone();
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+/**
+ * What a {@link FlowPublisher} does when a subscriber falls behind and its
+ * buffer is full.
+ */
+public enum OverflowStrategy {
+	/**
+	 * Fail the subscription with an {@link IllegalStateException}; nothing is
+	 * lost silently.
+	 */
+	BUFFER,
+	/**
+	 * Drop the oldest buffered continuous item (moves, drags, poses) to make
+	 * room. Discrete items like clicks are never dropped, so the buffer may
+	 * exceed its capacity if only discrete items are pending.
+	 */
+	DROP_OLDEST_CONTINUOUS,
+	/**
+	 * Keep only the latest item; the capacity is ignored.
+	 */
+	LATEST
+}
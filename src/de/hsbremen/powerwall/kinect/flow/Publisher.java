@@ -0,0 +1,17 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+/**
+ * A source of items that subscribers receive at the pace they request them;
+ * the same contract as {@code java.util.concurrent.Flow.Publisher} of later
+ * Java versions.
+ *
+ * @param <T> the item type
+ */
+public interface Publisher<T> {
+
+	/**
+	 * Adds a subscriber. It first gets {@link Subscriber#onSubscribe(Subscription)}
+	 * and then items only as far as it requested them.
+	 */
+	public void subscribe(Subscriber<? super T> subscriber);
+}
@@ -0,0 +1,28 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+/**
+ * Receives the items of a {@link Publisher}. The methods of one subscriber
+ * are never called concurrently.
+ *
+ * @param <T> the item type
+ */
+public interface Subscriber<T> {
+
+	/**
+	 * Called once before any other method. Nothing is delivered until the
+	 * subscriber calls {@link Subscription#request(long)}.
+	 */
+	public void onSubscribe(Subscription subscription);
+
+	public void onNext(T item);
+
+	/**
+	 * The subscription failed and no further items follow.
+	 */
+	public void onError(Throwable error);
+
+	/**
+	 * The publisher closed and no further items follow.
+	 */
+	public void onComplete();
+}
@@ -0,0 +1,18 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+/**
+ * Link between a {@link Publisher} and one {@link Subscriber}.
+ */
+public interface Subscription {
+
+	/**
+	 * Allows the publisher to deliver n more items. Demand adds up; use
+	 * Long.MAX_VALUE for unbounded delivery.
+	 */
+	public void request(long n);
+
+	/**
+	 * Stops delivery. Items may still arrive for a short time.
+	 */
+	public void cancel();
+}
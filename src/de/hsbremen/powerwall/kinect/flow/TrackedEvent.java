@@ -0,0 +1,53 @@
+package de.hsbremen.powerwall.kinect.flow;
+
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+import de.hsbremen.powerwall.kinect.events.FingerBaseEvent;
+import de.hsbremen.powerwall.kinect.events.FingerEventType;
+
+/**
+ * A click, double click, drag or move event as published by
+ * {@link de.hsbremen.powerwall.kinect.FingerTracker#getEventPublisher()}.
+ * The event is never recycled.
+ */
+public class TrackedEvent {
+	private final FingerEventType type;
+	private final Hand hand;
+	private final FingerBaseEvent event;
+	private final long when;
+	
+	public TrackedEvent(FingerEventType type, Hand hand, FingerBaseEvent event, long when) {
+		this.type = type;
+		this.hand = hand;
+		this.event = event;
+		this.when = when;
+	}
+	
+	public FingerEventType getType() {
+		return type;
+	}
+	
+	public Hand getHand() {
+		return hand;
+	}
+	
+	/**
+	 * @return the event, a {@link de.hsbremen.powerwall.kinect.events.FingerDragEvent}
+	 * for drag types
+	 */
+	public FingerBaseEvent getEvent() {
+		return event;
+	}
+	
+	/**
+	 * @return tracker time of the event in milliseconds
+	 */
+	public long getWhen() {
+		return when;
+	}
+	
+	@Override
+	public String toString() {
+		return hand + " " + type + " " + event.getPosition();
+	}
+}
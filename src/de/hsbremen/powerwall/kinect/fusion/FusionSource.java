@@ -0,0 +1,448 @@
+package de.hsbremen.powerwall.kinect.fusion;
+
+import static com.threegear.gloveless.network.HandTrackingMessage.N_FINGERS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_HANDS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_JOINTS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.AbstractHandTrackingSource;
+import com.threegear.gloveless.network.BasicMessage;
+import com.threegear.gloveless.network.BimanualPinchMessage;
+import com.threegear.gloveless.network.HandTrackingListener;
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.HandState;
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+import com.threegear.gloveless.network.HandTrackingSource;
+import com.threegear.gloveless.network.PinchMessage;
+import com.threegear.gloveless.network.PointMessage;
+import com.threegear.gloveless.network.PoseMessage;
+
+import de.hsbremen.powerwall.kinect.FingerTracker;
+
+/**
+ * Fuses the streams of several sensors, each with its own server, into one
+ * stream in a common coordinate space that can drive a single
+ * {@link FingerTracker}.
+ * <p>
+ * Every sensor has an extrinsic calibration that maps its coordinates into
+ * the common space. Nothing is buffered: when a message arrives, the latest
+ * estimates of all sensors are extrapolated to the arrival time with their
+ * velocities and blended, weighted by the {@link PoseMessage} confidence of
+ * the sensor and by how fresh its estimate is. An estimate is stale after a
+ * few frame intervals of its sensor, so sensors may run at different rates
+ * and drop out.
+ * <p>
+ * Each hand is owned by one sensor, the one with the highest weight; a
+ * sensor only takes over if its weight is clearly higher. Only the messages
+ * of the owner are passed on, with the blended hand states, so presses and
+ * releases are not duplicated. When the owner changes and the new owner
+ * disagrees about the hand being pinched, a press or release is inserted.
+ * Point messages follow the owner of their hand, bimanual messages are passed
+ * on when one sensor owns both hands, and all other messages come from the
+ * first sensor.
+ */
+public class FusionSource extends AbstractHandTrackingSource {
+
+	/** a sensor needs this factor more weight than the owner to take over a hand */
+	private static final float HYSTERESIS = 1.5f;
+
+	/** frame intervals of a sensor after which its estimate is stale */
+	private static final float STALE_INTERVALS = 2.5f;
+
+	/** samples closer than this do not update the velocity */
+	private static final long MIN_VELOCITY_NANOS = 1000000L;
+
+	private final List<Sensor> sensors = new ArrayList<Sensor>();
+	private final long minStaleNanos;
+
+	private final int[] owners = { -1, -1 };
+	private final boolean[] pressed = new boolean[N_HANDS];
+	private volatile long ownerChanges;
+	private int closed;
+
+	/**
+	 * Creates a fusion source that considers an estimate stale after 50 ms at
+	 * the earliest.
+	 */
+	public FusionSource() {
+		this(50);
+	}
+
+	/**
+	 * @param minStaleMillis minimum age after which the estimate of a sensor is
+	 * ignored, regardless of its frame rate
+	 */
+	public FusionSource(long minStaleMillis) {
+		if(minStaleMillis <= 0) {
+			throw new IllegalArgumentException("minStaleMillis must be positive");
+		}
+		this.minStaleNanos = minStaleMillis * 1000000L;
+	}
+
+	/**
+	 * Adds a sensor. Must be called before {@link #start()}.
+	 *
+	 * @param source the stream of the sensor, not started yet
+	 * @param extrinsics rigid transform from the sensor coordinates into the common space
+	 * @return the index of the sensor
+	 */
+	public synchronized int addSensor(HandTrackingSource source, Matrix4f extrinsics) {
+		final Sensor sensor = new Sensor(sensors.size(), source, extrinsics);
+		sensors.add(sensor);
+		source.addListener(new HandTrackingListener() {
+			@Override
+			public void handleEvent(HandTrackingMessage message) {
+				received(sensor, message);
+			}
+
+			@Override
+			public void handleConnectionClosed() {
+				sensorClosed(sensor);
+			}
+		}, false);
+		return sensor.index;
+	}
+
+	public synchronized int getSensorCount() {
+		return sensors.size();
+	}
+
+	/**
+	 * @return the index of the sensor that currently owns the hand, or -1
+	 */
+	public synchronized int getOwner(Hand hand) {
+		return owners[hand.id()];
+	}
+
+	/**
+	 * @return how often a hand moved from one sensor to another
+	 */
+	public long getOwnerChangeCount() {
+		return ownerChanges;
+	}
+
+	@Override
+	public void start() throws IOException {
+		List<Sensor> sensors;
+		synchronized(this) {
+			sensors = new ArrayList<Sensor>(this.sensors);
+		}
+		for(Sensor sensor : sensors) {
+			sensor.source.start();
+		}
+	}
+
+	@Override
+	public void stop() {
+		List<Sensor> sensors;
+		synchronized(this) {
+			sensors = new ArrayList<Sensor>(this.sensors);
+		}
+		for(Sensor sensor : sensors) {
+			sensor.source.stop();
+		}
+	}
+
+	private synchronized void sensorClosed(Sensor sensor) {
+		if(sensor.closed) return;
+		sensor.closed = true;
+		for(SensorHand hand : sensor.hands) {
+			hand.time = 0;
+		}
+		if(++closed == sensors.size()) {
+			fireConnectionClosed();
+		}
+	}
+
+	private synchronized void received(Sensor sensor, HandTrackingMessage message) {
+		long now = System.nanoTime();
+		if(message instanceof PinchMessage) {
+			PinchMessage pinch = (PinchMessage)message;
+			Hand hand = pinch.getHand();
+			if(hand != Hand.LEFT && hand != Hand.RIGHT) return;
+			int h = hand.id();
+			HandState state = pinch.getHandState(h);
+			SensorHand sensorHand = sensor.hands[h];
+			sensorHand.update(sensor.transform(state.getPosition()), sensor.transform(state.getRotation()),
+					state.getClickCount(), now);
+			sensorHand.pressed = isPressed(pinch.getType());
+			updateOwner(h, now, sensor, pinch.getType());
+			if(owners[h] == sensor.index) {
+				emitPinch(pinch.getType(), hand, now);
+			}
+		} else if(message instanceof PoseMessage) {
+			PoseMessage pose = (PoseMessage)message;
+			for(int h = 0; h < N_HANDS; h++) {
+				sensor.hands[h].confidence = pose.getConfidenceEstimate(h);
+				sensor.hands[h].confidenceTime = now;
+			}
+			sensor.pose = sensor.transform(pose);
+			if(owners[0] == sensor.index || owners[1] == sensor.index) {
+				emitPose(sensor, now);
+			}
+		} else if(message instanceof PointMessage) {
+			PointMessage point = (PointMessage)message;
+			Hand hand = point.getHand();
+			if(hand != Hand.LEFT && hand != Hand.RIGHT) return;
+			if(owners[hand.id()] == sensor.index) {
+				processMessage(sensor.transform(point));
+			}
+		} else if(message instanceof BimanualPinchMessage) {
+			if(owners[0] == sensor.index && owners[1] == sensor.index) {
+				BimanualPinchMessage bimanual = (BimanualPinchMessage)message;
+				HandState left = fuse(0, now), right = fuse(1, now);
+				processMessage(new BimanualPinchMessage(bimanual.getType(), bimanual.getHand(),
+						left.getPosition(), left.getRotation(), left.getClickCount(),
+						right.getPosition(), right.getRotation(), right.getClickCount()));
+			}
+		} else if(sensor.index == 0) {
+			processMessage(message);
+		}
+	}
+
+	/**
+	 * Moves the hand to the sensor with the highest weight if it is clearly
+	 * better than the owner, and inserts a press or release if the new owner
+	 * disagrees, unless the message that just arrived is that press or release.
+	 */
+	private void updateOwner(int h, long now, Sensor sender, MessageType type) {
+		int owner = owners[h];
+		float ownerWeight = owner < 0 ? 0 : sensors.get(owner).hands[h].weight(now, minStaleNanos);
+		int best = -1;
+		float bestWeight = 0;
+		for(Sensor sensor : sensors) {
+			float weight = sensor.hands[h].weight(now, minStaleNanos);
+			if(weight > bestWeight) {
+				best = sensor.index;
+				bestWeight = weight;
+			}
+		}
+		if(best < 0 || best == owner) return;
+		if(ownerWeight > 0 && bestWeight <= ownerWeight * HYSTERESIS) return;
+		owners[h] = best;
+		if(owner >= 0) {
+			ownerChanges++;
+		}
+		boolean ownerPressed = sensors.get(best).hands[h].pressed;
+		boolean transition = best == sender.index && (type == MessageType.PRESSED || type == MessageType.RELEASED);
+		if(ownerPressed != pressed[h] && !transition) {
+			emitPinch(ownerPressed ? MessageType.PRESSED : MessageType.RELEASED, Hand.fromId(h), now);
+		}
+	}
+
+	private void emitPinch(MessageType type, Hand hand, long now) {
+		HandState left = fuse(0, now), right = fuse(1, now);
+		pressed[hand.id()] = isPressed(type);
+		processMessage(new PinchMessage(type, hand,
+				left.getPosition(), left.getRotation(), left.getClickCount(),
+				right.getPosition(), right.getRotation(), right.getClickCount()));
+	}
+
+	/**
+	 * Combines the skeleton of each hand from the latest pose of its owner.
+	 */
+	private void emitPose(Sensor sensor, long now) {
+		HandState left = fuse(0, now), right = fuse(1, now);
+		BasicMessage basic = new BasicMessage(MessageType.POSE,
+				left.getPosition(), left.getRotation(), left.getClickCount(),
+				right.getPosition(), right.getRotation(), right.getClickCount());
+		float[] confidences = new float[N_HANDS];
+		Quat4f[][] rotations = new Quat4f[N_HANDS][];
+		Vector3f[][] translations = new Vector3f[N_HANDS][];
+		Point3f[][] fingerTips = new Point3f[N_HANDS][];
+		float[][] poseConfidences = new float[N_HANDS][];
+		for(int h = 0; h < N_HANDS; h++) {
+			PoseMessage pose = owners[h] >= 0 ? sensors.get(owners[h]).pose : null;
+			if(pose == null) {
+				pose = sensor.pose;
+			}
+			confidences[h] = pose.getConfidenceEstimate(h);
+			rotations[h] = pose.getJointRotations(h);
+			translations[h] = pose.getJointTranslations(h);
+			fingerTips[h] = pose.getFingerTips(h);
+			poseConfidences[h] = pose.getHandPoseConfidences(h);
+		}
+		processMessage(new PoseMessage(basic, confidences, rotations, translations, fingerTips, poseConfidences));
+	}
+
+	/**
+	 * Blends the estimates of all sensors for the given hand at the given time.
+	 */
+	private HandState fuse(int h, long now) {
+		int owner = owners[h];
+		SensorHand reference = null;
+		if(owner >= 0) {
+			reference = sensors.get(owner).hands[h];
+		} else {
+			for(Sensor sensor : sensors) {
+				if(sensor.hands[h].time != 0) {
+					reference = sensor.hands[h];
+					break;
+				}
+			}
+		}
+		if(reference == null) {
+			return new HandState(new Point3f(), new Quat4f(0, 0, 0, 1), 0);
+		}
+
+		Point3f position = new Point3f();
+		Point3f predicted = new Point3f();
+		Quat4f rotation = new Quat4f(0, 0, 0, 0);
+		Quat4f refRotation = reference.rotation;
+		float total = 0;
+		for(Sensor sensor : sensors) {
+			SensorHand hand = sensor.hands[h];
+			float weight = hand.weight(now, minStaleNanos);
+			if(weight <= 0) continue;
+			hand.predict(now, predicted);
+			position.scaleAdd(weight, predicted, position);
+			Quat4f q = hand.rotation;
+			float sign = q.x * refRotation.x + q.y * refRotation.y + q.z * refRotation.z + q.w * refRotation.w < 0 ? -weight : weight;
+			rotation.x += sign * q.x;
+			rotation.y += sign * q.y;
+			rotation.z += sign * q.z;
+			rotation.w += sign * q.w;
+			total += weight;
+		}
+		if(total <= 0) {
+			return new HandState(reference.position, reference.rotation, reference.clickCount);
+		}
+		position.scale(1 / total);
+		rotation.normalize();
+		return new HandState(position, rotation, reference.clickCount);
+	}
+
+	private static boolean isPressed(MessageType type) {
+		return type == MessageType.PRESSED || type == MessageType.DRAGGED;
+	}
+
+	private static class Sensor {
+
+		final int index;
+		final HandTrackingSource source;
+		final Matrix4f extrinsics;
+		final Quat4f rotation = new Quat4f();
+		final SensorHand[] hands = { new SensorHand(), new SensorHand() };
+		PoseMessage pose;
+		boolean closed;
+
+		Sensor(int index, HandTrackingSource source, Matrix4f extrinsics) {
+			this.index = index;
+			this.source = source;
+			this.extrinsics = new Matrix4f(extrinsics);
+			extrinsics.get(rotation);
+		}
+
+		Point3f transform(Vector3f position) {
+			Point3f p = new Point3f(position);
+			extrinsics.transform(p);
+			return p;
+		}
+
+		Quat4f transform(Quat4f q) {
+			Quat4f result = new Quat4f();
+			result.mul(rotation, q);
+			return result;
+		}
+
+		PointMessage transform(PointMessage point) {
+			Vector3f direction = new Vector3f(point.getDirection());
+			extrinsics.transform(direction);
+			Point3f end = new Point3f(point.getEnd());
+			extrinsics.transform(end);
+			return new PointMessage(point.getHand(), direction, end, point.getConfidence());
+		}
+
+		PoseMessage transform(PoseMessage pose) {
+			HandState left = pose.getHandState(0), right = pose.getHandState(1);
+			BasicMessage basic = new BasicMessage(MessageType.POSE,
+					transform(left.getPosition()), transform(left.getRotation()), left.getClickCount(),
+					transform(right.getPosition()), transform(right.getRotation()), right.getClickCount());
+			float[] confidences = new float[N_HANDS];
+			Quat4f[][] rotations = new Quat4f[N_HANDS][N_JOINTS];
+			Vector3f[][] translations = new Vector3f[N_HANDS][N_JOINTS];
+			Point3f[][] fingerTips = new Point3f[N_HANDS][N_FINGERS];
+			float[][] poseConfidences = new float[N_HANDS][];
+			for(int h = 0; h < N_HANDS; h++) {
+				confidences[h] = pose.getConfidenceEstimate(h);
+				poseConfidences[h] = pose.getHandPoseConfidences(h);
+				for(int j = 0; j < N_JOINTS; j++) {
+					rotations[h][j] = transform(pose.getJointRotations(h)[j]);
+					translations[h][j] = new Vector3f(transform(pose.getJointTranslations(h)[j]));
+				}
+				for(int f = 0; f < N_FINGERS; f++) {
+					fingerTips[h][f] = new Point3f(pose.getFingerTips(h)[f]);
+					extrinsics.transform(fingerTips[h][f]);
+				}
+			}
+			return new PoseMessage(basic, confidences, rotations, translations, fingerTips, poseConfidences);
+		}
+	}
+
+	/**
+	 * Latest estimate of one hand by one sensor, in the common space.
+	 */
+	private static class SensorHand {
+
+		final Point3f position = new Point3f();
+		final Quat4f rotation = new Quat4f(0, 0, 0, 1);
+		final Vector3f velocity = new Vector3f();
+		int clickCount;
+		boolean pressed;
+		/** arrival time of the estimate, 0 if there is none */
+		long time;
+		/** smoothed arrival interval */
+		long interval;
+		float confidence = 1;
+		long confidenceTime;
+
+		void update(Point3f position, Quat4f rotation, int clickCount, long now) {
+			long dt = time == 0 ? 0 : now - time;
+			if(time != 0 && dt < 1000000000L) {
+				interval = interval == 0 ? dt : interval + (dt - interval) / 8;
+			}
+			if(time != 0 && dt >= MIN_VELOCITY_NANOS && dt < stale(0)) {
+				velocity.sub(position, this.position);
+				velocity.scale(1f / dt);
+			} else if(dt >= MIN_VELOCITY_NANOS || time == 0) {
+				velocity.set(0, 0, 0);
+			}
+			this.position.set(position);
+			this.rotation.set(rotation);
+			this.clickCount = clickCount;
+			this.time = now;
+		}
+
+		long stale(long minStaleNanos) {
+			return Math.max(minStaleNanos, (long)(interval * STALE_INTERVALS));
+		}
+
+		/**
+		 * @return confidence times freshness, 0 for stale estimates
+		 */
+		float weight(long now, long minStaleNanos) {
+			if(time == 0) return 0;
+			long stale = stale(minStaleNanos);
+			float freshness = 1 - (float)(now - time) / stale;
+			if(freshness <= 0) return 0;
+			// a sensor that stopped sending poses is trusted like one without poses
+			float c = now - confidenceTime < stale ? confidence : 1;
+			return c * Math.min(freshness, 1);
+		}
+
+		/** extrapolates the position by at most one frame interval */
+		void predict(long now, Point3f out) {
+			long dt = Math.min(now - time, interval);
+			out.scaleAdd(dt, velocity, position);
+		}
+	}
+}
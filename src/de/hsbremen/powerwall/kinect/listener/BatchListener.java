@@ -0,0 +1,7 @@
+package de.hsbremen.powerwall.kinect.listener;
+
+import de.hsbremen.powerwall.kinect.events.FingerBatchEvent;
+
+public interface BatchListener {
+	public void onBatch(FingerBatchEvent evt);
+}
@@ -0,0 +1,9 @@
+package de.hsbremen.powerwall.kinect.listener;
+
+import de.hsbremen.powerwall.kinect.events.FingerBimanualEvent;
+
+public interface BimanualListener {
+	public void onBimanualStart(FingerBimanualEvent evt);
+	public void onBimanualUpdate(FingerBimanualEvent evt);
+	public void onBimanualEnd(FingerBimanualEvent evt);
+}
@@ -0,0 +1,7 @@
+package de.hsbremen.powerwall.kinect.listener;
+
+import de.hsbremen.powerwall.kinect.events.FingerFrame;
+
+public interface FrameListener {
+	public void onFrame(FingerFrame frame);
+}
@@ -0,0 +1,7 @@
+package de.hsbremen.powerwall.kinect.listener;
+
+import de.hsbremen.powerwall.kinect.events.FingerGestureEvent;
+
+public interface GestureListener {
+	public void onGesture(FingerGestureEvent evt);
+}
@@ -0,0 +1,8 @@
+package de.hsbremen.powerwall.kinect.listener;
+
+import de.hsbremen.powerwall.kinect.events.FingerHoverEvent;
+
+public interface HoverListener {
+	public void onHoverEnter(FingerHoverEvent evt);
+	public void onHoverExit(FingerHoverEvent evt);
+}
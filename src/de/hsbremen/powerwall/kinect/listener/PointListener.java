@@ -0,0 +1,14 @@
+package de.hsbremen.powerwall.kinect.listener;
+
+import de.hsbremen.powerwall.kinect.events.FingerPointEvent;
+
+public interface PointListener {
+	public void onLeftHandPoint(FingerPointEvent evt);
+	public void onRightHandPoint(FingerPointEvent evt);
+	
+	/**
+	 * Called when the hand stopped pointing at the wall, with its last point.
+	 */
+	public void onLeftHandPointEnd(FingerPointEvent evt);
+	public void onRightHandPointEnd(FingerPointEvent evt);
+}
@@ -0,0 +1,8 @@
+package de.hsbremen.powerwall.kinect.listener;
+
+import de.hsbremen.powerwall.kinect.events.FingerPoseEvent;
+
+public interface PoseListener {
+	public void onPoseEnter(FingerPoseEvent evt);
+	public void onPoseExit(FingerPoseEvent evt);
+}
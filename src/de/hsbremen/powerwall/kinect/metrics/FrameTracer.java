@@ -0,0 +1,167 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+import com.threegear.gloveless.network.HandTrackingTracer;
+
+/**
+ * Records the timestamps of every n-th line in a ring buffer: read, parsed,
+ * the tracker's decision and the return of every listener.
+ * <p>
+ * The ring is allocated up front and only written by the reader thread of the
+ * client, so tracing does not allocate or lock. Marks from other threads, for
+ * instance the delivery thread of priority lanes, are ignored. Each slot is
+ * guarded by a version so {@link #dump()} can copy the ring from any thread
+ * and skips slots that were overwritten while copying. All fields of a slot
+ * are volatile, so their writes can't be reordered around the version.
+ */
+public class FrameTracer implements HandTrackingTracer {
+
+	/** listener returns recorded per line, further returns are ignored */
+	public static final int MAX_LISTENERS = 16;
+
+	private final Slot[] ring;
+	private final int sampleEvery;
+	private volatile long written;
+
+	/** slot of the line being traced, only accessed by the reader thread */
+	private Slot current;
+	private Thread owner;
+
+	/**
+	 * @param capacity number of traces kept
+	 * @param sampleEvery trace every n-th line, 1 to trace all lines
+	 */
+	public FrameTracer(int capacity, int sampleEvery) {
+		if(capacity < 1 || sampleEvery < 1) {
+			throw new IllegalArgumentException("capacity and sampleEvery must be positive");
+		}
+		this.ring = new Slot[capacity];
+		for(int i = 0; i < capacity; i++) {
+			ring[i] = new Slot();
+		}
+		this.sampleEvery = sampleEvery;
+	}
+
+	@Override
+	public void lineRead(long sequence, long nanos) {
+		owner = Thread.currentThread();
+		if(sequence % sampleEvery != 0) {
+			current = null;
+			return;
+		}
+		current = ring[(int)(written % ring.length)];
+		current.version = -1;
+		current.sequence = sequence;
+		current.read = nanos;
+		current.decision = 0;
+		current.listeners = 0;
+	}
+
+	@Override
+	public void lineParsed(MessageType type, long nanos) {
+		Slot slot = current;
+		if(slot == null) return;
+		if(type == null) {
+			// malformed lines are not traced, the slot is reused for the next line
+			current = null;
+			return;
+		}
+		slot.type = type;
+		slot.parsed = nanos;
+	}
+
+	/**
+	 * Marks the point where the tracker decided which events the current line
+	 * produces. Only the first mark per line counts.
+	 */
+	public void decision() {
+		Slot slot = current;
+		if(slot == null || slot.decision != 0 || Thread.currentThread() != owner) return;
+		slot.decision = System.nanoTime();
+	}
+
+	@Override
+	public void listenerReturned(Object listener, long nanos) {
+		Slot slot = current;
+		if(slot == null || slot.listeners == MAX_LISTENERS || Thread.currentThread() != owner) return;
+		slot.listener.set(slot.listeners, listener);
+		slot.returned.set(slot.listeners, nanos);
+		slot.listeners++;
+	}
+
+	@Override
+	public void lineDone(long nanos) {
+		Slot slot = current;
+		if(slot == null) return;
+		slot.done = nanos;
+		slot.version = slot.sequence;
+		written++;
+		current = null;
+	}
+
+	/**
+	 * @return number of lines traced so far, including those already overwritten
+	 */
+	public long getTracedCount() {
+		return written;
+	}
+
+	/**
+	 * @return copies of the traces in the ring, oldest first
+	 */
+	public List<Trace> dump() {
+		long end = written;
+		long start = Math.max(0, end - ring.length);
+		List<Trace> traces = new ArrayList<Trace>((int)(end - start));
+		for(long i = start; i < end; i++) {
+			Trace trace = ring[(int)(i % ring.length)].copy();
+			if(trace != null) {
+				traces.add(trace);
+			}
+		}
+		return traces;
+	}
+
+	/**
+	 * @return latency breakdown over the traces currently in the ring
+	 */
+	public TraceReport report() {
+		return new TraceReport(dump());
+	}
+
+	private static class Slot {
+		private volatile long version = -1;
+		private volatile long sequence;
+		private volatile MessageType type;
+		private volatile long read;
+		private volatile long parsed;
+		private volatile long decision;
+		private volatile long done;
+		private volatile int listeners;
+		private final AtomicReferenceArray<Object> listener = new AtomicReferenceArray<Object>(MAX_LISTENERS);
+		private final AtomicLongArray returned = new AtomicLongArray(MAX_LISTENERS);
+
+		/**
+		 * @return a copy of this slot, or null if it is being written
+		 */
+		Trace copy() {
+			long before = version;
+			if(before == -1) return null;
+			int count = Math.min(listeners, MAX_LISTENERS);
+			String[] names = new String[count];
+			long[] returns = new long[count];
+			for(int i = 0; i < count; i++) {
+				Object l = listener.get(i);
+				names[i] = l != null ? l.getClass().getName() : "?";
+				returns[i] = returned.get(i);
+			}
+			Trace trace = new Trace(sequence, type, read, parsed, decision, done, names, returns);
+			return version == before ? trace : null;
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+/**
+ * A value that is read whenever a metrics snapshot is taken, for instance a
+ * queue depth.
+ */
+public interface Gauge {
+	public long getValue();
+}
@@ -0,0 +1,58 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import java.beans.ConstructorProperties;
+
+import com.threegear.gloveless.network.LatencyHistogram;
+
+/**
+ * Immutable summary of a {@link LatencyHistogram}. Percentiles are upper
+ * bounds of power-of-two buckets.
+ */
+public class LatencySummary {
+
+	private final long count;
+	private final long meanNanos;
+	private final long p50Nanos;
+	private final long p99Nanos;
+	private final long maxNanos;
+
+	@ConstructorProperties({"count", "meanNanos", "p50Nanos", "p99Nanos", "maxNanos"})
+	public LatencySummary(long count, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+		this.count = count;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public LatencySummary(LatencyHistogram histogram) {
+		this(histogram.getCount(), histogram.getMeanNanos(), histogram.getPercentileNanos(50), 
+				histogram.getPercentileNanos(99), histogram.getMaxNanos());
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMeanNanos() {
+		return meanNanos;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%dus p50<%dus p99<%dus max=%dus", 
+				count, meanNanos / 1000, p50Nanos / 1000, p99Nanos / 1000, maxNanos / 1000);
+	}
+}
@@ -0,0 +1,159 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+
+/**
+ * Immutable state of {@link TrackingMetrics} at one point in time. Counts are
+ * totals since the metrics were created, rates are per second over the 
+ * interval since the previous snapshot.
+ */
+public class MetricsSnapshot {
+
+	private final long timeNanos;
+	private final double intervalSeconds;
+	private final long[] messageCounts;
+	private final double[] messageRates;
+	private final long byteCount;
+	private final double byteRate;
+	private final long malformedCount;
+	private final long reconnectCount;
+	private final long failureCount;
+	private final LatencySummary parseTime;
+	private final LatencySummary dispatchTime;
+	private final LatencySummary readToDispatchLatency;
+	private final Map<String, Long> gauges;
+
+	MetricsSnapshot(long timeNanos, MetricsSnapshot previous, long startNanos, long[] messageCounts, long byteCount, 
+			long malformedCount, long reconnectCount, long failureCount, LatencySummary parseTime, LatencySummary dispatchTime, 
+			LatencySummary readToDispatchLatency, Map<String, Long> gauges) {
+		this.timeNanos = timeNanos;
+		this.intervalSeconds = (timeNanos - (previous != null ? previous.timeNanos : startNanos)) / 1e9;
+		this.messageCounts = messageCounts;
+		this.messageRates = new double[messageCounts.length];
+		for(int i = 0; i < messageCounts.length; i++) {
+			messageRates[i] = rate(messageCounts[i], previous != null ? previous.messageCounts[i] : 0);
+		}
+		this.byteCount = byteCount;
+		this.byteRate = rate(byteCount, previous != null ? previous.byteCount : 0);
+		this.malformedCount = malformedCount;
+		this.reconnectCount = reconnectCount;
+		this.failureCount = failureCount;
+		this.parseTime = parseTime;
+		this.dispatchTime = dispatchTime;
+		this.readToDispatchLatency = readToDispatchLatency;
+		this.gauges = Collections.unmodifiableMap(new LinkedHashMap<String, Long>(gauges));
+	}
+
+	private double rate(long count, long previousCount) {
+		return intervalSeconds > 0 ? (count - previousCount) / intervalSeconds : 0;
+	}
+
+	/**
+	 * @return value of {@link System#nanoTime()} when the snapshot was taken
+	 */
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+
+	/**
+	 * @return length of the interval the rates were averaged over
+	 */
+	public double getIntervalSeconds() {
+		return intervalSeconds;
+	}
+
+	public long getMessageCount() {
+		long count = 0;
+		for(long c : messageCounts) {
+			count += c;
+		}
+		return count;
+	}
+
+	public long getMessageCount(MessageType type) {
+		return messageCounts[type.ordinal()];
+	}
+
+	public double getMessageRate() {
+		double rate = 0;
+		for(double r : messageRates) {
+			rate += r;
+		}
+		return rate;
+	}
+
+	public double getMessageRate(MessageType type) {
+		return messageRates[type.ordinal()];
+	}
+
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	public double getByteRate() {
+		return byteRate;
+	}
+
+	public long getMalformedCount() {
+		return malformedCount;
+	}
+
+	public long getReconnectCount() {
+		return reconnectCount;
+	}
+
+	/**
+	 * @return broken connections and given up connection attempts
+	 */
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * @return time it took to parse a line into a message
+	 */
+	public LatencySummary getParseTime() {
+		return parseTime;
+	}
+
+	/**
+	 * @return time all listeners of the client took for one message
+	 */
+	public LatencySummary getDispatchTime() {
+		return dispatchTime;
+	}
+
+	/**
+	 * @return time from reading a line from the socket until all listeners returned
+	 */
+	public LatencySummary getReadToDispatchLatency() {
+		return readToDispatchLatency;
+	}
+
+	public Map<String, Long> getGauges() {
+		return gauges;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("messages: %d (%.1f/s)", getMessageCount(), getMessageRate()));
+		for(MessageType type : MessageType.values()) {
+			if(messageCounts[type.ordinal()] > 0) {
+				sb.append(String.format(", %s %.1f/s", type, messageRates[type.ordinal()]));
+			}
+		}
+		sb.append(String.format("%nbytes: %d (%.0f/s), malformed: %d, reconnects: %d, failures: %d", 
+				byteCount, byteRate, malformedCount, reconnectCount, failureCount));
+		sb.append(String.format("%nparse: %s%ndispatch: %s%nread to dispatch: %s", 
+				parseTime, dispatchTime, readToDispatchLatency));
+		for(Map.Entry<String, Long> gauge : gauges.entrySet()) {
+			sb.append(String.format("%n%s: %d", gauge.getKey(), gauge.getValue()));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,48 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that spreads concurrent updates over several cells, each on its own
+ * cache line, so threads incrementing it do not contend. Reading sums all
+ * cells and is therefore slower than updating.
+ */
+public class StripedCounter {
+
+	/** longs per cache line */
+	private static final int PAD = 8;
+	private static final int STRIPES = stripes();
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+	public void increment() {
+		add(1);
+	}
+
+	public void add(long value) {
+		cells.addAndGet(index(), value);
+	}
+
+	public long sum() {
+		long sum = 0;
+		for(int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PAD);
+		}
+		return sum;
+	}
+
+	private static int index() {
+		long id = Thread.currentThread().getId();
+		int hash = (int)(id * 0x9E3779B97F4A7C15L >>> 32);
+		return (hash & (STRIPES - 1)) * PAD;
+	}
+
+	private static int stripes() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		int stripes = 1;
+		while(stripes < cpus && stripes < 64) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+}
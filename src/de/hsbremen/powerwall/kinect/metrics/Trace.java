@@ -0,0 +1,112 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+
+/**
+ * Timestamps of one traced line, from reading it from the socket until the
+ * last listener returned. All timestamps are values of {@link System#nanoTime()}.
+ */
+public class Trace {
+
+	private final long sequence;
+	private final MessageType type;
+	private final long readNanos;
+	private final long parsedNanos;
+	private final long decisionNanos;
+	private final long doneNanos;
+	private final String[] listeners;
+	private final long[] returnNanos;
+
+	Trace(long sequence, MessageType type, long readNanos, long parsedNanos, long decisionNanos, long doneNanos, 
+			String[] listeners, long[] returnNanos) {
+		this.sequence = sequence;
+		this.type = type;
+		this.readNanos = readNanos;
+		this.parsedNanos = parsedNanos;
+		this.decisionNanos = decisionNanos;
+		this.doneNanos = doneNanos;
+		this.listeners = listeners;
+		this.returnNanos = returnNanos;
+	}
+
+	/**
+	 * @return number of the line since the client was created
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public MessageType getType() {
+		return type;
+	}
+
+	public long getReadNanos() {
+		return readNanos;
+	}
+
+	public long getParsedNanos() {
+		return parsedNanos;
+	}
+
+	/**
+	 * @return time the tracker decided which events the line produces, or 0
+	 * if the line did not reach the tracker
+	 */
+	public long getDecisionNanos() {
+		return decisionNanos;
+	}
+
+	public long getDoneNanos() {
+		return doneNanos;
+	}
+
+	/**
+	 * @return number of listener returns recorded, in the order they returned
+	 */
+	public int getListenerCount() {
+		return listeners.length;
+	}
+
+	/**
+	 * @return class name of the i-th listener that returned
+	 */
+	public String getListener(int i) {
+		return listeners[i];
+	}
+
+	public long getReturnNanos(int i) {
+		return returnNanos[i];
+	}
+
+	/**
+	 * @return the latest mark before the i-th listener returned, i.e. the
+	 * time the listener started at the earliest
+	 */
+	public long getStartNanos(int i) {
+		long start = Math.max(parsedNanos, decisionNanos);
+		if(start > returnNanos[i]) {
+			// the listener returned before the decision, e.g. a recognizer listener
+			start = parsedNanos;
+		}
+		for(int j = 0; j < i; j++) {
+			if(returnNanos[j] > start) {
+				start = returnNanos[j];
+			}
+		}
+		return start;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("#%d %s: parsed +%dus", sequence, type, (parsedNanos - readNanos) / 1000));
+		if(decisionNanos != 0) {
+			sb.append(String.format(", decision +%dus", (decisionNanos - readNanos) / 1000));
+		}
+		for(int i = 0; i < listeners.length; i++) {
+			sb.append(String.format(", %s +%dus", listeners[i], (returnNanos[i] - readNanos) / 1000));
+		}
+		sb.append(String.format(", done +%dus", (doneNanos - readNanos) / 1000));
+		return sb.toString();
+	}
+}
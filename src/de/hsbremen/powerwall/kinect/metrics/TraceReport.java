@@ -0,0 +1,97 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency breakdown over a number of {@link Trace}s. Stages are parsing,
+ * recognition (parsed until decision), each listener (previous mark until it
+ * returned) and the total from reading the line until the last listener
+ * returned.
+ */
+public class TraceReport {
+
+	public static final String PARSE = "parse";
+	public static final String RECOGNITION = "recognition";
+	public static final String TOTAL = "total";
+
+	private final int traceCount;
+	private final Map<String, LatencySummary> stages;
+
+	public TraceReport(List<Trace> traces) {
+		Map<String, List<Long>> durations = new LinkedHashMap<String, List<Long>>();
+		durations.put(PARSE, new ArrayList<Long>());
+		durations.put(RECOGNITION, new ArrayList<Long>());
+		for(Trace trace : traces) {
+			durations.get(PARSE).add(trace.getParsedNanos() - trace.getReadNanos());
+			if(trace.getDecisionNanos() != 0) {
+				durations.get(RECOGNITION).add(trace.getDecisionNanos() - trace.getParsedNanos());
+			}
+			for(int i = 0; i < trace.getListenerCount(); i++) {
+				List<Long> listener = durations.get(trace.getListener(i));
+				if(listener == null) {
+					listener = new ArrayList<Long>();
+					durations.put(trace.getListener(i), listener);
+				}
+				listener.add(trace.getReturnNanos(i) - trace.getStartNanos(i));
+			}
+		}
+		List<Long> total = new ArrayList<Long>();
+		for(Trace trace : traces) {
+			total.add(trace.getDoneNanos() - trace.getReadNanos());
+		}
+		durations.put(TOTAL, total);
+
+		Map<String, LatencySummary> stages = new LinkedHashMap<String, LatencySummary>();
+		for(Map.Entry<String, List<Long>> stage : durations.entrySet()) {
+			stages.put(stage.getKey(), summarize(stage.getValue()));
+		}
+		this.traceCount = traces.size();
+		this.stages = Collections.unmodifiableMap(stages);
+	}
+
+	private static LatencySummary summarize(List<Long> durations) {
+		if(durations.isEmpty()) {
+			return new LatencySummary(0, 0, 0, 0, 0);
+		}
+		long[] sorted = new long[durations.size()];
+		long total = 0;
+		for(int i = 0; i < sorted.length; i++) {
+			sorted[i] = durations.get(i);
+			total += sorted[i];
+		}
+		Arrays.sort(sorted);
+		return new LatencySummary(sorted.length, total / sorted.length, percentile(sorted, 50), 
+				percentile(sorted, 99), sorted[sorted.length - 1]);
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		int rank = (int)Math.ceil(sorted.length * percentile / 100.0);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	public int getTraceCount() {
+		return traceCount;
+	}
+
+	/**
+	 * @return latency per stage in the order the stages occur; percentiles are exact
+	 */
+	public Map<String, LatencySummary> getStages() {
+		return stages;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(traceCount).append(" traces");
+		for(Map.Entry<String, LatencySummary> stage : stages.entrySet()) {
+			sb.append(String.format("%n%s: %s", stage.getKey(), stage.getValue()));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,197 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.threegear.gloveless.network.HandTrackingClient;
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+import com.threegear.gloveless.network.HandTrackingMonitor;
+import com.threegear.gloveless.network.LatencyHistogram;
+
+/**
+ * Metrics of a {@link HandTrackingClient}: messages and bytes per second,
+ * parse and dispatch times, malformed lines, reconnects, connection failures and any number of
+ * {@link Gauge}s like queue depths.
+ * <p>
+ * Recording only increments striped counters and lock-free histograms, so the
+ * metrics can stay enabled in production. They can be read with
+ * {@link #snapshot()} or via JMX after {@link #registerMBean(String)}.
+ */
+public class TrackingMetrics implements HandTrackingMonitor, TrackingMetricsMXBean {
+
+	public static final String JMX_DOMAIN = "de.hsbremen.powerwall.kinect";
+
+	/** minimum age of the snapshot JMX attributes are read from */
+	private static final long JMX_INTERVAL_NANOS = 1000000000L;
+
+	private final StripedCounter[] messages = new StripedCounter[MessageType.values().length];
+	private final StripedCounter bytes = new StripedCounter();
+	private final StripedCounter malformed = new StripedCounter();
+	private final StripedCounter connects = new StripedCounter();
+	private final StripedCounter failures = new StripedCounter();
+	private final LatencyHistogram parseTime = new LatencyHistogram();
+	private final LatencyHistogram dispatchTime = new LatencyHistogram();
+	private final LatencyHistogram readToDispatch = new LatencyHistogram();
+	private final Map<String, Gauge> gauges = new LinkedHashMap<String, Gauge>();
+	private final long startNanos = System.nanoTime();
+	private MetricsSnapshot last;
+
+	public TrackingMetrics() {
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new StripedCounter();
+		}
+	}
+
+	/**
+	 * Adds a value that is read for every snapshot, replacing any gauge with
+	 * the same name.
+	 */
+	public void registerGauge(String name, Gauge gauge) {
+		synchronized(gauges) {
+			gauges.put(name, gauge);
+		}
+	}
+
+	@Override
+	public void connected() {
+		connects.increment();
+	}
+
+	@Override
+	public void failed(IOException e) {
+		failures.increment();
+	}
+
+	@Override
+	public void malformed(int bytes) {
+		this.bytes.add(bytes);
+		malformed.increment();
+	}
+
+	@Override
+	public void dispatched(MessageType type, int bytes, long parseNanos, long dispatchNanos, long readToDispatchNanos) {
+		messages[type.ordinal()].increment();
+		this.bytes.add(bytes);
+		parseTime.record(parseNanos);
+		dispatchTime.record(dispatchNanos);
+		readToDispatch.record(readToDispatchNanos);
+	}
+
+	/**
+	 * Takes a new snapshot. Its rates are averaged over the interval since the
+	 * previous snapshot, including those taken for JMX.
+	 */
+	public synchronized MetricsSnapshot snapshot() {
+		long[] counts = new long[messages.length];
+		for(int i = 0; i < messages.length; i++) {
+			counts[i] = messages[i].sum();
+		}
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		synchronized(gauges) {
+			for(Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+				values.put(gauge.getKey(), gauge.getValue().getValue());
+			}
+		}
+		last = new MetricsSnapshot(System.nanoTime(), last, startNanos, counts, bytes.sum(), malformed.sum(), 
+				Math.max(0, connects.sum() - 1), failures.sum(), new LatencySummary(parseTime), new LatencySummary(dispatchTime), 
+				new LatencySummary(readToDispatch), values);
+		return last;
+	}
+
+	private synchronized MetricsSnapshot current() {
+		if(last == null || System.nanoTime() - last.getTimeNanos() >= JMX_INTERVAL_NANOS) {
+			return snapshot();
+		}
+		return last;
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server.
+	 * 
+	 * @param name distinguishes several trackers in one JVM
+	 * @return the name the MBean was registered under
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ObjectName objectName = objectName(name);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	public void unregisterMBean(String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+	}
+
+	private static ObjectName objectName(String name) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=TrackingMetrics,name=" + ObjectName.quote(name));
+	}
+
+	@Override
+	public long getMessageCount() {
+		return current().getMessageCount();
+	}
+
+	@Override
+	public double getMessageRate() {
+		return current().getMessageRate();
+	}
+
+	@Override
+	public Map<String, Double> getMessageRateByType() {
+		MetricsSnapshot snapshot = current();
+		Map<String, Double> rates = new LinkedHashMap<String, Double>();
+		for(MessageType type : MessageType.values()) {
+			rates.put(type.name(), snapshot.getMessageRate(type));
+		}
+		return rates;
+	}
+
+	@Override
+	public long getByteCount() {
+		return current().getByteCount();
+	}
+
+	@Override
+	public double getByteRate() {
+		return current().getByteRate();
+	}
+
+	@Override
+	public long getMalformedCount() {
+		return current().getMalformedCount();
+	}
+
+	@Override
+	public long getReconnectCount() {
+		return current().getReconnectCount();
+	}
+
+	@Override
+	public long getFailureCount() {
+		return current().getFailureCount();
+	}
+
+	@Override
+	public LatencySummary getParseTime() {
+		return current().getParseTime();
+	}
+
+	@Override
+	public LatencySummary getDispatchTime() {
+		return current().getDispatchTime();
+	}
+
+	@Override
+	public LatencySummary getReadToDispatchLatency() {
+		return current().getReadToDispatchLatency();
+	}
+
+	@Override
+	public Map<String, Long> getGauges() {
+		return current().getGauges();
+	}
+}
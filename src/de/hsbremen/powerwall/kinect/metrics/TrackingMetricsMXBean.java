@@ -0,0 +1,34 @@
+package de.hsbremen.powerwall.kinect.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link TrackingMetrics}. Rates are averaged over the interval
+ * between two snapshots, which are taken at most once per second.
+ */
+public interface TrackingMetricsMXBean {
+
+	public long getMessageCount();
+
+	public double getMessageRate();
+
+	public Map<String, Double> getMessageRateByType();
+
+	public long getByteCount();
+
+	public double getByteRate();
+
+	public long getMalformedCount();
+
+	public long getReconnectCount();
+
+	public long getFailureCount();
+
+	public LatencySummary getParseTime();
+
+	public LatencySummary getDispatchTime();
+
+	public LatencySummary getReadToDispatchLatency();
+
+	public Map<String, Long> getGauges();
+}
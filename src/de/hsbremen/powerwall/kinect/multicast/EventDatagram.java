@@ -0,0 +1,111 @@
+package de.hsbremen.powerwall.kinect.multicast;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+
+import javax.vecmath.Tuple3f;
+
+/**
+ * Layout of the datagrams, all big-endian and {@link #SIZE} bytes long:
+ * <pre>
+ *  0  short  magic "KE"
+ *  2  byte   version
+ *  3  byte   kind: the ordinal of the FingerEventType, or STATE
+ *  4  byte   hand id
+ *  5  byte   flags of a state: bit 0 pressed, bit 1 dragging
+ *  6  short  reserved
+ *  8  int    sender id, random per exporter
+ * 12  long   sequence number, per sender
+ * 20  long   sender time in milliseconds
+ * 28  float  position x, y, z
+ * 40  float  drag start x, y, z
+ * </pre>
+ */
+final class EventDatagram {
+
+	static final short MAGIC = 0x4B45;
+	static final byte VERSION = 1;
+	static final int SIZE = 52;
+
+	static final byte STATE = 0x7F;
+	static final int PRESSED = 1;
+	static final int DRAGGING = 2;
+
+	static final int KIND = 3;
+	static final int HAND = 4;
+	static final int FLAGS = 5;
+	static final int SENDER = 8;
+	static final int SEQUENCE = 12;
+	static final int TIME = 20;
+	static final int POSITION = 28;
+	static final int DRAG_START = 40;
+
+	private EventDatagram() {
+	}
+
+	static void write(ByteBuffer buffer, byte kind, int hand, int flags, int sender, long sequence, long time,
+			Tuple3f position, Tuple3f dragStart) {
+		buffer.clear();
+		buffer.putShort(MAGIC);
+		buffer.put(VERSION);
+		buffer.put(kind);
+		buffer.put((byte)hand);
+		buffer.put((byte)flags);
+		buffer.putShort((short)0);
+		buffer.putInt(sender);
+		buffer.putLong(sequence);
+		buffer.putLong(time);
+		buffer.putFloat(position.x);
+		buffer.putFloat(position.y);
+		buffer.putFloat(position.z);
+		buffer.putFloat(dragStart != null ? dragStart.x : 0);
+		buffer.putFloat(dragStart != null ? dragStart.y : 0);
+		buffer.putFloat(dragStart != null ? dragStart.z : 0);
+		buffer.flip();
+	}
+
+	/**
+	 * @return true if the buffer holds a complete datagram of this version
+	 */
+	static boolean isValid(ByteBuffer buffer) {
+		return buffer.remaining() >= SIZE && buffer.getShort(0) == MAGIC && buffer.get(2) == VERSION;
+	}
+
+	static void readPosition(ByteBuffer buffer, int offset, Tuple3f out) {
+		out.set(buffer.getFloat(offset), buffer.getFloat(offset + 4), buffer.getFloat(offset + 8));
+	}
+
+	static ProtocolFamily family(InetAddress group) {
+		return group instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+	}
+
+	/**
+	 * @return the first interface that is up and supports multicast,
+	 * preferring real interfaces over loopback
+	 */
+	static NetworkInterface defaultInterface() throws IOException {
+		NetworkInterface loopback = null;
+		try {
+			Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+			while(interfaces != null && interfaces.hasMoreElements()) {
+				NetworkInterface candidate = interfaces.nextElement();
+				if(!candidate.isUp() || !candidate.supportsMulticast()) continue;
+				if(!candidate.isLoopback()) return candidate;
+				if(loopback == null) loopback = candidate;
+			}
+		} catch(SocketException e) {
+			throw new IOException("Could not list network interfaces", e);
+		}
+		if(loopback == null) {
+			throw new IOException("No network interface supports multicast");
+		}
+		return loopback;
+	}
+}
@@ -0,0 +1,304 @@
+package de.hsbremen.powerwall.kinect.multicast;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+import de.hsbremen.powerwall.kinect.Clock;
+import de.hsbremen.powerwall.kinect.FingerTracker;
+import de.hsbremen.powerwall.kinect.events.FingerBaseEvent;
+import de.hsbremen.powerwall.kinect.events.FingerDragEvent;
+import de.hsbremen.powerwall.kinect.events.FingerEventType;
+import de.hsbremen.powerwall.kinect.listener.ClickListener;
+import de.hsbremen.powerwall.kinect.listener.DblClickListener;
+import de.hsbremen.powerwall.kinect.listener.DragListener;
+import de.hsbremen.powerwall.kinect.listener.MoveListener;
+
+/**
+ * Multicasts the click, double click, drag and move events of a
+ * {@link FingerTracker} to {@link MulticastReceiver}s, one small fixed-layout
+ * datagram per event.
+ * <p>
+ * Every datagram carries a sequence number so receivers can detect loss.
+ * The press and drag state and position of each hand is multicast
+ * periodically as well, which lets receivers recover from lost press, release
+ * and drag events.
+ */
+public class MulticastExporter {
+
+	public static final long DEFAULT_STATE_INTERVAL = 100;
+
+	private final InetSocketAddress target;
+	private final NetworkInterface networkInterface;
+	private final int ttl;
+	private final int sender = new Random().nextInt();
+	private final Clock clock;
+
+	private DatagramChannel channel;
+	private ScheduledExecutorService timer;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(EventDatagram.SIZE);
+	private long sequence;
+	private volatile boolean closed;
+	private volatile long sent;
+	private volatile long failed;
+
+	private final HandState[] hands = { new HandState(), new HandState() };
+
+	/**
+	 * @param group multicast group
+	 * @param port destination port
+	 */
+	public MulticastExporter(InetAddress group, int port) throws IOException {
+		this(group, port, EventDatagram.defaultInterface(), 1, Clock.SYSTEM);
+	}
+
+	/**
+	 * @param group multicast group
+	 * @param port destination port
+	 * @param networkInterface interface to send on
+	 * @param ttl time to live of the datagrams; 1 keeps them in the local network
+	 * @param clock time source for the datagram timestamps
+	 */
+	public MulticastExporter(InetAddress group, int port, NetworkInterface networkInterface, int ttl, Clock clock) {
+		if(!group.isMulticastAddress()) {
+			throw new IllegalArgumentException(group + " is not a multicast address");
+		}
+		this.target = new InetSocketAddress(group, port);
+		this.networkInterface = networkInterface;
+		this.ttl = ttl;
+		this.clock = clock;
+	}
+
+	/**
+	 * Opens the channel, registers with the tracker and starts sending the
+	 * hand states every {@link #DEFAULT_STATE_INTERVAL} milliseconds.
+	 */
+	public void start(FingerTracker tracker) throws IOException {
+		start(tracker, DEFAULT_STATE_INTERVAL);
+	}
+
+	/**
+	 * @param stateIntervalMillis interval of the hand state datagrams
+	 */
+	public synchronized void start(FingerTracker tracker, long stateIntervalMillis) throws IOException {
+		if(channel != null) {
+			throw new IllegalStateException("already started");
+		}
+		channel = DatagramChannel.open(EventDatagram.family(target.getAddress()));
+		channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+		channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, ttl);
+		channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+
+		Listener listener = new Listener();
+		tracker.addClickListener(listener);
+		tracker.addDblClickListener(listener);
+		tracker.addDragListener(listener);
+		tracker.addMoveListener(listener);
+
+		timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Multicast state");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				sendStates();
+			}
+		}, stateIntervalMillis, stateIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops sending. The tracker keeps calling the listeners, which then do
+	 * nothing.
+	 */
+	public synchronized void close() {
+		closed = true;
+		if(timer != null) {
+			timer.shutdownNow();
+		}
+		if(channel != null) {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				// nothing left to release
+			}
+		}
+	}
+
+	/**
+	 * @return datagrams sent so far
+	 */
+	public long getSentCount() {
+		return sent;
+	}
+
+	/**
+	 * @return datagrams that could not be sent
+	 */
+	public long getFailedCount() {
+		return failed;
+	}
+
+	private synchronized void send(FingerEventType type, Hand hand, FingerBaseEvent event) {
+		if(closed) return;
+		HandState state = hands[hand.id()];
+		state.seen = true;
+		state.position.set(event.getPosition());
+		Vector3f dragStart = null;
+		switch(type) {
+		case PRESS:
+			state.pressed = true;
+			break;
+		case RELEASE:
+			state.pressed = false;
+			state.dragging = false;
+			break;
+		case DRAG_START:
+		case DRAG:
+			state.dragging = true;
+			dragStart = ((FingerDragEvent)event).getDragStart();
+			state.dragStart.set(dragStart);
+			break;
+		case DRAG_END:
+			state.dragging = false;
+			dragStart = ((FingerDragEvent)event).getDragStart();
+			break;
+		default:
+			break;
+		}
+		EventDatagram.write(buffer, (byte)type.ordinal(), hand.id(), 0, sender, sequence++, clock.currentTimeMillis(),
+				event.getPosition(), dragStart);
+		transmit();
+	}
+
+	private synchronized void sendStates() {
+		if(closed) return;
+		for(int hand = 0; hand < HandTrackingMessage.N_HANDS; hand++) {
+			HandState state = hands[hand];
+			if(!state.seen) continue;
+			int flags = (state.pressed ? EventDatagram.PRESSED : 0) | (state.dragging ? EventDatagram.DRAGGING : 0);
+			EventDatagram.write(buffer, EventDatagram.STATE, hand, flags, sender, sequence++, clock.currentTimeMillis(),
+					state.position, state.dragStart);
+			transmit();
+		}
+	}
+
+	private void transmit() {
+		try {
+			channel.send(buffer, target);
+			sent++;
+		} catch(IOException e) {
+			// a lost datagram is recovered by the next state datagram
+			failed++;
+		}
+	}
+
+	private static class HandState {
+		private boolean seen;
+		private boolean pressed;
+		private boolean dragging;
+		private final Vector3f position = new Vector3f();
+		private final Vector3f dragStart = new Vector3f();
+	}
+
+	private class Listener implements ClickListener, DblClickListener, DragListener, MoveListener {
+
+		@Override
+		public void onLeftClick(FingerBaseEvent evt) {
+			send(FingerEventType.CLICK, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightClick(FingerBaseEvent evt) {
+			send(FingerEventType.CLICK, Hand.RIGHT, evt);
+		}
+
+		@Override
+		public void onLeftPress(FingerBaseEvent evt) {
+			send(FingerEventType.PRESS, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightPress(FingerBaseEvent evt) {
+			send(FingerEventType.PRESS, Hand.RIGHT, evt);
+		}
+
+		@Override
+		public void onLeftRelease(FingerBaseEvent evt) {
+			send(FingerEventType.RELEASE, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightRelease(FingerBaseEvent evt) {
+			send(FingerEventType.RELEASE, Hand.RIGHT, evt);
+		}
+
+		@Override
+		public void onLeftDblClick(FingerBaseEvent evt) {
+			send(FingerEventType.DBL_CLICK, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightDblClick(FingerBaseEvent evt) {
+			send(FingerEventType.DBL_CLICK, Hand.RIGHT, evt);
+		}
+
+		@Override
+		public void onLeftHandDragStart(FingerDragEvent evt) {
+			send(FingerEventType.DRAG_START, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightHandDragStart(FingerDragEvent evt) {
+			send(FingerEventType.DRAG_START, Hand.RIGHT, evt);
+		}
+
+		@Override
+		public void onLeftHandDragEnd(FingerDragEvent evt) {
+			send(FingerEventType.DRAG_END, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightHandDragEnd(FingerDragEvent evt) {
+			send(FingerEventType.DRAG_END, Hand.RIGHT, evt);
+		}
+
+		@Override
+		public void onLeftHandDrag(FingerDragEvent evt) {
+			send(FingerEventType.DRAG, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightHandDrag(FingerDragEvent evt) {
+			send(FingerEventType.DRAG, Hand.RIGHT, evt);
+		}
+
+		@Override
+		public void onLeftHandMove(FingerBaseEvent evt) {
+			send(FingerEventType.MOVE, Hand.LEFT, evt);
+		}
+
+		@Override
+		public void onRightHandMove(FingerBaseEvent evt) {
+			send(FingerEventType.MOVE, Hand.RIGHT, evt);
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package de.hsbremen.powerwall.kinect.multicast;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+
+import de.hsbremen.powerwall.kinect.FingerEventDispatcher;
+import de.hsbremen.powerwall.kinect.events.FingerBaseEvent;
+import de.hsbremen.powerwall.kinect.events.FingerDragEvent;
+import de.hsbremen.powerwall.kinect.events.FingerEventType;
+import de.hsbremen.powerwall.kinect.listener.ClickListener;
+import de.hsbremen.powerwall.kinect.listener.DblClickListener;
+import de.hsbremen.powerwall.kinect.listener.DragListener;
+import de.hsbremen.powerwall.kinect.listener.MoveListener;
+
+/**
+ * Receives the events of a {@link MulticastExporter} and passes them to the
+ * same listeners a {@link de.hsbremen.powerwall.kinect.FingerTracker} has.
+ * <p>
+ * Datagrams that arrive out of order are dropped and gaps in the sequence
+ * numbers are counted as lost. Lost move and drag events are superseded by
+ * the next one. Lost presses, releases and drag starts and ends are recovered
+ * from the next state datagram: if the sent state of a hand differs from what
+ * the listeners were told, the missing events are delivered then. Lost clicks
+ * and double clicks are not recovered.
+ * <p>
+ * The listeners are called on the receiver thread unless the
+ * {@link #getDispatcher() dispatcher} is configured otherwise.
+ */
+public class MulticastReceiver implements Runnable {
+
+	private final InetAddress group;
+	private final int port;
+	private final NetworkInterface networkInterface;
+	private final FingerEventDispatcher dispatcher = new FingerEventDispatcher();
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(EventDatagram.SIZE * 2);
+
+	private DatagramChannel channel;
+	private boolean hasSender;
+	private int sender;
+	private long expected;
+
+	private volatile long received;
+	private volatile long lost;
+	private volatile long reordered;
+	private volatile long recovered;
+
+	private final HandState[] hands = { new HandState(), new HandState() };
+	private final Vector3f position = new Vector3f();
+	private final Vector3f dragStart = new Vector3f();
+
+	/**
+	 * @param group multicast group
+	 * @param port port the exporter sends to
+	 */
+	public MulticastReceiver(InetAddress group, int port) throws IOException {
+		this(group, port, EventDatagram.defaultInterface());
+	}
+
+	/**
+	 * @param group multicast group
+	 * @param port port the exporter sends to
+	 * @param networkInterface interface to join the group on
+	 */
+	public MulticastReceiver(InetAddress group, int port, NetworkInterface networkInterface) {
+		if(!group.isMulticastAddress()) {
+			throw new IllegalArgumentException(group + " is not a multicast address");
+		}
+		this.group = group;
+		this.port = port;
+		this.networkInterface = networkInterface;
+	}
+
+	public void addClickListener(ClickListener listener) {
+		dispatcher.addClickListener(listener);
+	}
+
+	public void addDblClickListener(DblClickListener listener) {
+		dispatcher.addDblClickListener(listener);
+	}
+
+	public void addDragListener(DragListener listener) {
+		dispatcher.addDragListener(listener);
+	}
+
+	public void addMoveListener(MoveListener listener) {
+		dispatcher.addMoveListener(listener);
+	}
+
+	/**
+	 * @return the dispatcher that delivers the received events, for batching,
+	 * priority lanes and listener statistics
+	 */
+	public FingerEventDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * Joins the group. Call {@link #run()} or {@link #start()} afterwards.
+	 */
+	public synchronized void open() throws IOException {
+		if(channel != null) {
+			throw new IllegalStateException("already open");
+		}
+		channel = DatagramChannel.open(EventDatagram.family(group));
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		channel.bind(new InetSocketAddress(port));
+		channel.join(group, networkInterface);
+	}
+
+	/**
+	 * Joins the group and receives on a daemon thread.
+	 */
+	public void start() throws IOException {
+		open();
+		Thread thread = new Thread(this, "Multicast receiver");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Leaves the group; {@link #run()} returns.
+	 */
+	public synchronized void close() {
+		if(channel == null) return;
+		try {
+			channel.close();
+		} catch(IOException e) {
+			// nothing left to release
+		}
+	}
+
+	/**
+	 * Receives and delivers datagrams until the receiver is closed.
+	 */
+	@Override
+	public void run() {
+		DatagramChannel channel;
+		synchronized(this) {
+			channel = this.channel;
+		}
+		if(channel == null) {
+			throw new IllegalStateException("not open");
+		}
+		try {
+			while(true) {
+				buffer.clear();
+				channel.receive(buffer);
+				buffer.flip();
+				handle(buffer);
+			}
+		} catch(ClosedChannelException e) {
+			// closed
+		} catch(IOException e) {
+			close();
+		}
+	}
+
+	/**
+	 * @return valid datagrams received so far
+	 */
+	public long getReceivedCount() {
+		return received;
+	}
+
+	/**
+	 * @return datagrams that never arrived, judging by the sequence numbers
+	 */
+	public long getLostCount() {
+		return lost;
+	}
+
+	/**
+	 * @return datagrams dropped because they arrived after a later one
+	 */
+	public long getReorderedCount() {
+		return reordered;
+	}
+
+	/**
+	 * @return events delivered because a state datagram showed they were lost
+	 */
+	public long getRecoveredCount() {
+		return recovered;
+	}
+
+	private void handle(ByteBuffer buffer) {
+		if(!EventDatagram.isValid(buffer)) return;
+		received++;
+		int sender = buffer.getInt(EventDatagram.SENDER);
+		long sequence = buffer.getLong(EventDatagram.SEQUENCE);
+		if(!hasSender || sender != this.sender) {
+			// a new or restarted exporter
+			hasSender = true;
+			this.sender = sender;
+		} else if(sequence < expected) {
+			reordered++;
+			return;
+		} else {
+			lost += sequence - expected;
+		}
+		expected = sequence + 1;
+
+		int kind = buffer.get(EventDatagram.KIND);
+		Hand hand = Hand.fromId(buffer.get(EventDatagram.HAND));
+		if(hand != Hand.LEFT && hand != Hand.RIGHT) return;
+		EventDatagram.readPosition(buffer, EventDatagram.POSITION, position);
+		EventDatagram.readPosition(buffer, EventDatagram.DRAG_START, dragStart);
+		long now = System.currentTimeMillis();
+		if(kind == EventDatagram.STATE) {
+			int flags = buffer.get(EventDatagram.FLAGS);
+			recover(hand, (flags & EventDatagram.PRESSED) != 0, (flags & EventDatagram.DRAGGING) != 0, now);
+			return;
+		}
+		FingerEventType[] types = FingerEventType.values();
+		if(kind < 0 || kind >= types.length) return;
+		deliver(types[kind], hand, now);
+	}
+
+	/**
+	 * Delivers the events that take the listeners from their state to the
+	 * sent state of the hand.
+	 */
+	private void recover(Hand hand, boolean pressed, boolean dragging, long now) {
+		HandState state = hands[hand.id()];
+		if(dragging && !state.dragging) {
+			deliver(FingerEventType.DRAG_START, hand, now);
+			recovered++;
+		} else if(!dragging && state.dragging) {
+			deliver(FingerEventType.DRAG_END, hand, now);
+			recovered++;
+		}
+		if(pressed && !state.pressed) {
+			deliver(FingerEventType.PRESS, hand, now);
+			recovered++;
+		} else if(!pressed && state.pressed) {
+			deliver(FingerEventType.RELEASE, hand, now);
+			recovered++;
+		}
+	}
+
+	private void deliver(FingerEventType type, Hand hand, long now) {
+		HandState state = hands[hand.id()];
+		FingerBaseEvent event;
+		switch(type) {
+		case DRAG_START:
+		case DRAG:
+		case DRAG_END:
+			event = new FingerDragEvent(new Vector3f(dragStart), new Vector3f(position));
+			break;
+		default:
+			event = new FingerBaseEvent(new Vector3f(position));
+			break;
+		}
+		switch(type) {
+		case PRESS:
+			state.pressed = true;
+			break;
+		case RELEASE:
+			if(state.dragging) {
+				// the drag end was lost
+				state.dragging = false;
+				dispatcher.dispatch(FingerEventType.DRAG_END, hand, new FingerDragEvent(new Vector3f(dragStart), new Vector3f(position)), now);
+				recovered++;
+			}
+			state.pressed = false;
+			break;
+		case DRAG_START:
+		case DRAG:
+			if(!state.pressed) {
+				state.pressed = true;
+				dispatcher.dispatch(FingerEventType.PRESS, hand, new FingerBaseEvent(new Vector3f(position)), now);
+				recovered++;
+			}
+			if(type == FingerEventType.DRAG && !state.dragging) {
+				dispatcher.dispatch(FingerEventType.DRAG_START, hand, new FingerDragEvent(new Vector3f(dragStart), new Vector3f(dragStart)), now);
+				recovered++;
+			}
+			state.dragging = true;
+			break;
+		case DRAG_END:
+			state.dragging = false;
+			break;
+		default:
+			break;
+		}
+		dispatcher.dispatch(type, hand, event, now);
+	}
+
+	private static class HandState {
+		private boolean pressed;
+		private boolean dragging;
+	}
+}
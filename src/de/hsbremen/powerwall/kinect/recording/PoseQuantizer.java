@@ -0,0 +1,220 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import static com.threegear.gloveless.network.HandTrackingMessage.N_FINGERS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_HANDS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_JOINTS;
+import static com.threegear.gloveless.network.HandTrackingMessage.N_POSES;
+
+import javax.vecmath.Point3f;
+import javax.vecmath.Quat4f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.BasicMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.HandState;
+import com.threegear.gloveless.network.HandTrackingMessage.MessageType;
+import com.threegear.gloveless.network.PoseMessage;
+
+/**
+ * Maps a {@link PoseMessage} to a fixed number of integers and back.
+ * <p>
+ * Positions are fixed-point with a given step. Rotations use the smallest
+ * three encoding: the index of the largest component, which is made positive,
+ * and the other three components quantized to the given number of bits; the
+ * largest component follows from the unit length. Confidences are quantized
+ * to the given number of bits.
+ */
+class PoseQuantizer {
+
+	/** ints per rotation: index of the largest component and three components */
+	static final int ROTATION_SIZE = 4;
+
+	/** type, per hand position, rotation and click count, per hand confidence,
+	 * joints and finger tips, per hand pose confidences */
+	static final int SIZE = 1 + N_HANDS * (3 + ROTATION_SIZE + 1) 
+			+ N_HANDS * (1 + N_JOINTS * (ROTATION_SIZE + 3) + N_FINGERS * 3) + N_HANDS * N_POSES;
+
+	/** positions of the largest component indices of all rotations */
+	static final int[] ROTATION_INDICES = rotationIndices();
+
+	private static final float RANGE = (float)Math.sqrt(0.5);
+
+	private final float positionStep;
+	private final int rotationBits;
+	private final int confidenceBits;
+	private final int rotationMax;
+	private final int confidenceMax;
+
+	/**
+	 * @param positionStep resolution of positions, in the units of the messages (mm)
+	 * @param rotationBits bits per quaternion component
+	 * @param confidenceBits bits per confidence
+	 */
+	PoseQuantizer(float positionStep, int rotationBits, int confidenceBits) {
+		if(!(positionStep > 0) || rotationBits < 2 || rotationBits > 30 || confidenceBits < 1 || confidenceBits > 30) {
+			throw new IllegalArgumentException("invalid quantization");
+		}
+		this.positionStep = positionStep;
+		this.rotationBits = rotationBits;
+		this.confidenceBits = confidenceBits;
+		this.rotationMax = (1 << rotationBits) - 1;
+		this.confidenceMax = (1 << confidenceBits) - 1;
+	}
+
+	float getPositionStep() {
+		return positionStep;
+	}
+
+	int getRotationBits() {
+		return rotationBits;
+	}
+
+	int getConfidenceBits() {
+		return confidenceBits;
+	}
+
+	void quantize(PoseMessage msg, int[] out) {
+		int i = 0;
+		out[i++] = msg.getType().ordinal();
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			HandState state = msg.getHandState(hand);
+			i = putPosition(state.getPosition(), out, i);
+			i = putRotation(state.getRotation(), out, i);
+			out[i++] = state.getClickCount();
+		}
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			out[i++] = confidence(msg.getConfidenceEstimate(hand));
+			Quat4f[] rotations = msg.getJointRotations(hand);
+			Vector3f[] translations = msg.getJointTranslations(hand);
+			for(int joint = 0; joint < N_JOINTS; joint++) {
+				i = putRotation(rotations[joint], out, i);
+				i = putPosition(translations[joint], out, i);
+			}
+			Point3f[] tips = msg.getFingerTips(hand);
+			for(int finger = 0; finger < N_FINGERS; finger++) {
+				i = putPosition(tips[finger], out, i);
+			}
+		}
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			float[] confidences = msg.getHandPoseConfidences(hand);
+			for(int pose = 0; pose < N_POSES; pose++) {
+				out[i++] = confidence(confidences[pose]);
+			}
+		}
+	}
+
+	PoseMessage dequantize(int[] in) {
+		int i = 0;
+		MessageType type = MessageType.values()[in[i++]];
+		Vector3f[] positions = new Vector3f[N_HANDS];
+		Quat4f[] rotations = new Quat4f[N_HANDS];
+		int[] clickCounts = new int[N_HANDS];
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			positions[hand] = new Vector3f();
+			i = getPosition(in, i, positions[hand]);
+			rotations[hand] = new Quat4f();
+			i = getRotation(in, i, rotations[hand]);
+			clickCounts[hand] = in[i++];
+		}
+		BasicMessage basic = new BasicMessage(type, positions[0], rotations[0], clickCounts[0], 
+				positions[1], rotations[1], clickCounts[1]);
+
+		float[] confidenceEstimates = new float[N_HANDS];
+		Quat4f[][] jointRotations = new Quat4f[N_HANDS][N_JOINTS];
+		Vector3f[][] jointTranslations = new Vector3f[N_HANDS][N_JOINTS];
+		Point3f[][] fingerTips = new Point3f[N_HANDS][N_FINGERS];
+		float[][] handPoseConfidences = new float[N_HANDS][N_POSES];
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			confidenceEstimates[hand] = (float)in[i++] / confidenceMax;
+			for(int joint = 0; joint < N_JOINTS; joint++) {
+				jointRotations[hand][joint] = new Quat4f();
+				i = getRotation(in, i, jointRotations[hand][joint]);
+				jointTranslations[hand][joint] = new Vector3f();
+				i = getPosition(in, i, jointTranslations[hand][joint]);
+			}
+			for(int finger = 0; finger < N_FINGERS; finger++) {
+				fingerTips[hand][finger] = new Point3f();
+				i = getPosition(in, i, fingerTips[hand][finger]);
+			}
+		}
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			for(int pose = 0; pose < N_POSES; pose++) {
+				handPoseConfidences[hand][pose] = (float)in[i++] / confidenceMax;
+			}
+		}
+		return new PoseMessage(basic, confidenceEstimates, jointRotations, jointTranslations, fingerTips, 
+				handPoseConfidences);
+	}
+
+	private static int[] rotationIndices() {
+		int[] indices = new int[N_HANDS + N_HANDS * N_JOINTS];
+		int n = 0;
+		int i = 1;
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			indices[n++] = i + 3;
+			i += 3 + ROTATION_SIZE + 1;
+		}
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			i++;
+			for(int joint = 0; joint < N_JOINTS; joint++) {
+				indices[n++] = i;
+				i += ROTATION_SIZE + 3;
+			}
+			i += N_FINGERS * 3;
+		}
+		return indices;
+	}
+
+	private int confidence(float value) {
+		return Math.round(Math.max(0, Math.min(1, value)) * confidenceMax);
+	}
+
+	private int putPosition(Tuple3f t, int[] out, int i) {
+		out[i++] = Math.round(t.x / positionStep);
+		out[i++] = Math.round(t.y / positionStep);
+		out[i++] = Math.round(t.z / positionStep);
+		return i;
+	}
+
+	private int getPosition(int[] in, int i, Tuple3f t) {
+		t.set(in[i] * positionStep, in[i + 1] * positionStep, in[i + 2] * positionStep);
+		return i + 3;
+	}
+
+	private int putRotation(Quat4f q, int[] out, int i) {
+		float x = q.x, y = q.y, z = q.z, w = q.w;
+		float norm = (float)Math.sqrt(x * x + y * y + z * z + w * w);
+		if(norm == 0) {
+			x = y = z = 0;
+			w = norm = 1;
+		}
+		float[] c = { x / norm, y / norm, z / norm, w / norm };
+		int largest = 0;
+		for(int k = 1; k < 4; k++) {
+			if(Math.abs(c[k]) > Math.abs(c[largest])) largest = k;
+		}
+		// q and -q are the same rotation, so the largest component can be positive
+		float sign = c[largest] < 0 ? -1 : 1;
+		out[i++] = largest;
+		for(int k = 0; k < 4; k++) {
+			if(k == largest) continue;
+			float v = Math.max(-RANGE, Math.min(RANGE, sign * c[k]));
+			out[i++] = Math.round((v + RANGE) / (2 * RANGE) * rotationMax);
+		}
+		return i;
+	}
+
+	private int getRotation(int[] in, int i, Quat4f q) {
+		int largest = in[i++];
+		float[] c = new float[4];
+		float sum = 0;
+		for(int k = 0; k < 4; k++) {
+			if(k == largest) continue;
+			c[k] = (float)in[i++] / rotationMax * (2 * RANGE) - RANGE;
+			sum += c[k] * c[k];
+		}
+		c[largest] = (float)Math.sqrt(Math.max(0, 1 - sum));
+		q.set(c[0], c[1], c[2], c[3]);
+		return i;
+	}
+}
@@ -0,0 +1,189 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.threegear.gloveless.network.PoseMessage;
+
+/**
+ * Reads {@link PoseMessage}s written by a {@link PoseStreamEncoder}, one frame
+ * at a time. The stream may also start at any keyframe, for instance at an
+ * offset returned by {@link PoseStreamEncoder#getFrameOffset()}; frames before
+ * the first keyframe are skipped.
+ */
+public class PoseStreamDecoder implements Closeable {
+
+	private final DataInputStream in;
+	private PoseQuantizer quantizer;
+	private byte[] payload = new byte[256];
+	private int[] values = new int[PoseQuantizer.SIZE];
+	private int[] previous = new int[PoseQuantizer.SIZE];
+	private int framesSinceKeyframe;
+	private long micros;
+	private boolean keyframe;
+	private boolean first = true;
+
+	/** the decoded frame was found by {@link #seek(long)} and not returned yet */
+	private boolean pending;
+
+	public PoseStreamDecoder(InputStream in) {
+		this.in = new DataInputStream(in);
+	}
+
+	/**
+	 * @return the next message, or null at the end of the stream
+	 */
+	public PoseMessage next() throws IOException {
+		if(!readFrame()) return null;
+		return quantizer.dequantize(values);
+	}
+
+	/**
+	 * Advances to the first frame at or after the given time, decoding the
+	 * frames in between. The next call of {@link #next()} returns that frame.
+	 * 
+	 * @return false if the stream ends before
+	 */
+	public boolean seek(long timeMicros) throws IOException {
+		pending = false;
+		while(readFrame()) {
+			if(micros >= timeMicros) {
+				pending = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean readFrame() throws IOException {
+		if(pending) {
+			pending = false;
+			return true;
+		}
+		while(true) {
+			int tag = readTag();
+			if(tag < 0) return false;
+			int length = readPayload();
+			if(tag == PoseStreamEncoder.KEYFRAME) {
+				decodeKeyframe(length);
+				return true;
+			} else if(tag == PoseStreamEncoder.DELTA) {
+				// skip delta frames until there is a keyframe to apply them to
+				if(quantizer == null) continue;
+				decodeDelta(length);
+				return true;
+			}
+			throw new IOException("corrupt pose stream, unknown frame " + tag);
+		}
+	}
+
+	private int readTag() throws IOException {
+		int tag = in.read();
+		if(tag < 0) return -1;
+		if(first) {
+			first = false;
+			// the magic only precedes the first frame of a whole stream
+			if(tag == (PoseStreamEncoder.MAGIC >>> 24)) {
+				byte[] magic = new byte[3];
+				in.readFully(magic);
+				tag = in.read();
+				if(tag < 0) return -1;
+			}
+		}
+		return tag;
+	}
+
+	private int readPayload() throws IOException {
+		long length = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.read();
+			if(b < 0) throw new EOFException("truncated pose stream");
+			length |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		if(length > Integer.MAX_VALUE) throw new IOException("corrupt pose stream, frame too large");
+		if(payload.length < length) {
+			payload = new byte[(int)length];
+		}
+		in.readFully(payload, 0, (int)length);
+		return (int)length;
+	}
+
+	private void decodeKeyframe(int length) throws IOException {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(payload, 0, length);
+			micros = SessionFormat.getVarint(buffer);
+			float positionStep = buffer.getFloat();
+			int rotationBits = buffer.get();
+			int confidenceBits = buffer.get();
+			if(quantizer == null || quantizer.getPositionStep() != positionStep 
+					|| quantizer.getRotationBits() != rotationBits || quantizer.getConfidenceBits() != confidenceBits) {
+				quantizer = new PoseQuantizer(positionStep, rotationBits, confidenceBits);
+			}
+			Arrays.fill(values, 0);
+			getValues(buffer, values);
+			keyframe = true;
+			framesSinceKeyframe = 0;
+		} catch(BufferUnderflowException e) {
+			throw new IOException("corrupt pose stream, truncated keyframe");
+		} catch(IllegalArgumentException e) {
+			throw new IOException("corrupt pose stream, invalid quantization");
+		}
+	}
+
+	private void decodeDelta(int length) throws IOException {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(payload, 0, length);
+			micros += SessionFormat.unzigzag(SessionFormat.getVarint(buffer));
+			framesSinceKeyframe++;
+			int[] prediction = previous;
+			PoseStreamEncoder.predict(values, previous, framesSinceKeyframe > 1, prediction);
+			previous = values;
+			values = prediction;
+			getValues(buffer, values);
+			keyframe = false;
+		} catch(BufferUnderflowException e) {
+			throw new IOException("corrupt pose stream, truncated frame");
+		}
+	}
+
+	private static void getValues(ByteBuffer buffer, int[] values) throws IOException {
+		int i = 0;
+		while(buffer.hasRemaining()) {
+			long token = SessionFormat.getVarint(buffer);
+			if((token & 1) != 0) {
+				i += (int)(token >>> 1);
+			} else {
+				if(i >= values.length) throw new IOException("corrupt pose stream, too many values");
+				values[i++] += (int)SessionFormat.unzigzag(token >>> 1);
+			}
+		}
+	}
+
+	/**
+	 * @return time of the last frame returned by {@link #next()}
+	 */
+	public long getTimeMicros() {
+		return micros;
+	}
+
+	/**
+	 * @return true if the last frame returned by {@link #next()} was a keyframe
+	 */
+	public boolean isKeyframe() {
+		return keyframe;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,185 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.threegear.gloveless.network.PoseMessage;
+
+/**
+ * Writes {@link PoseMessage}s to a compressed stream, one frame at a time.
+ * <p>
+ * Every message is quantized (see {@link #PoseStreamEncoder(OutputStream, float, int, int, int)})
+ * and stored as difference to a prediction from the previous two frames,
+ * assuming constant velocity. Correctly predicted values are stored as runs,
+ * the others as zigzag varints. Every n-th frame is a
+ * keyframe that is stored as difference to zero and carries the quantization
+ * parameters, so decoding can start at any keyframe.
+ * <p>
+ * Stream layout: magic, then frames of a tag byte, the payload length as
+ * varint and the payload. A keyframe payload is the time in microseconds, the
+ * position step as float, the rotation and confidence bits, and the values. A
+ * delta frame payload is the time since the previous frame and the values.
+ */
+public class PoseStreamEncoder implements Closeable, Flushable {
+
+	static final int MAGIC = 0x4B475031;
+	static final byte KEYFRAME = 1;
+	static final byte DELTA = 2;
+
+	public static final float DEFAULT_POSITION_STEP = 0.1f;
+	public static final int DEFAULT_ROTATION_BITS = 12;
+	public static final int DEFAULT_CONFIDENCE_BITS = 10;
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 60;
+
+	private final OutputStream out;
+	private final PoseQuantizer quantizer;
+	private final int keyframeInterval;
+	private final ByteBuffer frame = ByteBuffer.allocate(32 + PoseQuantizer.SIZE * 11);
+	private final ByteBuffer header = ByteBuffer.allocate(1 + 5);
+	private int[] current = new int[PoseQuantizer.SIZE];
+	private int[] previous = new int[PoseQuantizer.SIZE];
+	private int[] beforePrevious = new int[PoseQuantizer.SIZE];
+	private final int[] prediction = new int[PoseQuantizer.SIZE];
+	private final int[] zero = new int[PoseQuantizer.SIZE];
+	private long previousMicros;
+	private long frames;
+	private long position;
+	private long frameOffset;
+
+	public PoseStreamEncoder(OutputStream out) throws IOException {
+		this(out, DEFAULT_POSITION_STEP, DEFAULT_ROTATION_BITS, DEFAULT_CONFIDENCE_BITS, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * @param out stream the frames are written to
+	 * @param positionStep resolution of positions, in the units of the messages (mm)
+	 * @param rotationBits bits per quaternion component
+	 * @param confidenceBits bits per confidence
+	 * @param keyframeInterval number of frames from one keyframe to the next
+	 * @throws IOException if the magic cannot be written
+	 */
+	public PoseStreamEncoder(OutputStream out, float positionStep, int rotationBits, int confidenceBits, 
+			int keyframeInterval) throws IOException {
+		if(keyframeInterval < 1) {
+			throw new IllegalArgumentException("keyframeInterval must be positive");
+		}
+		this.out = out;
+		this.quantizer = new PoseQuantizer(positionStep, rotationBits, confidenceBits);
+		this.keyframeInterval = keyframeInterval;
+		header.putInt(MAGIC);
+		header.flip();
+		write(header);
+	}
+
+	/**
+	 * Writes the given message as next frame.
+	 * 
+	 * @param msg
+	 * @param timeMicros time of the message, for instance microseconds since the epoch
+	 * @return true if the frame is a keyframe, which starts at {@link #getFrameOffset()}
+	 */
+	public boolean encode(PoseMessage msg, long timeMicros) throws IOException {
+		quantizer.quantize(msg, current);
+		boolean keyframe = frames % keyframeInterval == 0;
+
+		frame.clear();
+		if(keyframe) {
+			SessionFormat.putVarint(frame, timeMicros);
+			frame.putFloat(quantizer.getPositionStep());
+			frame.put((byte)quantizer.getRotationBits());
+			frame.put((byte)quantizer.getConfidenceBits());
+			putValues(frame, current, zero);
+		} else {
+			SessionFormat.putVarint(frame, SessionFormat.zigzag(timeMicros - previousMicros));
+			predict(previous, beforePrevious, frames % keyframeInterval > 1, prediction);
+			putValues(frame, current, prediction);
+		}
+		frame.flip();
+
+		header.clear();
+		header.put(keyframe ? KEYFRAME : DELTA);
+		SessionFormat.putVarint(header, frame.remaining());
+		header.flip();
+		frameOffset = position;
+		write(header);
+		write(frame);
+
+		int[] swap = beforePrevious;
+		beforePrevious = previous;
+		previous = current;
+		current = swap;
+		previousMicros = timeMicros;
+		frames++;
+		return keyframe;
+	}
+
+	/**
+	 * Predicts the next frame from the previous two, or just the previous one
+	 * if the frame before was a keyframe.
+	 */
+	static void predict(int[] previous, int[] beforePrevious, boolean linear, int[] prediction) {
+		for(int i = 0; i < prediction.length; i++) {
+			prediction[i] = linear ? 2 * previous[i] - beforePrevious[i] : previous[i];
+		}
+		// the index of the largest quaternion component is not continuous
+		for(int i : PoseQuantizer.ROTATION_INDICES) {
+			prediction[i] = previous[i];
+		}
+	}
+
+	/**
+	 * Stores the differences as runs of zeros, (n << 1) | 1, and changed
+	 * values, zigzag(d) << 1. Trailing zeros are omitted.
+	 */
+	static void putValues(ByteBuffer buffer, int[] values, int[] base) {
+		long run = 0;
+		for(int i = 0; i < values.length; i++) {
+			long d = (long)values[i] - base[i];
+			if(d == 0) {
+				run++;
+				continue;
+			}
+			if(run > 0) {
+				SessionFormat.putVarint(buffer, (run << 1) | 1);
+				run = 0;
+			}
+			SessionFormat.putVarint(buffer, SessionFormat.zigzag(d) << 1);
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		out.write(buffer.array(), buffer.position(), buffer.remaining());
+		position += buffer.remaining();
+	}
+
+	/**
+	 * @return offset of the last encoded frame in the stream
+	 */
+	public long getFrameOffset() {
+		return frameOffset;
+	}
+
+	/**
+	 * @return number of bytes written so far
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	public long getFrameCount() {
+		return frames;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
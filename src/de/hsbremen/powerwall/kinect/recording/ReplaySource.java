@@ -0,0 +1,118 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import com.threegear.gloveless.network.AbstractHandTrackingSource;
+
+import de.hsbremen.powerwall.kinect.Clock;
+import de.hsbremen.powerwall.kinect.FingerTracker;
+
+/**
+ * Feeds a recorded session to the listeners as if it came from the server,
+ * at the original timing, a multiple of it, or as fast as possible.
+ * <p>
+ * Pass {@link #getClock()} to the {@link FingerTracker} so that clicks, poses
+ * and gestures are timed by the recorded arrival times. {@link #start()} 
+ * replays on a separate thread; {@link #run()} replays on the calling thread,
+ * which makes regression tests deterministic.
+ */
+public class ReplaySource extends AbstractHandTrackingSource implements Runnable {
+
+	/** replay as fast as the listeners can handle the messages */
+	public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+	private final SessionInput input;
+	private final double speed;
+	private volatile boolean stopped;
+	private volatile long currentMillis;
+	private volatile long replayed;
+	private volatile IOException error;
+
+	private final Clock clock = new Clock() {
+		@Override
+		public long currentTimeMillis() {
+			return currentMillis;
+		}
+	};
+
+	/**
+	 * @param input the recorded session
+	 * @param speed 1 for the original timing, 2 for twice as fast, or {@link #MAX_SPEED}
+	 */
+	public ReplaySource(SessionInput input, double speed) {
+		if(!(speed > 0)) {
+			throw new IllegalArgumentException("speed must be positive");
+		}
+		this.input = input;
+		this.speed = speed;
+	}
+
+	/**
+	 * @return a clock that shows the recorded arrival time of the current message
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return the error that ended the replay early or occurred when closing
+	 * the session, or null
+	 */
+	public IOException getError() {
+		return error;
+	}
+
+	/**
+	 * @return number of lines replayed so far
+	 */
+	public long getReplayedCount() {
+		return replayed;
+	}
+
+	@Override
+	public void start() {
+		Thread thread = new Thread(this, "Replay");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+
+	@Override
+	public void run() {
+		try {
+			long firstMicros = 0;
+			long startNanos = System.nanoTime();
+			boolean first = true;
+			while(!stopped && input.next()) {
+				long micros = input.getTimeMicros();
+				if(first) {
+					firstMicros = micros;
+					first = false;
+				} else if(speed != MAX_SPEED) {
+					long due = startNanos + (long)((micros - firstMicros) * 1000 / speed);
+					long wait;
+					while(!stopped && (wait = due - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(wait);
+					}
+				}
+				currentMillis = micros / 1000;
+				processLine(input.getLine());
+				replayed++;
+			}
+		} catch(IOException e) {
+			error = e;
+		} finally {
+			try {
+				input.close();
+			} catch(IOException e) {
+				if(error == null) error = e;
+			}
+		}
+		fireConnectionClosed();
+	}
+}
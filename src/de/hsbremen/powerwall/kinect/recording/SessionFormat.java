@@ -0,0 +1,177 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Binary layout of recorded sessions.
+ * <p>
+ * A session consists of segments {@code <name>-<n>.kgr}, each with a sparse
+ * time index {@code <name>-<n>.kgi}. A segment starts with a header
+ * ({@link #MAGIC}, {@link #VERSION}, segment number) followed by records, each
+ * starting with a type byte. The zero-filled rest of a preallocated segment
+ * reads as {@link #END}.
+ * <ul>
+ * <li>{@link #SYNC}: absolute time in microseconds since the epoch as 8 bytes.
+ * Clears the word dictionary; every index entry points to one.</li>
+ * <li>{@link #LINE}: time since the previous record in microseconds and number
+ * of tokens as varints, followed by the space separated tokens of the line.</li>
+ * </ul>
+ * Tokens are decimal numbers stored as zigzag varint with their number of
+ * decimal places, references to words seen since the last sync, or literal
+ * UTF-8 strings. The encoding is lossless: numbers are only encoded as such if
+ * they are written back exactly the same way.
+ * <p>
+ * An index entry is the time of a sync record (8 bytes) and its offset in the
+ * segment (4 bytes). A zero time ends the index.
+ */
+final class SessionFormat {
+
+	static final int MAGIC = 0x4B475231;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 12;
+	static final int INDEX_ENTRY_SIZE = 12;
+
+	static final byte END = 0;
+	static final byte LINE = 1;
+	static final byte SYNC = 2;
+
+	/** token tags below this are numbers with as many decimal places */
+	static final int MAX_SCALE = 0x1F;
+	static final int NEW_WORD = 0x20;
+	static final int WORD = 0x21;
+	static final int LITERAL = 0x22;
+
+	static final int MAX_WORDS = 1024;
+	static final int MAX_DIGITS = 18;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private SessionFormat() {
+	}
+
+	static File segmentFile(File directory, String name, int segment) {
+		return new File(directory, String.format("%s-%05d.kgr", name, segment));
+	}
+
+	static File indexFile(File directory, String name, int segment) {
+		return new File(directory, String.format("%s-%05d.kgi", name, segment));
+	}
+
+	/**
+	 * @return upper bound of the size of a line record
+	 */
+	static int maxRecordSize(String line) {
+		// type, two varints, and per token a tag, a varint and up to three bytes per char
+		return 1 + 10 + 5 + (line.length() + 1) * 6 + line.length() * 3;
+	}
+
+	static void putVarint(ByteBuffer buffer, long value) {
+		while((value & ~0x7FL) != 0) {
+			buffer.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	static long getVarint(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return value;
+	}
+
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Encodes the decimal number in line[start, end) as tag and zigzag varint.
+	 * 
+	 * @return false if the token is not a number that is written back the same way
+	 */
+	static boolean putNumber(ByteBuffer buffer, String line, int start, int end) {
+		int i = start;
+		boolean negative = i < end && line.charAt(i) == '-';
+		if(negative) i++;
+		int intStart = i;
+		long value = 0;
+		int digits = 0;
+		while(i < end && Character.isDigit(line.charAt(i)) && line.charAt(i) < 128) {
+			value = value * 10 + (line.charAt(i++) - '0');
+			digits++;
+		}
+		int intDigits = i - intStart;
+		// no leading zeros, they would be lost
+		if(intDigits == 0 || (intDigits > 1 && line.charAt(intStart) == '0')) return false;
+		int scale = 0;
+		if(i < end) {
+			if(line.charAt(i++) != '.') return false;
+			while(i < end && Character.isDigit(line.charAt(i)) && line.charAt(i) < 128) {
+				value = value * 10 + (line.charAt(i++) - '0');
+				digits++;
+				scale++;
+			}
+			if(i < end || scale == 0 || scale > MAX_SCALE) return false;
+		}
+		if(digits > MAX_DIGITS || (negative && value == 0)) return false;
+		buffer.put((byte)scale);
+		putVarint(buffer, zigzag(negative ? -value : value));
+		return true;
+	}
+
+	static void appendNumber(StringBuilder sb, int scale, long value) {
+		if(scale == 0) {
+			sb.append(value);
+			return;
+		}
+		if(value < 0) {
+			sb.append('-');
+			value = -value;
+		}
+		int start = sb.length();
+		sb.append(value);
+		// pad to at least one integer digit
+		while(sb.length() - start <= scale) {
+			sb.insert(start, '0');
+		}
+		sb.insert(sb.length() - scale, '.');
+	}
+
+	static void putString(ByteBuffer buffer, String line, int start, int end) {
+		boolean ascii = true;
+		for(int i = start; i < end; i++) {
+			if(line.charAt(i) >= 128) {
+				ascii = false;
+				break;
+			}
+		}
+		if(ascii) {
+			putVarint(buffer, end - start);
+			for(int i = start; i < end; i++) {
+				buffer.put((byte)line.charAt(i));
+			}
+		} else {
+			byte[] bytes = line.substring(start, end).getBytes(UTF8);
+			putVarint(buffer, bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	static String getString(ByteBuffer buffer) {
+		int length = (int)getVarint(buffer);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
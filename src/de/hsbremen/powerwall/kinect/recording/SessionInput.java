@@ -0,0 +1,27 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Recorded lines of the hand tracking protocol with their arrival times.
+ */
+public interface SessionInput extends Closeable {
+
+	/**
+	 * Advances to the next line.
+	 * 
+	 * @return false at the end of the session
+	 */
+	public boolean next() throws IOException;
+
+	/**
+	 * @return the current line
+	 */
+	public String getLine();
+
+	/**
+	 * @return arrival time of the current line in microseconds since the epoch
+	 */
+	public long getTimeMicros();
+}
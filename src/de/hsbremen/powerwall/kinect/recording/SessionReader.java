@@ -0,0 +1,205 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a session written by {@link SessionRecorder} line by line, in the
+ * order and with the arrival times they were recorded with.
+ */
+public class SessionReader implements SessionInput {
+
+	private final File directory;
+	private final String name;
+	private final int firstSegment;
+	private final int lastSegment;
+
+	private int segmentNumber = -1;
+	private MappedByteBuffer data;
+	private long micros;
+	private List<String> words = new ArrayList<String>();
+	private StringBuilder builder = new StringBuilder();
+	private String line;
+	private boolean pending;
+
+	/**
+	 * @param directory directory containing the segment files
+	 * @param name prefix of the segment files
+	 * @throws IOException if the first segment cannot be read
+	 */
+	public SessionReader(File directory, String name) throws IOException {
+		this(directory, name, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads only some segments of a session, for instance to process the
+	 * segments in parallel. Each segment can be read on its own.
+	 * 
+	 * @param directory directory containing the segment files
+	 * @param name prefix of the segment files
+	 * @param firstSegment number of the first segment to read
+	 * @param segmentCount number of segments to read at most
+	 * @throws IOException if the first segment cannot be read
+	 */
+	public SessionReader(File directory, String name, int firstSegment, int segmentCount) throws IOException {
+		this.directory = directory;
+		this.name = name;
+		this.firstSegment = firstSegment;
+		this.lastSegment = (int)Math.min(Integer.MAX_VALUE, (long)firstSegment + segmentCount - 1);
+		if(!open(firstSegment)) {
+			throw new IOException("no segment " + firstSegment + " of session " + name + " in " + directory);
+		}
+	}
+
+	/**
+	 * @return number of segments of a session
+	 */
+	public static int getSegmentCount(File directory, String name) {
+		int count = 0;
+		while(SessionFormat.segmentFile(directory, name, count).exists()) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean next() throws IOException {
+		if(pending) {
+			pending = false;
+			return true;
+		}
+		while(true) {
+			byte type = data.hasRemaining() ? data.get() : SessionFormat.END;
+			switch(type) {
+			case SessionFormat.LINE:
+				decode();
+				return true;
+			case SessionFormat.SYNC:
+				micros = data.getLong();
+				words.clear();
+				break;
+			case SessionFormat.END:
+				if(segmentNumber == lastSegment || !open(segmentNumber + 1)) {
+					// stay at the end of the last segment
+					data.position(data.position() > 0 ? data.position() - 1 : 0);
+					return false;
+				}
+				break;
+			default:
+				throw new IOException("corrupt record in segment " + segmentNumber + " at " + (data.position() - 1));
+			}
+		}
+	}
+
+	@Override
+	public String getLine() {
+		return line;
+	}
+
+	@Override
+	public long getTimeMicros() {
+		return micros;
+	}
+
+	/**
+	 * Positions the reader so that {@link #next()} returns the first line that
+	 * arrived at or after the given time, using the sparse index of the segments.
+	 * 
+	 * @param timeMicros microseconds since the epoch
+	 * @return false if there is no such line
+	 */
+	public boolean seek(long timeMicros) throws IOException {
+		int bestSegment = firstSegment;
+		int bestOffset = SessionFormat.HEADER_SIZE;
+		for(int n = firstSegment; n <= lastSegment && SessionFormat.indexFile(directory, name, n).exists(); n++) {
+			MappedByteBuffer index = map(SessionFormat.indexFile(directory, name, n));
+			long first = 0;
+			while(index.remaining() >= SessionFormat.INDEX_ENTRY_SIZE) {
+				long time = index.getLong();
+				int offset = index.getInt();
+				if(time == 0 || time > timeMicros) break;
+				if(first == 0) first = time;
+				bestSegment = n;
+				bestOffset = offset;
+			}
+			if(first == 0 && n > firstSegment) break;
+		}
+		if(!open(bestSegment)) return false;
+		data.position(bestOffset);
+		pending = false;
+		while(next()) {
+			if(micros >= timeMicros) {
+				pending = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void decode() throws IOException {
+		try {
+			micros += SessionFormat.getVarint(data);
+			long tokens = SessionFormat.getVarint(data);
+			builder.setLength(0);
+			for(long i = 0; i < tokens; i++) {
+				if(i > 0) builder.append(' ');
+				int tag = data.get() & 0xFF;
+				if(tag <= SessionFormat.MAX_SCALE) {
+					SessionFormat.appendNumber(builder, tag, SessionFormat.unzigzag(SessionFormat.getVarint(data)));
+				} else if(tag == SessionFormat.NEW_WORD) {
+					String word = SessionFormat.getString(data);
+					words.add(word);
+					builder.append(word);
+				} else if(tag == SessionFormat.WORD) {
+					builder.append(words.get((int)SessionFormat.getVarint(data)));
+				} else if(tag == SessionFormat.LITERAL) {
+					builder.append(SessionFormat.getString(data));
+				} else {
+					throw new IOException("corrupt token in segment " + segmentNumber + " at " + (data.position() - 1));
+				}
+			}
+			line = builder.toString();
+		} catch(BufferUnderflowException e) {
+			throw new IOException("truncated record in segment " + segmentNumber);
+		} catch(IndexOutOfBoundsException e) {
+			throw new IOException("unknown word in segment " + segmentNumber);
+		}
+	}
+
+	private boolean open(int number) throws IOException {
+		File file = SessionFormat.segmentFile(directory, name, number);
+		if(!file.exists()) return false;
+		MappedByteBuffer mapped = map(file);
+		if(mapped.remaining() < SessionFormat.HEADER_SIZE || mapped.getInt() != SessionFormat.MAGIC) {
+			throw new IOException(file + " is not a recorded session");
+		}
+		if(mapped.getInt() != SessionFormat.VERSION) {
+			throw new IOException(file + " has an unsupported version");
+		}
+		mapped.getInt();
+		data = mapped;
+		segmentNumber = number;
+		words.clear();
+		return true;
+	}
+
+	private static MappedByteBuffer map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		data = null;
+	}
+}
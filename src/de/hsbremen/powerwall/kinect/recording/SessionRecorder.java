@@ -0,0 +1,261 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.threegear.gloveless.network.HandTrackingClient;
+import com.threegear.gloveless.network.LineListener;
+
+/**
+ * Records every line of a {@link HandTrackingClient} with its arrival time
+ * into memory-mapped segment files, see {@link SessionFormat} for the layout.
+ * <p>
+ * Segments are preallocated and mapped in the background before they are
+ * needed, so recording a line only encodes it into mapped memory. Register
+ * the recorder with {@link HandTrackingClient#addLineListener(LineListener)}.
+ */
+public class SessionRecorder implements LineListener, Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	public static final long DEFAULT_SYNC_INTERVAL_MICROS = 1000000;
+
+	private final File directory;
+	private final String name;
+	private final int segmentSize;
+	private final long syncIntervalMicros;
+	private final long baseMicros;
+	private final long baseNanos;
+	private final ExecutorService mapper;
+
+	private Segment segment;
+	private Future<Segment> next;
+	private long lastMicros;
+	private long lastSyncMicros;
+	private boolean needSync = true;
+	private Map<String, Integer> words = new HashMap<String, Integer>();
+	private long recorded;
+	private boolean closed;
+	private volatile IOException error;
+
+	public SessionRecorder(File directory, String name) throws IOException {
+		this(directory, name, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_INTERVAL_MICROS);
+	}
+
+	/**
+	 * @param directory directory the segment files are written to
+	 * @param name prefix of the segment files
+	 * @param segmentSize size of each segment file in bytes
+	 * @param syncIntervalMicros time between two index entries
+	 * @throws IOException if the first segment cannot be created
+	 */
+	public SessionRecorder(File directory, String name, int segmentSize, long syncIntervalMicros) throws IOException {
+		this.directory = directory;
+		this.name = name;
+		this.segmentSize = segmentSize;
+		this.syncIntervalMicros = syncIntervalMicros;
+		this.baseMicros = System.currentTimeMillis() * 1000;
+		this.baseNanos = System.nanoTime();
+		this.mapper = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Session recorder");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		segment = new Segment(0);
+		next = prepare(1);
+	}
+
+	@Override
+	public synchronized void lineReceived(String line, long nanos) {
+		if(closed) return;
+		long micros = baseMicros + (nanos - baseNanos) / 1000;
+		try {
+			int size = SessionFormat.maxRecordSize(line) + 9 + 1;
+			if(segment.data.remaining() < size) {
+				roll();
+				// the line is larger than a whole segment
+				if(segment.data.remaining() < size) return;
+			}
+			if(needSync || micros - lastSyncMicros >= syncIntervalMicros) {
+				sync(micros);
+			}
+			encode(line, micros);
+			recorded++;
+		} catch(IOException e) {
+			error = e;
+			closed = true;
+		}
+	}
+
+	/**
+	 * @return the error that stopped the recording, or null
+	 */
+	public IOException getError() {
+		return error;
+	}
+
+	/**
+	 * @return number of lines recorded so far
+	 */
+	public synchronized long getRecordedCount() {
+		return recorded;
+	}
+
+	private void encode(String line, long micros) {
+		MappedByteBuffer data = segment.data;
+		data.put(SessionFormat.LINE);
+		SessionFormat.putVarint(data, Math.max(0, micros - lastMicros));
+		lastMicros = Math.max(lastMicros, micros);
+
+		int tokens = 1;
+		for(int i = 0; i < line.length(); i++) {
+			if(line.charAt(i) == ' ') tokens++;
+		}
+		SessionFormat.putVarint(data, tokens);
+
+		int start = 0;
+		while(start <= line.length()) {
+			int end = line.indexOf(' ', start);
+			if(end < 0) end = line.length();
+			int mark = data.position();
+			if(!SessionFormat.putNumber(data, line, start, end)) {
+				data.position(mark);
+				putWord(data, line, start, end);
+			}
+			start = end + 1;
+		}
+	}
+
+	private void putWord(MappedByteBuffer data, String line, int start, int end) {
+		String word = line.substring(start, end);
+		Integer id = words.get(word);
+		if(id != null) {
+			data.put((byte)SessionFormat.WORD);
+			SessionFormat.putVarint(data, id);
+		} else if(words.size() < SessionFormat.MAX_WORDS) {
+			words.put(word, words.size());
+			data.put((byte)SessionFormat.NEW_WORD);
+			SessionFormat.putString(data, line, start, end);
+		} else {
+			data.put((byte)SessionFormat.LITERAL);
+			SessionFormat.putString(data, line, start, end);
+		}
+	}
+
+	private void sync(long micros) {
+		MappedByteBuffer index = segment.index;
+		if(index.remaining() < SessionFormat.INDEX_ENTRY_SIZE) return;
+		index.putLong(micros);
+		index.putInt(segment.data.position());
+		segment.data.put(SessionFormat.SYNC);
+		segment.data.putLong(micros);
+		lastMicros = micros;
+		lastSyncMicros = micros;
+		needSync = false;
+		words.clear();
+	}
+
+	private void roll() throws IOException {
+		Segment rolled;
+		try {
+			rolled = next.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while mapping segment " + (segment.number + 1));
+		} catch(ExecutionException e) {
+			throw new IOException("could not map segment " + (segment.number + 1), e.getCause());
+		}
+		final Segment full = segment;
+		mapper.execute(new Runnable() {
+			@Override
+			public void run() {
+				full.close();
+			}
+		});
+		segment = rolled;
+		next = prepare(rolled.number + 1);
+		// every segment starts with a sync so it can be read on its own
+		needSync = true;
+	}
+
+	private Future<Segment> prepare(final int number) {
+		return mapper.submit(new Callable<Segment>() {
+			@Override
+			public Segment call() throws IOException {
+				return new Segment(number);
+			}
+		});
+	}
+
+	/**
+	 * Flushes the current segment to disk and stops recording. The segment
+	 * mapped in advance is deleted again.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(segment == null) return;
+		closed = true;
+		segment.close();
+		segment = null;
+		mapper.shutdown();
+		try {
+			mapper.awaitTermination(10, TimeUnit.SECONDS);
+			next.get().delete();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) {
+			// nothing to delete
+		}
+	}
+
+	private class Segment {
+		private final int number;
+		private final MappedByteBuffer data;
+		private final MappedByteBuffer index;
+
+		Segment(int number) throws IOException {
+			this.number = number;
+			this.data = map(SessionFormat.segmentFile(directory, name, number), segmentSize);
+			this.index = map(SessionFormat.indexFile(directory, name, number), 
+					(1 + segmentSize / 1024) * SessionFormat.INDEX_ENTRY_SIZE);
+			data.putInt(SessionFormat.MAGIC);
+			data.putInt(SessionFormat.VERSION);
+			data.putInt(number);
+		}
+
+		private MappedByteBuffer map(File file, int size) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(size);
+				return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} finally {
+				raf.close();
+			}
+		}
+
+		void close() {
+			data.force();
+			index.force();
+		}
+
+		void delete() {
+			SessionFormat.segmentFile(directory, name, number).delete();
+			SessionFormat.indexFile(directory, name, number).delete();
+		}
+	}
+}
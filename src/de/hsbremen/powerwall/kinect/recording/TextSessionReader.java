@@ -0,0 +1,79 @@
+package de.hsbremen.powerwall.kinect.recording;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import com.threegear.gloveless.network.HandTrackingClient;
+
+/**
+ * Reads a session from a text file with one protocol line per line, for
+ * instance captured with netcat. A line may be prefixed with its arrival time
+ * in microseconds since the epoch and a tab; lines without a time arrive a
+ * fixed interval after the previous line.
+ */
+public class TextSessionReader implements SessionInput {
+
+	/** interval between lines without a time, one frame at 60 Hz */
+	public static final long DEFAULT_INTERVAL_MICROS = 16667;
+
+	private final BufferedReader reader;
+	private final long intervalMicros;
+	private String line;
+	private long micros;
+	private boolean first = true;
+
+	public TextSessionReader(File file) throws IOException {
+		this(new BufferedReader(new InputStreamReader(new FileInputStream(file), HandTrackingClient.UTF8)), 
+				DEFAULT_INTERVAL_MICROS);
+	}
+
+	/**
+	 * @param reader
+	 * @param intervalMicros time between lines without a time
+	 */
+	public TextSessionReader(BufferedReader reader, long intervalMicros) {
+		this.reader = reader;
+		this.intervalMicros = intervalMicros;
+	}
+
+	@Override
+	public boolean next() throws IOException {
+		String text = reader.readLine();
+		if(text == null) return false;
+		int tab = text.indexOf('\t');
+		long time = -1;
+		if(tab > 0) {
+			try {
+				time = Long.parseLong(text.substring(0, tab));
+				text = text.substring(tab + 1);
+			} catch(NumberFormatException e) {
+				// not a time, the tab belongs to the line
+			}
+		}
+		if(time < 0) {
+			time = first ? System.currentTimeMillis() * 1000 : micros + intervalMicros;
+		}
+		first = false;
+		micros = time;
+		line = text;
+		return true;
+	}
+
+	@Override
+	public String getLine() {
+		return line;
+	}
+
+	@Override
+	public long getTimeMicros() {
+		return micros;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
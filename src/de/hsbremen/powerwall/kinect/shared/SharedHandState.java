@@ -0,0 +1,79 @@
+package de.hsbremen.powerwall.kinect.shared;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+
+/**
+ * State of one hand as read by a {@link SharedStateReader}. Readers refill
+ * the same instance on every read.
+ */
+public class SharedHandState {
+	long sequence;
+	long time;
+	long nanoTime;
+	final Vector3f position = new Vector3f();
+	final Quat4f rotation = new Quat4f(0, 0, 0, 1);
+	boolean pressed;
+	boolean dragging;
+	final Vector3f dragStart = new Vector3f();
+	HandPose pose;
+	int clickCount;
+
+	/**
+	 * @return version of the state; it grows with every publication
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return tracker time of the message in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return System.nanoTime() of the publisher when the state was written;
+	 * comparable across processes where the clock is monotonic system wide
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+
+	public Vector3f getPosition() {
+		return position;
+	}
+
+	public Quat4f getRotation() {
+		return rotation;
+	}
+
+	public boolean isPressed() {
+		return pressed;
+	}
+
+	public boolean isDragging() {
+		return dragging;
+	}
+
+	/**
+	 * @return where the current drag started; only meaningful while dragging
+	 */
+	public Vector3f getDragStart() {
+		return dragStart;
+	}
+
+	/**
+	 * @return the recognized pose or null
+	 */
+	public HandPose getPose() {
+		return pose;
+	}
+
+	public int getClickCount() {
+		return clickCount;
+	}
+}
@@ -0,0 +1,78 @@
+package de.hsbremen.powerwall.kinect.shared;
+
+import java.nio.ByteBuffer;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+
+/**
+ * Layout of the shared state file, in native byte order.
+ * <p>
+ * Header of {@link #HEADER_SIZE} bytes:
+ * <pre>
+ *  0  int   magic "KGSS"
+ *  4  int   version
+ *  8  int   slot size
+ * 12  int   slot count (one per hand)
+ * 16  int   0x01020304, to check the byte order
+ * 20  int   1 while a publisher is open, 0 after it closed
+ * 24  long  publisher start, System.currentTimeMillis()
+ * </pre>
+ * Followed by one slot of {@link #SLOT_SIZE} bytes per hand, guarded by a
+ * sequence number that is odd while the slot is written:
+ * <pre>
+ *  0  long  sequence
+ *  8  long  tracker time of the message in milliseconds
+ * 16  long  System.nanoTime() of the publication (CLOCK_MONOTONIC on Linux)
+ * 24  float position x, y, z
+ * 36  float rotation x, y, z, w
+ * 52  int   flags: bit 0 pressed, bit 1 dragging
+ * 56  float drag start x, y, z
+ * 68  int   pose id, -1 if none
+ * 72  int   click count
+ * </pre>
+ * Slots are 128 bytes apart so the hands never share a cache line.
+ */
+final class SharedStateLayout {
+
+	static final int MAGIC = 0x4B475353;
+	static final int VERSION = 1;
+	static final int ORDER_MARK = 0x01020304;
+
+	static final int HEADER_SIZE = 64;
+	static final int SLOT_SIZE = 128;
+	static final int SIZE = HEADER_SIZE + HandTrackingMessage.N_HANDS * SLOT_SIZE;
+
+	static final int H_MAGIC = 0;
+	static final int H_VERSION = 4;
+	static final int H_SLOT_SIZE = 8;
+	static final int H_SLOT_COUNT = 12;
+	static final int H_ORDER = 16;
+	static final int H_OPEN = 20;
+	static final int H_STARTED = 24;
+
+	static final int SEQUENCE = 0;
+	static final int TIME = 8;
+	static final int NANOS = 16;
+	static final int POSITION = 24;
+	static final int ROTATION = 36;
+	static final int FLAGS = 52;
+	static final int DRAG_START = 56;
+	static final int POSE = 68;
+	static final int CLICK_COUNT = 72;
+
+	static final int PRESSED = 1;
+	static final int DRAGGING = 2;
+
+	private SharedStateLayout() {
+	}
+
+	static int slot(int hand) {
+		return HEADER_SIZE + hand * SLOT_SIZE;
+	}
+
+	static boolean isValid(ByteBuffer buffer) {
+		return buffer.capacity() >= SIZE && buffer.getInt(H_MAGIC) == MAGIC && buffer.getInt(H_VERSION) == VERSION
+				&& buffer.getInt(H_ORDER) == ORDER_MARK && buffer.getInt(H_SLOT_SIZE) == SLOT_SIZE
+				&& buffer.getInt(H_SLOT_COUNT) == HandTrackingMessage.N_HANDS;
+	}
+}
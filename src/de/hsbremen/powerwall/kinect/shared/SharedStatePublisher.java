@@ -0,0 +1,140 @@
+package de.hsbremen.powerwall.kinect.shared;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.HandTrackingMessage;
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+
+import de.hsbremen.powerwall.kinect.FingerTracker;
+import de.hsbremen.powerwall.kinect.events.FingerFrame;
+import de.hsbremen.powerwall.kinect.listener.FrameListener;
+
+/**
+ * Publishes the latest state of each hand into a memory-mapped file, so
+ * other processes on the same host can poll it without a connection of
+ * their own. Register it with {@link FingerTracker#addFrameListener(FrameListener)}.
+ * <p>
+ * Every hand has its own slot guarded by a sequence number (a seqlock): the
+ * number is made odd, the slot is written and the number is made even again.
+ * Readers retry while the number is odd or changed during their read. See
+ * {@link SharedStateReader} for Java processes; the layout is documented in
+ * native byte order for other languages.
+ * <p>
+ * The Java memory model says nothing about memory shared with other
+ * processes. The volatile accesses around the slot writes keep the compiler
+ * from reordering them on HotSpot, and the hardware keeps the store order on
+ * x86. There must be only one publisher per file.
+ */
+public class SharedStatePublisher implements FrameListener {
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final long[] sequences = new long[HandTrackingMessage.N_HANDS];
+	private volatile int fence;
+	private boolean closed;
+
+	/**
+	 * Creates or overwrites the file and maps it.
+	 */
+	public SharedStatePublisher(File path) throws IOException {
+		file = new RandomAccessFile(path, "rw");
+		try {
+			file.setLength(SharedStateLayout.SIZE);
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SharedStateLayout.SIZE);
+		} catch(IOException e) {
+			file.close();
+			throw e;
+		}
+		buffer.order(ByteOrder.nativeOrder());
+		for(int i = 0; i < SharedStateLayout.SIZE; i += 8) {
+			buffer.putLong(i, 0);
+		}
+		buffer.putInt(SharedStateLayout.H_VERSION, SharedStateLayout.VERSION);
+		buffer.putInt(SharedStateLayout.H_SLOT_SIZE, SharedStateLayout.SLOT_SIZE);
+		buffer.putInt(SharedStateLayout.H_SLOT_COUNT, sequences.length);
+		buffer.putInt(SharedStateLayout.H_ORDER, SharedStateLayout.ORDER_MARK);
+		buffer.putInt(SharedStateLayout.H_OPEN, 1);
+		buffer.putLong(SharedStateLayout.H_STARTED, System.currentTimeMillis());
+		fence();
+		// the magic goes last so readers never see a half written header
+		buffer.putInt(SharedStateLayout.H_MAGIC, SharedStateLayout.MAGIC);
+	}
+
+	@Override
+	public void onFrame(FingerFrame frame) {
+		publish(Hand.LEFT, frame);
+		publish(Hand.RIGHT, frame);
+	}
+
+	/**
+	 * Publishes the state of one hand from a frame.
+	 */
+	public void publish(Hand hand, FingerFrame frame) {
+		publish(hand, frame.getTime(), frame.getPosition(hand), frame.getRotation(hand), frame.isPressed(hand),
+				frame.isDragging(hand), frame.getDragStart(hand), frame.getPose(hand), frame.getClickCount(hand));
+	}
+
+	/**
+	 * Publishes the state of one hand.
+	 */
+	public synchronized void publish(Hand hand, long time, Vector3f position, Quat4f rotation, boolean pressed,
+			boolean dragging, Vector3f dragStart, HandPose pose, int clickCount) {
+		if(closed) return;
+		int slot = SharedStateLayout.slot(hand.id());
+		long sequence = sequences[hand.id()];
+		buffer.putLong(slot + SharedStateLayout.SEQUENCE, sequence + 1);
+		fence();
+		buffer.putLong(slot + SharedStateLayout.TIME, time);
+		buffer.putLong(slot + SharedStateLayout.NANOS, System.nanoTime());
+		buffer.putFloat(slot + SharedStateLayout.POSITION, position.x);
+		buffer.putFloat(slot + SharedStateLayout.POSITION + 4, position.y);
+		buffer.putFloat(slot + SharedStateLayout.POSITION + 8, position.z);
+		buffer.putFloat(slot + SharedStateLayout.ROTATION, rotation.x);
+		buffer.putFloat(slot + SharedStateLayout.ROTATION + 4, rotation.y);
+		buffer.putFloat(slot + SharedStateLayout.ROTATION + 8, rotation.z);
+		buffer.putFloat(slot + SharedStateLayout.ROTATION + 12, rotation.w);
+		buffer.putInt(slot + SharedStateLayout.FLAGS, (pressed ? SharedStateLayout.PRESSED : 0) | (dragging ? SharedStateLayout.DRAGGING : 0));
+		if(dragStart != null) {
+			buffer.putFloat(slot + SharedStateLayout.DRAG_START, dragStart.x);
+			buffer.putFloat(slot + SharedStateLayout.DRAG_START + 4, dragStart.y);
+			buffer.putFloat(slot + SharedStateLayout.DRAG_START + 8, dragStart.z);
+		}
+		buffer.putInt(slot + SharedStateLayout.POSE, pose != null ? pose.id() : -1);
+		buffer.putInt(slot + SharedStateLayout.CLICK_COUNT, clickCount);
+		fence();
+		buffer.putLong(slot + SharedStateLayout.SEQUENCE, sequence + 2);
+		sequences[hand.id()] = sequence + 2;
+	}
+
+	/**
+	 * Marks the file as closed and releases it. Readers keep seeing the last
+	 * state.
+	 */
+	public synchronized void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		buffer.putInt(SharedStateLayout.H_OPEN, 0);
+		buffer.force();
+		file.close();
+	}
+
+	/**
+	 * A volatile write followed by a volatile read, which the compiler does
+	 * not reorder the buffer accesses around.
+	 */
+	private void fence() {
+		fence = 0;
+		if(fence != 0) {
+			throw new AssertionError();
+		}
+	}
+}
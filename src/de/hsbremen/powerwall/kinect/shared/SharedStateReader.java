@@ -0,0 +1,125 @@
+package de.hsbremen.powerwall.kinect.shared;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.threegear.gloveless.network.HandTrackingMessage.Hand;
+import com.threegear.gloveless.network.HandTrackingMessage.HandPose;
+
+/**
+ * Polls the hand states written by a {@link SharedStatePublisher} in another
+ * process. Reads go straight to the mapped memory: no system calls, no locks
+ * and no allocation. Only a reader that keeps finding a slot locked yields
+ * the processor now and then.
+ * <p>
+ * A reader instance must only be used by one thread at a time.
+ */
+public class SharedStateReader {
+
+	/** attempts before a read gives up on a slot that stays locked */
+	private static final int MAX_ATTEMPTS = 10000;
+
+	/** attempts between yields, in case the publisher was descheduled mid-write */
+	private static final int SPINS = 100;
+
+	private final MappedByteBuffer buffer;
+	private volatile int fence;
+
+	/**
+	 * Maps the file of a publisher.
+	 *
+	 * @throws IOException if the file can't be read or isn't a shared state file
+	 */
+	public SharedStateReader(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			if(file.length() < SharedStateLayout.SIZE) {
+				throw new IOException(path + " is not a shared state file");
+			}
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, SharedStateLayout.SIZE);
+		} finally {
+			// the mapping stays valid after the file is closed
+			file.close();
+		}
+		buffer.order(ByteOrder.nativeOrder());
+		if(!SharedStateLayout.isValid(buffer)) {
+			throw new IOException(path + " is not a shared state file or has a different version");
+		}
+	}
+
+	/**
+	 * @return false once the publisher closed the file
+	 */
+	public boolean isPublisherOpen() {
+		return buffer.getInt(SharedStateLayout.H_OPEN) != 0;
+	}
+
+	/**
+	 * @return the version of the state of the hand, 0 if it was never
+	 * published; cheap enough to poll for changes
+	 */
+	public long getSequence(Hand hand) {
+		long sequence = buffer.getLong(SharedStateLayout.slot(hand.id()) + SharedStateLayout.SEQUENCE);
+		fence();
+		return sequence >>> 1;
+	}
+
+	/**
+	 * Copies a consistent state of the hand into the given object.
+	 *
+	 * @return false if the hand was never published or the slot stayed locked,
+	 * for instance because the publisher died while writing it
+	 */
+	public boolean read(Hand hand, SharedHandState out) {
+		int slot = SharedStateLayout.slot(hand.id());
+		for(int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			long before = buffer.getLong(slot + SharedStateLayout.SEQUENCE);
+			fence();
+			if(before == 0) return false;
+			if((before & 1) != 0) {
+				if(attempt % SPINS == SPINS - 1) Thread.yield();
+				continue;
+			}
+
+			out.time = buffer.getLong(slot + SharedStateLayout.TIME);
+			out.nanoTime = buffer.getLong(slot + SharedStateLayout.NANOS);
+			out.position.x = buffer.getFloat(slot + SharedStateLayout.POSITION);
+			out.position.y = buffer.getFloat(slot + SharedStateLayout.POSITION + 4);
+			out.position.z = buffer.getFloat(slot + SharedStateLayout.POSITION + 8);
+			out.rotation.x = buffer.getFloat(slot + SharedStateLayout.ROTATION);
+			out.rotation.y = buffer.getFloat(slot + SharedStateLayout.ROTATION + 4);
+			out.rotation.z = buffer.getFloat(slot + SharedStateLayout.ROTATION + 8);
+			out.rotation.w = buffer.getFloat(slot + SharedStateLayout.ROTATION + 12);
+			int flags = buffer.getInt(slot + SharedStateLayout.FLAGS);
+			out.dragStart.x = buffer.getFloat(slot + SharedStateLayout.DRAG_START);
+			out.dragStart.y = buffer.getFloat(slot + SharedStateLayout.DRAG_START + 4);
+			out.dragStart.z = buffer.getFloat(slot + SharedStateLayout.DRAG_START + 8);
+			int pose = buffer.getInt(slot + SharedStateLayout.POSE);
+			out.clickCount = buffer.getInt(slot + SharedStateLayout.CLICK_COUNT);
+			fence();
+			long after = buffer.getLong(slot + SharedStateLayout.SEQUENCE);
+			if(after != before) continue;
+
+			out.sequence = before >>> 1;
+			out.pressed = (flags & SharedStateLayout.PRESSED) != 0;
+			out.dragging = (flags & SharedStateLayout.DRAGGING) != 0;
+			out.pose = pose < 0 ? null : HandPose.fromId(pose);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @see SharedStatePublisher
+	 */
+	private void fence() {
+		fence = 0;
+		if(fence != 0) {
+			throw new AssertionError();
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package de.hsbremen.powerwall.kinect.skinning;
+
+import static com.threegear.gloveless.network.HandTrackingMessage.N_HANDS;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+import com.threegear.gloveless.network.PoseMessage;
+import com.threegear.gloveless.network.UserMessage;
+
+/**
+ * Linear blend skinning of the hand meshes of a {@link UserMessage} with the
+ * joint frames of {@link PoseMessage}s.
+ * <p>
+ * The inverse rest frames, flattened skinning weights and rest normals are
+ * computed once in {@link #setUser(UserMessage)}. {@link #skin(PoseMessage)}
+ * writes the skinned vertices and normals of both hands to preallocated
+ * arrays and direct buffers, which are overwritten by the next call; it does
+ * not allocate. In parallel mode the right hand is skinned by a worker thread
+ * while the calling thread skins the left hand.
+ * <p>
+ * All methods must be called from the same thread, e.g. the render thread.
+ */
+public class HandSkinner {
+
+	/** spins before the calling thread parks while waiting for the worker */
+	private static final int SPINS = 1000;
+
+	private SkinnedHand[] hands;
+
+	private final Thread worker;
+	private volatile Thread waiter;
+	private volatile boolean closed;
+	private volatile int requested;
+	private volatile int completed;
+	private volatile boolean exited;
+	private volatile Throwable failure;
+
+	/**
+	 * Creates a skinner that skins both hands in parallel.
+	 */
+	public HandSkinner() {
+		this(true);
+	}
+
+	/**
+	 * @param parallel whether the second hand is skinned by a worker thread
+	 */
+	public HandSkinner(boolean parallel) {
+		if(parallel) {
+			worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, "Hand skinner");
+			worker.setDaemon(true);
+			worker.start();
+		} else {
+			worker = null;
+		}
+	}
+
+	/**
+	 * Sets the meshes and rest poses to skin. Call this every time a new
+	 * {@link UserMessage} arrives.
+	 *
+	 * @throws IllegalArgumentException if the message references invalid joints or vertices
+	 */
+	public void setUser(UserMessage user) {
+		SkinnedHand[] hands = new SkinnedHand[N_HANDS];
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			hands[hand] = new SkinnedHand(user, hand);
+		}
+		this.hands = hands;
+	}
+
+	public boolean hasUser() {
+		return hands != null;
+	}
+
+	/**
+	 * Skins both hands with the joint frames of the given message.
+	 *
+	 * @throws IllegalStateException if no user has been set
+	 */
+	public void skin(PoseMessage pose) {
+		SkinnedHand[] hands = this.hands;
+		if(hands == null) {
+			throw new IllegalStateException("no user");
+		}
+		for(int hand = 0; hand < N_HANDS; hand++) {
+			hands[hand].pose(pose.getJointRotations(hand), pose.getJointTranslations(hand));
+		}
+		if(worker == null || closed) {
+			for(int hand = 0; hand < N_HANDS; hand++) {
+				hands[hand].skin();
+			}
+			return;
+		}
+		// the volatile write of requested publishes the skinning matrices to the worker
+		waiter = Thread.currentThread();
+		int request = requested + 1;
+		requested = request;
+		LockSupport.unpark(worker);
+		hands[0].skin();
+		for(int spins = 0; completed != request; spins++) {
+			if(exited) {
+				// the worker was closed before it took the request
+				if(completed != request) {
+					hands[1].skin();
+				}
+				break;
+			}
+			if(spins < SPINS) continue;
+			LockSupport.park(this);
+		}
+		Throwable failure = this.failure;
+		if(failure != null) {
+			this.failure = null;
+			if(failure instanceof RuntimeException) throw (RuntimeException)failure;
+			if(failure instanceof Error) throw (Error)failure;
+			throw new IllegalStateException(failure);
+		}
+	}
+
+	/**
+	 * Skins only the given hand, on the calling thread.
+	 *
+	 * @throws IllegalStateException if no user has been set
+	 */
+	public void skin(PoseMessage pose, int hand) {
+		SkinnedHand[] hands = this.hands;
+		if(hands == null) {
+			throw new IllegalStateException("no user");
+		}
+		hands[hand].pose(pose.getJointRotations(hand), pose.getJointTranslations(hand));
+		hands[hand].skin();
+	}
+
+	/**
+	 * Skins the right hand for every request. A pending request is always
+	 * completed before the worker exits, and a failure is passed on to the
+	 * waiting thread.
+	 */
+	private void work() {
+		int done = 0;
+		try {
+			while(true) {
+				int request = requested;
+				if(request == done) {
+					if(closed) return;
+					LockSupport.park(this);
+					continue;
+				}
+				done = request;
+				try {
+					hands[1].skin();
+				} catch(Throwable t) {
+					failure = t;
+				} finally {
+					completed = done;
+					LockSupport.unpark(waiter);
+				}
+			}
+		} finally {
+			exited = true;
+			LockSupport.unpark(waiter);
+		}
+	}
+
+	/**
+	 * Stops the worker thread. The skinner keeps working on the calling thread.
+	 */
+	public void close() {
+		closed = true;
+		if(worker != null) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	public int getVertexCount(int hand) {
+		return hand(hand).vertexCount;
+	}
+
+	/** Vertex indices of the triangles, three per triangle. */
+	public int[] getTriangles(int hand) {
+		return hand(hand).triangles;
+	}
+
+	/** Skinned positions, three floats per vertex. */
+	public float[] getVertices(int hand) {
+		return hand(hand).vertices;
+	}
+
+	/** Skinned unit normals, three floats per vertex. */
+	public float[] getNormals(int hand) {
+		return hand(hand).normals;
+	}
+
+	/** Direct buffer in native order with the same contents as {@link #getVertices(int)}. */
+	public FloatBuffer getVertexBuffer(int hand) {
+		return hand(hand).vertexBuffer;
+	}
+
+	/** Direct buffer in native order with the same contents as {@link #getNormals(int)}. */
+	public FloatBuffer getNormalBuffer(int hand) {
+		return hand(hand).normalBuffer;
+	}
+
+	private SkinnedHand hand(int hand) {
+		if(hands == null) {
+			throw new IllegalStateException("no user");
+		}
+		return hands[hand];
+	}
+}
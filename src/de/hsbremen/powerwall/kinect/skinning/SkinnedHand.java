@@ -0,0 +1,208 @@
+package de.hsbremen.powerwall.kinect.skinning;
+
+import static com.threegear.gloveless.network.HandTrackingMessage.N_JOINTS;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+import com.threegear.gloveless.network.UserMessage;
+
+/**
+ * Skinning data and output of one hand.
+ * <p>
+ * Matrices are stored as the upper three rows of a 4x4 matrix in row-major
+ * order, 12 floats per joint.
+ */
+class SkinnedHand {
+
+	static final int MATRIX_SIZE = 12;
+
+	final int vertexCount;
+	/** influences per vertex; vertices with fewer influences are padded with zero weights */
+	final int influences;
+
+	final float[] restPositions;
+	final float[] restNormals;
+	final int[] indices;
+	final float[] weights;
+	final int[] triangles;
+	final float[] inverseRest = new float[N_JOINTS * MATRIX_SIZE];
+
+	final float[] skin = new float[N_JOINTS * MATRIX_SIZE];
+	final float[] vertices;
+	final float[] normals;
+	final FloatBuffer vertexBuffer;
+	final FloatBuffer normalBuffer;
+
+	SkinnedHand(UserMessage user, int hand) {
+		Point3f[] rest = user.getRestPositions(hand);
+		int[][] userIndices = user.getSkinningIndices(hand);
+		float[][] userWeights = user.getSkinningWeights(hand);
+		int[][] userTriangles = user.getTriangles(hand);
+		vertexCount = rest.length;
+
+		int max = 1;
+		for(int[] vertexIndices : userIndices) {
+			max = Math.max(max, vertexIndices.length);
+		}
+		influences = max;
+
+		restPositions = new float[vertexCount * 3];
+		for(int i = 0; i < vertexCount; i++) {
+			restPositions[i * 3] = rest[i].x;
+			restPositions[i * 3 + 1] = rest[i].y;
+			restPositions[i * 3 + 2] = rest[i].z;
+		}
+
+		indices = new int[vertexCount * influences];
+		weights = new float[vertexCount * influences];
+		for(int i = 0; i < vertexCount; i++) {
+			for(int j = 0; j < userIndices[i].length; j++) {
+				int joint = userIndices[i][j];
+				if(joint < 0 || joint >= N_JOINTS) {
+					throw new IllegalArgumentException("invalid joint " + joint + " for vertex " + i);
+				}
+				indices[i * influences + j] = joint;
+				weights[i * influences + j] = userWeights[i][j];
+			}
+		}
+
+		triangles = new int[userTriangles.length * 3];
+		for(int i = 0; i < userTriangles.length; i++) {
+			for(int j = 0; j < 3; j++) {
+				int vertex = userTriangles[i][j];
+				if(vertex < 0 || vertex >= vertexCount) {
+					throw new IllegalArgumentException("invalid vertex " + vertex + " in triangle " + i);
+				}
+				triangles[i * 3 + j] = vertex;
+			}
+		}
+		restNormals = new float[vertexCount * 3];
+		computeNormals(restPositions, triangles, restNormals);
+
+		Matrix4f[] restFrames = user.getRestJointFrames(hand);
+		for(int j = 0; j < N_JOINTS; j++) {
+			Matrix4f m = restFrames[j];
+			m.invert();
+			int o = j * MATRIX_SIZE;
+			inverseRest[o] = m.m00; inverseRest[o + 1] = m.m01; inverseRest[o + 2] = m.m02; inverseRest[o + 3] = m.m03;
+			inverseRest[o + 4] = m.m10; inverseRest[o + 5] = m.m11; inverseRest[o + 6] = m.m12; inverseRest[o + 7] = m.m13;
+			inverseRest[o + 8] = m.m20; inverseRest[o + 9] = m.m21; inverseRest[o + 10] = m.m22; inverseRest[o + 11] = m.m23;
+		}
+
+		vertices = restPositions.clone();
+		normals = restNormals.clone();
+		vertexBuffer = ByteBuffer.allocateDirect(vertexCount * 3 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		normalBuffer = ByteBuffer.allocateDirect(vertexCount * 3 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		vertexBuffer.put(vertices).flip();
+		normalBuffer.put(normals).flip();
+	}
+
+	/**
+	 * Sets the skinning matrices to the posed joint frames times the inverse
+	 * rest frames.
+	 */
+	void pose(Quat4f[] rotations, Vector3f[] translations) {
+		for(int j = 0; j < N_JOINTS; j++) {
+			Quat4f q = rotations[j];
+			Vector3f t = translations[j];
+			// same conversion as Matrix4f(Quat4f, Vector3f, float)
+			float r00 = 1 - 2 * q.y * q.y - 2 * q.z * q.z;
+			float r01 = 2 * (q.x * q.y - q.w * q.z);
+			float r02 = 2 * (q.x * q.z + q.w * q.y);
+			float r10 = 2 * (q.x * q.y + q.w * q.z);
+			float r11 = 1 - 2 * q.x * q.x - 2 * q.z * q.z;
+			float r12 = 2 * (q.y * q.z - q.w * q.x);
+			float r20 = 2 * (q.x * q.z - q.w * q.y);
+			float r21 = 2 * (q.y * q.z + q.w * q.x);
+			float r22 = 1 - 2 * q.x * q.x - 2 * q.y * q.y;
+
+			int o = j * MATRIX_SIZE;
+			float[] b = inverseRest;
+			for(int c = 0; c < 4; c++) {
+				float b0 = b[o + c], b1 = b[o + 4 + c], b2 = b[o + 8 + c];
+				skin[o + c] = r00 * b0 + r01 * b1 + r02 * b2;
+				skin[o + 4 + c] = r10 * b0 + r11 * b1 + r12 * b2;
+				skin[o + 8 + c] = r20 * b0 + r21 * b1 + r22 * b2;
+			}
+			skin[o + 3] += t.x;
+			skin[o + 7] += t.y;
+			skin[o + 11] += t.z;
+		}
+	}
+
+	/**
+	 * Blends the skinning matrices of each vertex and transforms its rest
+	 * position and normal, then copies the result to the direct buffers.
+	 */
+	void skin() {
+		final float[] m = skin;
+		final float[] p = restPositions;
+		final float[] n = restNormals;
+		final float[] v = vertices;
+		final float[] vn = normals;
+		final int k = influences;
+		for(int i = 0, w = 0, x = 0; i < vertexCount; i++, x += 3) {
+			float m00 = 0, m01 = 0, m02 = 0, m03 = 0;
+			float m10 = 0, m11 = 0, m12 = 0, m13 = 0;
+			float m20 = 0, m21 = 0, m22 = 0, m23 = 0;
+			for(int end = w + k; w < end; w++) {
+				float weight = weights[w];
+				if(weight == 0) continue;
+				int o = indices[w] * MATRIX_SIZE;
+				m00 += weight * m[o]; m01 += weight * m[o + 1]; m02 += weight * m[o + 2]; m03 += weight * m[o + 3];
+				m10 += weight * m[o + 4]; m11 += weight * m[o + 5]; m12 += weight * m[o + 6]; m13 += weight * m[o + 7];
+				m20 += weight * m[o + 8]; m21 += weight * m[o + 9]; m22 += weight * m[o + 10]; m23 += weight * m[o + 11];
+			}
+			float px = p[x], py = p[x + 1], pz = p[x + 2];
+			v[x] = m00 * px + m01 * py + m02 * pz + m03;
+			v[x + 1] = m10 * px + m11 * py + m12 * pz + m13;
+			v[x + 2] = m20 * px + m21 * py + m22 * pz + m23;
+
+			// the blend of rigid transforms is close to a rotation, so the normal
+			// is transformed by the blended matrix and renormalized
+			float nx = n[x], ny = n[x + 1], nz = n[x + 2];
+			float tx = m00 * nx + m01 * ny + m02 * nz;
+			float ty = m10 * nx + m11 * ny + m12 * nz;
+			float tz = m20 * nx + m21 * ny + m22 * nz;
+			float length = (float)Math.sqrt(tx * tx + ty * ty + tz * tz);
+			float scale = length > 0 ? 1 / length : 0;
+			vn[x] = tx * scale;
+			vn[x + 1] = ty * scale;
+			vn[x + 2] = tz * scale;
+		}
+		vertexBuffer.clear();
+		vertexBuffer.put(v).flip();
+		normalBuffer.clear();
+		normalBuffer.put(vn).flip();
+	}
+
+	/** area weighted vertex normals */
+	static void computeNormals(float[] positions, int[] triangles, float[] normals) {
+		for(int t = 0; t < triangles.length; t += 3) {
+			int a = triangles[t] * 3, b = triangles[t + 1] * 3, c = triangles[t + 2] * 3;
+			float ux = positions[b] - positions[a], uy = positions[b + 1] - positions[a + 1], uz = positions[b + 2] - positions[a + 2];
+			float vx = positions[c] - positions[a], vy = positions[c + 1] - positions[a + 1], vz = positions[c + 2] - positions[a + 2];
+			float nx = uy * vz - uz * vy;
+			float ny = uz * vx - ux * vz;
+			float nz = ux * vy - uy * vx;
+			normals[a] += nx; normals[a + 1] += ny; normals[a + 2] += nz;
+			normals[b] += nx; normals[b + 1] += ny; normals[b + 2] += nz;
+			normals[c] += nx; normals[c + 1] += ny; normals[c + 2] += nz;
+		}
+		for(int i = 0; i < normals.length; i += 3) {
+			float length = (float)Math.sqrt(normals[i] * normals[i] + normals[i + 1] * normals[i + 1] + normals[i + 2] * normals[i + 2]);
+			if(length > 0) {
+				normals[i] /= length;
+				normals[i + 1] /= length;
+				normals[i + 2] /= length;
+			}
+		}
+	}
+}